@@ -6,6 +6,7 @@ import com.leonardobishop.quests.bukkit.config.BukkitQuestsLoader;
 import com.leonardobishop.quests.bukkit.hook.coreprotect.AbstractCoreProtectHook;
 import com.leonardobishop.quests.bukkit.hook.coreprotect.CoreProtectHook;
 import com.leonardobishop.quests.bukkit.hook.coreprotect.CoreProtectNoHook;
+import com.leonardobishop.quests.bukkit.hook.coreprotect.CoreProtectVerifier;
 import com.leonardobishop.quests.bukkit.hook.itemgetter.ItemGetter;
 import com.leonardobishop.quests.bukkit.hook.itemgetter.ItemGetterLatest;
 import com.leonardobishop.quests.bukkit.hook.itemgetter.ItemGetter_1_13;
@@ -22,10 +23,14 @@ import com.leonardobishop.quests.bukkit.menu.MenuController;
 import com.leonardobishop.quests.bukkit.menu.itemstack.QItemStackRegistry;
 import com.leonardobishop.quests.bukkit.questcompleter.BukkitQuestCompleter;
 import com.leonardobishop.quests.bukkit.questcontroller.NormalQuestController;
-import com.leonardobishop.quests.bukkit.runnable.QuestsAutoSaveRunnable;
+import com.leonardobishop.quests.bukkit.runnable.QuestsAutoSaveService;
+import com.leonardobishop.quests.bukkit.storage.BinaryStorageProvider;
 import com.leonardobishop.quests.bukkit.storage.MySqlStorageProvider;
+import com.leonardobishop.quests.bukkit.storage.SqliteStorageProvider;
 import com.leonardobishop.quests.bukkit.storage.YamlStorageProvider;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskTypeManager;
+import com.leonardobishop.quests.bukkit.tasktype.MovementSampler;
+import com.leonardobishop.quests.bukkit.tasktype.PollingScheduler;
 import com.leonardobishop.quests.bukkit.tasktype.type.BreedingTaskType;
 import com.leonardobishop.quests.bukkit.tasktype.type.BrewingTaskType;
 import com.leonardobishop.quests.bukkit.tasktype.type.BuildingCertainTaskType;
@@ -75,6 +80,7 @@ import com.leonardobishop.quests.common.quest.QuestCompleter;
 import com.leonardobishop.quests.common.quest.QuestManager;
 import com.leonardobishop.quests.common.questcontroller.QuestController;
 import com.leonardobishop.quests.common.scheduler.ServerScheduler;
+import com.leonardobishop.quests.common.storage.JournalStorageProvider;
 import com.leonardobishop.quests.common.storage.StorageProvider;
 import com.leonardobishop.quests.common.tasktype.TaskType;
 import com.leonardobishop.quests.common.tasktype.TaskTypeManager;
@@ -98,6 +104,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
 
@@ -117,12 +125,15 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
 
     private QItemStackRegistry qItemStackRegistry;
     private MenuController menuController;
+    private MovementSampler movementSampler;
+    private PollingScheduler pollingScheduler;
+    private QuestsAutoSaveService autoSaveService;
     private AbstractPlaceholderAPIHook placeholderAPIHook;
     private AbstractCoreProtectHook coreProtectHook;
+    private CoreProtectVerifier coreProtectVerifier;
     private ItemGetter itemGetter;
     private Title titleHandle;
 
-    private BukkitTask questAutoSaveTask;
     private BukkitTask questQueuePollTask;
 
     @Override
@@ -184,6 +195,9 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
         this.questManager = new QuestManager(this);
         this.taskTypeManager = new BukkitTaskTypeManager(this);
         this.serverScheduler = new BukkitServerSchedulerAdapter(this);
+        this.movementSampler = new MovementSampler(this);
+        this.pollingScheduler = new PollingScheduler(this);
+        this.autoSaveService = new QuestsAutoSaveService(this);
 
         // Load base configuration for use during rest of startup procedure
         if (!this.reloadBaseConfiguration()) {
@@ -200,9 +214,21 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
             case "yaml":
                 this.storageProvider = new YamlStorageProvider(this);
                 break;
+            case "binary":
+                this.storageProvider = new BinaryStorageProvider(this);
+                break;
+            case "sqlite":
+                this.storageProvider = new SqliteStorageProvider(this, this.getConfig().getConfigurationSection("options.storage.sqlite-settings"));
+                break;
             case "mysql":
                 this.storageProvider = new MySqlStorageProvider(this, this.getConfig().getConfigurationSection("options.storage.database-settings"));
         }
+        if (questsConfig.getBoolean("options.storage.journal.enabled", false)) {
+            this.storageProvider = new JournalStorageProvider(this, storageProvider, new File(super.getDataFolder() + File.separator + "journal"),
+                    questsConfig.getInt("options.storage.journal.segment-size", 16) * 1024 * 1024,
+                    questsConfig.getInt("options.storage.journal.sync-interval", 50),
+                    questsConfig.getInt("options.storage.journal.compaction-interval", 60) * 1000L);
+        }
 
         try {
             storageProvider.init();
@@ -261,6 +287,8 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
         } else {
             this.coreProtectHook = new CoreProtectNoHook();
         }
+        this.coreProtectVerifier = new CoreProtectVerifier(this, coreProtectHook);
+        this.coreProtectVerifier.start();
 
         // Start quests update checker
         boolean ignoreUpdates = false;
@@ -279,6 +307,8 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
         super.getServer().getPluginManager().registerEvents(new PlayerJoinListener(this), this);
         super.getServer().getPluginManager().registerEvents(menuController, this);
         super.getServer().getPluginManager().registerEvents(new PlayerLeaveListener(this), this);
+        super.getServer().getPluginManager().registerEvents(movementSampler, this);
+        super.getServer().getPluginManager().registerEvents(coreProtectVerifier, this);
 
         // Register task types after the server has fully started
         Bukkit.getScheduler().runTask(this, () -> {
@@ -352,9 +382,11 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
             reloadQuests();
 
             // Load players who were present during startup (i.e some idiot reloaded the server instead of restarted)
+            List<UUID> onlinePlayers = new ArrayList<>();
             for (Player player : Bukkit.getOnlinePlayers()) {
-                qPlayerManager.loadPlayer(player.getUniqueId());
+                onlinePlayers.add(player.getUniqueId());
             }
+            qPlayerManager.loadPlayers(onlinePlayers);
         });
     }
 
@@ -362,6 +394,9 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
     public void onDisable() {
         if (!validConfiguration) return;
 
+        coreProtectVerifier.stop();
+        pollingScheduler.stop();
+        autoSaveService.stop();
         for (TaskType taskType : getTaskTypeManager().getTaskTypes()) {
             try {
                 taskType.onDisable();
@@ -369,9 +404,12 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
         }
         for (QPlayer qPlayer : qPlayerManager.getQPlayers()) {
             try {
-                qPlayerManager.savePlayerSync(qPlayer.getPlayerUUID());
+                qPlayerManager.savePlayer(qPlayer.getPlayerUUID());
             } catch (Exception ignored) { }
         }
+        try {
+            qPlayerManager.shutdown(TimeUnit.SECONDS.toMillis(30));
+        } catch (Exception ignored) { }
         if (placeholderAPIHook != null) {
             try {
                 placeholderAPIHook.unregisterExpansion();
@@ -398,6 +436,11 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
                     e.printStackTrace();
                 }
             }
+
+            // quests and tasks have been replaced, so every players started tasks must be looked up again
+            for (QPlayer qPlayer : qPlayerManager.getQPlayers()) {
+                qPlayer.getActiveTaskIndex().invalidate();
+            }
         } else {
             configProblems = Collections.singletonMap("<MAIN CONFIG> config.yml",
                     Collections.singletonList(new ConfigProblem(ConfigProblem.ConfigProblemType.ERROR, ConfigProblemDescriptions.MALFORMED_YAML.getDescription())));
@@ -423,11 +466,11 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
             }
 
             long autoSaveInterval = this.getConfig().getLong("options.performance-tweaking.quest-autosave-interval", 12000);
+            double autoSaveTickBudget = this.getConfig().getDouble("options.performance-tweaking.quest-autosave-tick-budget", 1);
             try {
-                if (questAutoSaveTask != null) questAutoSaveTask.cancel();
-                questAutoSaveTask = Bukkit.getScheduler().runTaskTimer(this, () -> new QuestsAutoSaveRunnable(this), autoSaveInterval, autoSaveInterval);
+                autoSaveService.start(autoSaveInterval, autoSaveTickBudget);
             } catch (Exception ex) {
-                questsLogger.debug("Cannot cancel and restart quest autosave task");
+                questsLogger.debug("Cannot restart quest autosave service");
             }
 
             long queueExecuteInterval = this.getConfig().getLong("options.performance-tweaking.quest-queue-executor-interval", 1);
@@ -437,6 +480,20 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
             } catch (Exception ex) {
                 questsLogger.debug("Cannot cancel and restart queue executor task");
             }
+
+            long movementSampleInterval = this.getConfig().getLong("options.performance-tweaking.movement-sample-interval", 5);
+            try {
+                movementSampler.start(movementSampleInterval);
+            } catch (Exception ex) {
+                questsLogger.debug("Cannot cancel and restart movement sampler task");
+            }
+
+            double pollingTickBudget = this.getConfig().getDouble("options.performance-tweaking.polling-tick-budget", 2);
+            try {
+                pollingScheduler.start(pollingTickBudget);
+            } catch (Exception ex) {
+                questsLogger.debug("Cannot restart polling scheduler task");
+            }
         }
         return validConfiguration;
     }
@@ -519,6 +576,10 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
         return coreProtectHook;
     }
 
+    public CoreProtectVerifier getCoreProtectVerifier() {
+        return coreProtectVerifier;
+    }
+
     public ItemGetter getItemGetter() {
         return itemGetter;
     }
@@ -531,6 +592,18 @@ public class BukkitQuestsPlugin extends JavaPlugin implements Quests {
         return qItemStackRegistry;
     }
 
+    public MovementSampler getMovementSampler() {
+        return movementSampler;
+    }
+
+    public PollingScheduler getPollingScheduler() {
+        return pollingScheduler;
+    }
+
+    public QuestsAutoSaveService getAutoSaveService() {
+        return autoSaveService;
+    }
+
     public MenuController getMenuController() {
         return menuController;
     }
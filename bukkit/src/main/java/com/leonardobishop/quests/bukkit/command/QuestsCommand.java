@@ -1,15 +1,22 @@
 package com.leonardobishop.quests.bukkit.command;
 
 import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
+import com.leonardobishop.quests.bukkit.hook.coreprotect.CoreProtectVerifier;
+import com.leonardobishop.quests.bukkit.runnable.QuestsAutoSaveService;
+import com.leonardobishop.quests.bukkit.storage.BinaryStorageProvider;
+import com.leonardobishop.quests.bukkit.storage.MySqlStorageProvider;
 import com.leonardobishop.quests.bukkit.util.Messages;
 import com.leonardobishop.quests.bukkit.util.chat.Chat;
 import com.leonardobishop.quests.common.config.ConfigProblem;
 import com.leonardobishop.quests.common.enums.QuestStartResult;
+import com.leonardobishop.quests.common.player.DepartedPlayerCache;
 import com.leonardobishop.quests.common.player.QPlayer;
 import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
 import com.leonardobishop.quests.common.quest.Category;
 import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import com.leonardobishop.quests.common.storage.JournalStorageProvider;
+import com.leonardobishop.quests.common.storage.StorageProvider;
 import com.leonardobishop.quests.common.tasktype.TaskType;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
@@ -32,6 +39,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
 
 public class QuestsCommand implements TabExecutor {
 
@@ -150,6 +158,44 @@ public class QuestsCommand implements TabExecutor {
                     } else if (args[1].equalsIgnoreCase("wiki")) {
                         sender.sendMessage(ChatColor.RED + "Link to Quests wiki: " + ChatColor.GRAY + "https://github.com/LMBishop/Quests/wiki");
                         return true;
+                    } else if (args[1].equalsIgnoreCase("stats")) {
+                        showStats(sender);
+                        return true;
+                    } else if (args[1].equalsIgnoreCase("convertyaml")) {
+                        StorageProvider storageProvider = plugin.getStorageProvider();
+                        if (storageProvider instanceof JournalStorageProvider) {
+                            storageProvider = ((JournalStorageProvider) storageProvider).getBackingProvider();
+                        }
+                        BinaryStorageProvider binaryStorageProvider = storageProvider instanceof BinaryStorageProvider
+                                ? (BinaryStorageProvider) storageProvider : new BinaryStorageProvider(plugin);
+                        sender.sendMessage(ChatColor.GRAY + "Converting YAML player data to the binary format...");
+                        Bukkit.getScheduler().runTaskAsynchronously(this.plugin, () -> {
+                            long start = System.currentTimeMillis();
+                            int converted = binaryStorageProvider.convertYaml();
+                            sender.sendMessage(ChatColor.GRAY + "Converted " + converted + " player(s) in " + (System.currentTimeMillis() - start) + "ms.");
+                        });
+                        return true;
+                    } else if (args[1].equalsIgnoreCase("migratedb")) {
+                        StorageProvider storageProvider = plugin.getStorageProvider();
+                        if (storageProvider instanceof JournalStorageProvider) {
+                            storageProvider = ((JournalStorageProvider) storageProvider).getBackingProvider();
+                        }
+                        if (!(storageProvider instanceof MySqlStorageProvider)) {
+                            sender.sendMessage(ChatColor.RED + "This can only be used with the MySQL storage provider.");
+                            return true;
+                        }
+                        MySqlStorageProvider mySqlStorageProvider = (MySqlStorageProvider) storageProvider;
+                        sender.sendMessage(ChatColor.GRAY + "Migrating player data to the v2 database schema...");
+                        Bukkit.getScheduler().runTaskAsynchronously(this.plugin, () -> {
+                            long start = System.currentTimeMillis();
+                            if (mySqlStorageProvider.migrateToV2(500, message -> sender.sendMessage(ChatColor.GRAY + message))) {
+                                sender.sendMessage(ChatColor.GRAY + "Migration finished in " + (System.currentTimeMillis() - start) + "ms. " +
+                                        "Set 'schema-version' to 2 in the database settings and restart the server to use the new schema.");
+                            } else {
+                                sender.sendMessage(ChatColor.RED + "The migration could not be run, it may already be in progress or the v2 schema is already in use. See the console for details.");
+                            }
+                        });
+                        return true;
                     } else if (args[1].equalsIgnoreCase("about")) {
                         sender.sendMessage(ChatColor.RED + "Quests " + ChatColor.BOLD + "v" + plugin.getDescription().getVersion());
                         sender.sendMessage(ChatColor.DARK_GRAY + " - " + ChatColor.RED + "Source code: " + ChatColor.GRAY + "https://github.com/LMBishop/Quests/");
@@ -235,16 +281,14 @@ public class QuestsCommand implements TabExecutor {
                         showAdminHelp(sender, "opengui");
                         return true;
                     } else if (args[1].equalsIgnoreCase("moddata")) {
-                        QPlayer qPlayer = getOtherPlayer(sender, args[3]);
-                        if (qPlayer == null) return true;
                         if (args[2].equalsIgnoreCase("fullreset")) {
-                            QuestProgressFile questProgressFile = qPlayer.getQuestProgressFile();
-                            questProgressFile.clear();
-                            plugin.getPlayerManager().savePlayerSync(qPlayer.getPlayerUUID(), questProgressFile);
-                            if (Bukkit.getPlayer(qPlayer.getPlayerUUID()) == null) {
-                                plugin.getPlayerManager().dropPlayer(qPlayer.getPlayerUUID());
-                            }
-                            sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_FULLRESET.getMessage().replace("{player}", args[3]));
+                            withOtherPlayer(sender, args[3], qPlayer -> {
+                                QuestProgressFile questProgressFile = qPlayer.getQuestProgressFile();
+                                questProgressFile.clear();
+                                qPlayer.getActiveTaskIndex().invalidate();
+                                plugin.getPlayerManager().savePlayer(qPlayer.getPlayerUUID(), questProgressFile);
+                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_FULLRESET.getMessage().replace("{player}", args[3]));
+                            });
                             return true;
                         }
                         showAdminHelp(sender, "moddata");
@@ -282,60 +326,54 @@ public class QuestsCommand implements TabExecutor {
                             return true;
                         }
                     } else if (args[1].equalsIgnoreCase("moddata")) {
-                        boolean success = false;
-                        QPlayer qPlayer = getOtherPlayer(sender, args[3]);
-                        if (qPlayer == null) return true;
-                        QuestProgressFile questProgressFile = qPlayer.getQuestProgressFile();
                         Quest quest = plugin.getQuestManager().getQuestById(args[4]);
                         if (quest == null) {
                             sender.sendMessage(Messages.COMMAND_QUEST_START_DOESNTEXIST.getMessage().replace("{quest}", args[4]));
-                            //success = true;
                             return true;
                         }
-                        if (args[2].equalsIgnoreCase("reset")) {
-                            questProgressFile.generateBlankQuestProgress(quest);
-                            plugin.getPlayerManager().savePlayerSync(qPlayer.getPlayerUUID(), questProgressFile);
-                            sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_RESET_SUCCESS.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                            success = true;
-                        } else if (args[2].equalsIgnoreCase("start")) {
-                            QuestStartResult response = qPlayer.startQuest(quest);
-                            if (response == QuestStartResult.QUEST_LIMIT_REACHED) {
-                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILLIMIT.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                                return true;
-                            } else if (response == QuestStartResult.QUEST_ALREADY_COMPLETED) {
-                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILCOMPLETE.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                                return true;
-                            } else if (response == QuestStartResult.QUEST_COOLDOWN) {
-                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILCOOLDOWN.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                                return true;
-                            } else if (response == QuestStartResult.QUEST_LOCKED) {
-                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILLOCKED.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                                return true;
-                            } else if (response == QuestStartResult.QUEST_ALREADY_STARTED) {
-                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILSTARTED.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                                return true;
-                            } else if (response == QuestStartResult.QUEST_NO_PERMISSION) {
-                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILPERMISSION.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                                return true;
-                            } else if (response == QuestStartResult.NO_PERMISSION_FOR_CATEGORY) {
-                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILCATEGORYPERMISSION.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                                return true;
-                            }
-                            plugin.getPlayerManager().savePlayerSync(qPlayer.getPlayerUUID(), questProgressFile);
-                            sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_SUCCESS.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                            success = true;
-                        } else if (args[2].equalsIgnoreCase("complete")) {
-                            qPlayer.completeQuest(quest);
-                            plugin.getPlayerManager().savePlayerSync(qPlayer.getPlayerUUID(), questProgressFile);
-                            sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_COMPLETE_SUCCESS.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
-                            success = true;
-                        }
-                        if (!success) {
+                        if (!args[2].equalsIgnoreCase("reset") && !args[2].equalsIgnoreCase("start") && !args[2].equalsIgnoreCase("complete")) {
                             showAdminHelp(sender, "moddata");
+                            return true;
                         }
-                        if (Bukkit.getPlayer(qPlayer.getPlayerUUID()) == null) {
-                            plugin.getPlayerManager().dropPlayer(qPlayer.getPlayerUUID());
-                        }
+                        withOtherPlayer(sender, args[3], qPlayer -> {
+                            QuestProgressFile questProgressFile = qPlayer.getQuestProgressFile();
+                            if (args[2].equalsIgnoreCase("reset")) {
+                                questProgressFile.generateBlankQuestProgress(quest);
+                                qPlayer.getActiveTaskIndex().invalidate();
+                                plugin.getPlayerManager().savePlayer(qPlayer.getPlayerUUID(), questProgressFile);
+                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_RESET_SUCCESS.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                            } else if (args[2].equalsIgnoreCase("start")) {
+                                QuestStartResult response = qPlayer.startQuest(quest);
+                                if (response == QuestStartResult.QUEST_LIMIT_REACHED) {
+                                    sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILLIMIT.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                                    return;
+                                } else if (response == QuestStartResult.QUEST_ALREADY_COMPLETED) {
+                                    sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILCOMPLETE.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                                    return;
+                                } else if (response == QuestStartResult.QUEST_COOLDOWN) {
+                                    sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILCOOLDOWN.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                                    return;
+                                } else if (response == QuestStartResult.QUEST_LOCKED) {
+                                    sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILLOCKED.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                                    return;
+                                } else if (response == QuestStartResult.QUEST_ALREADY_STARTED) {
+                                    sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILSTARTED.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                                    return;
+                                } else if (response == QuestStartResult.QUEST_NO_PERMISSION) {
+                                    sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILPERMISSION.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                                    return;
+                                } else if (response == QuestStartResult.NO_PERMISSION_FOR_CATEGORY) {
+                                    sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_FAILCATEGORYPERMISSION.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                                    return;
+                                }
+                                plugin.getPlayerManager().savePlayer(qPlayer.getPlayerUUID(), questProgressFile);
+                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_START_SUCCESS.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                            } else {
+                                qPlayer.completeQuest(quest);
+                                plugin.getPlayerManager().savePlayer(qPlayer.getPlayerUUID(), questProgressFile);
+                                sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_COMPLETE_SUCCESS.getMessage().replace("{player}", args[3]).replace("{quest}", quest.getId()));
+                            }
+                        });
                         return true;
                     }
                 }
@@ -424,7 +462,8 @@ public class QuestsCommand implements TabExecutor {
         return true;
     }
 
-    private QPlayer getOtherPlayer(CommandSender sender, String name) {
+    // players who are not online are loaded asynchronously, the callback is always run on the main thread
+    private void withOtherPlayer(CommandSender sender, String name, Consumer<QPlayer> callback) {
         OfflinePlayer ofp = Bukkit.getOfflinePlayer(name);
         UUID uuid;
         String username;
@@ -433,19 +472,21 @@ public class QuestsCommand implements TabExecutor {
             username = ofp.getName();
         } else {
             sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_PLAYERNOTFOUND.getMessage().replace("{player}", name));
-            return null;
+            return;
         }
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
-        if (qPlayer == null) {
+        if (Bukkit.getPlayer(uuid) == null) {
             sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_LOADDATA.getMessage().replace("{player}", username));
-            plugin.getPlayerManager().loadPlayer(uuid);
-            qPlayer = plugin.getPlayerManager().getPlayer(uuid);
-        }
-        if (qPlayer == null) {
-            sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_NODATA.getMessage().replace("{player}", username));
-            return null;
         }
-        return qPlayer;
+        plugin.getPlayerManager().getOrLoadAsync(uuid).whenComplete((qPlayer, throwable) -> {
+            if (throwable != null) throwable.printStackTrace();
+            plugin.getScheduler().doSync(() -> {
+                if (qPlayer == null) {
+                    sender.sendMessage(Messages.COMMAND_QUEST_ADMIN_NODATA.getMessage().replace("{player}", username));
+                    return;
+                }
+                callback.accept(qPlayer);
+            });
+        });
     }
 
     private void showProblems(CommandSender sender) {
@@ -504,6 +545,33 @@ public class QuestsCommand implements TabExecutor {
         }
     }
 
+    private void showStats(CommandSender sender) {
+        sender.sendMessage(ChatColor.GRAY.toString() + ChatColor.STRIKETHROUGH + "------------=[" + ChatColor.RED + " Quests Stats " + ChatColor.GRAY
+                .toString() + ChatColor.STRIKETHROUGH + "]=------------");
+        CoreProtectVerifier coreProtectVerifier = plugin.getCoreProtectVerifier();
+        sender.sendMessage(ChatColor.GRAY + "CoreProtect verification:");
+        sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "Queue depth: " + ChatColor.GRAY + coreProtectVerifier.getQueueDepth());
+        sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "Lookups: " + ChatColor.GRAY + coreProtectVerifier.getLookups()
+                + ChatColor.DARK_GRAY + " (" + coreProtectVerifier.getCacheHits() + " cached)");
+        sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "Lookup latency: " + ChatColor.GRAY
+                + String.format("%.2fms avg, %.2fms last", coreProtectVerifier.getAverageLookupTime(), coreProtectVerifier.getLastLookupTime()));
+        QuestsAutoSaveService autoSaveService = plugin.getAutoSaveService();
+        sender.sendMessage(ChatColor.GRAY + "Autosave:");
+        sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "Cycles: " + ChatColor.GRAY + autoSaveService.getCycles()
+                + ChatColor.DARK_GRAY + " (" + autoSaveService.getPace() + " players/tick)");
+        sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "Last cycle: " + ChatColor.GRAY + autoSaveService.getLastCyclePlayers()
+                + " players, " + autoSaveService.getLastCycleDuration() + "ms, " + autoSaveService.getLastCycleBytes() + " bytes written");
+        sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "Save queue depth: " + ChatColor.GRAY
+                + plugin.getPlayerManager().getSaveQueue().getPendingCount());
+        DepartedPlayerCache departedPlayerCache = plugin.getPlayerManager().getDepartedPlayerCache();
+        sender.sendMessage(ChatColor.GRAY + "Recently departed players:");
+        sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "Cached: " + ChatColor.GRAY + departedPlayerCache.getSize());
+        sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "Reused: " + ChatColor.GRAY + departedPlayerCache.getHits()
+                + ChatColor.DARK_GRAY + " (" + departedPlayerCache.getMisses() + " loaded from storage)");
+        sender.sendMessage(ChatColor.GRAY + "Offline players:");
+        sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "Cached: " + ChatColor.GRAY + plugin.getPlayerManager().getOfflinePlayerCache().getSize());
+    }
+
     private void showHelp(CommandSender sender) {
         sender.sendMessage(ChatColor.GRAY.toString() + ChatColor.STRIKETHROUGH + "------------=[" + ChatColor.RED + " Quests v" + plugin
                 .getDescription().getVersion() + " " + ChatColor.GRAY.toString() + ChatColor.STRIKETHROUGH + "]=------------");
@@ -552,6 +620,9 @@ public class QuestsCommand implements TabExecutor {
             sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "/quests a config " + ChatColor.DARK_GRAY + ": see detected problems in config");
             sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "/quests a itemstack " + ChatColor.DARK_GRAY + ": print information about the current held ItemStack");
             sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "/quests a update " + ChatColor.DARK_GRAY + ": check for updates");
+            sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "/quests a stats " + ChatColor.DARK_GRAY + ": view performance statistics");
+            sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "/quests a convertyaml " + ChatColor.DARK_GRAY + ": convert YAML player data for the binary storage provider");
+            sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "/quests a migratedb " + ChatColor.DARK_GRAY + ": migrate MySQL player data to the v2 schema");
             sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "/quests a wiki " + ChatColor.DARK_GRAY + ": get a link to the Quests wiki");
             sender.sendMessage(ChatColor.DARK_GRAY + " * " + ChatColor.RED + "/quests a about " + ChatColor.DARK_GRAY + ": get information about Quests");
         }
@@ -602,7 +673,7 @@ public class QuestsCommand implements TabExecutor {
                     return tabCompleteQuests(args[1]);
                 } else if (args[0].equalsIgnoreCase("a") || args[0].equalsIgnoreCase("admin")
                         && sender.hasPermission("quests.admin")) {
-                    List<String> options = Arrays.asList("opengui", "moddata", "types", "reload", "update", "config", "info", "wiki", "about");
+                    List<String> options = Arrays.asList("opengui", "moddata", "types", "reload", "update", "config", "info", "stats", "convertyaml", "migratedb", "wiki", "about");
                     return matchTabComplete(args[1], options);
                 }
             } else if (args.length == 3) {
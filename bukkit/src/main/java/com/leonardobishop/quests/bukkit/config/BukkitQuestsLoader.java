@@ -233,6 +233,11 @@ public class BukkitQuestsLoader implements QuestsLoader {
                                 }
                             }
 
+                            TaskType t = taskTypeManager.getTaskType(taskType);
+                            if (t != null) {
+                                task.setCompiledConfig(t.compileConfig(task));
+                            }
+
                             quest.registerTask(task);
                         }
 
@@ -13,4 +13,24 @@ public interface AbstractCoreProtectHook {
      */
     boolean checkBlock(Block block, int time);
 
+    /**
+     * Check whether or not the most recent edit to a block before a point in time was the result of a player.
+     * Edits logged after that point, such as the break currently being handled, are ignored.
+     *
+     * @param block the block
+     * @param time the time to look back in seconds
+     * @param before the time in milliseconds to look back from
+     * @return true if from a player
+     */
+    default boolean checkBlock(Block block, int time, long before) {
+        return checkBlock(block, time);
+    }
+
+    /**
+     * @return whether CoreProtect is present, and lookups can be made
+     */
+    default boolean isAvailable() {
+        return true;
+    }
+
 }
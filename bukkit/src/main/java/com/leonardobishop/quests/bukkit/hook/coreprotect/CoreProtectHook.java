@@ -26,4 +26,22 @@ public class CoreProtectHook implements AbstractCoreProtectHook {
         return !parseResult.getPlayer().isEmpty() && parseResult.getActionId() == 1;
     }
 
+    @Override
+    public boolean checkBlock(Block block, int time, long before) {
+        List<String[]> lookup = api.blockLookup(block, time);
+        long second = before / 1000;
+
+        // rows are newest first; CoreProtect logs to the second, so a break in the same second as the event is
+        // taken to be the one being handled
+        for (String[] result : lookup) {
+            CoreProtectAPI.ParseResult parseResult = api.parseResult(result);
+            long timestamp = parseResult.getTimestamp();
+            if (timestamp > before) continue;
+            if (parseResult.getActionId() == 0 && timestamp / 1000 == second) continue;
+
+            return !parseResult.getPlayer().isEmpty() && parseResult.getActionId() == 1;
+        }
+        return false;
+    }
+
 }
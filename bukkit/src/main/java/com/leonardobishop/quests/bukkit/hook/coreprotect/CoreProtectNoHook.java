@@ -7,4 +7,9 @@ public class CoreProtectNoHook implements AbstractCoreProtectHook {
     public boolean checkBlock(Block block, int time) {
         return false;
     }
+
+    @Override
+    public boolean isAvailable() {
+        return false;
+    }
 }
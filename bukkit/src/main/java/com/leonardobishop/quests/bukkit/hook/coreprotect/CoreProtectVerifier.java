@@ -0,0 +1,325 @@
+package com.leonardobishop.quests.bukkit.hook.coreprotect;
+
+import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
+import org.bukkit.block.Block;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.BlockPlaceEvent;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Checks blocks against CoreProtect away from the main thread. Checks are queued and looked up in batches
+ * by a single worker thread, with the results of recent lookups cached by block position. The callback for
+ * each check is always run on the main thread.
+ * <p>
+ * Lookups only consider edits made before the check was queued, since CoreProtect has usually logged the
+ * break being checked by the time it is looked up. A block placed while a lookup is in flight stops its
+ * result from being cached.
+ */
+public class CoreProtectVerifier implements Listener {
+
+    private final BukkitQuestsPlugin plugin;
+    private final AbstractCoreProtectHook hook;
+    private final BlockingQueue<Check> queue = new LinkedBlockingQueue<>();
+    private final Queue<Runnable> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final Map<Key, Result> cache;
+    private final int batchSize;
+    private final long cacheExpiry;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong totalLookupTime = new AtomicLong();
+    private final AtomicLong lastLookupTime = new AtomicLong();
+
+    private Thread worker;
+    private volatile boolean running;
+
+    public CoreProtectVerifier(BukkitQuestsPlugin plugin, AbstractCoreProtectHook hook) {
+        this.plugin = plugin;
+        this.hook = hook;
+        this.batchSize = plugin.getQuestsConfig().getInt("options.performance-tweaking.coreprotect-batch-size", 64);
+        this.cacheExpiry = plugin.getQuestsConfig().getInt("options.performance-tweaking.coreprotect-cache-expiry", 1200) * 50L;
+        int cacheSize = plugin.getQuestsConfig().getInt("options.performance-tweaking.coreprotect-cache-size", 4096);
+        this.cache = new LinkedHashMap<Key, Result>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Result> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public void start() {
+        if (!hook.isAvailable() || running) return;
+
+        running = true;
+        worker = new Thread(this::work, "Quests CoreProtect Verifier");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stop the worker. Anything it has not finished is checked on the calling thread, which should be the
+     * main thread, so no progress is lost when the plugin is disabled or reloaded.
+     */
+    public void stop() {
+        running = false;
+        if (worker != null) {
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker = null;
+        }
+        runCompleted();
+
+        Check check;
+        while ((check = queue.poll()) != null) {
+            boolean placedByPlayer;
+            try {
+                placedByPlayer = hook.checkBlock(check.block, check.time, check.before);
+            } catch (Exception e) {
+                plugin.getQuestsLogger().debug("CoreProtect lookup failed: " + e.getMessage());
+                placedByPlayer = false;
+            }
+            runCallback(check, placedByPlayer);
+        }
+    }
+
+    /**
+     * Check whether the most recent edit to a block was the result of a player.
+     *
+     * @param block the block
+     * @param time the time to look back in seconds
+     * @param callback called on the main thread with true if the block was placed by a player
+     */
+    public void verify(Block block, int time, Consumer<Boolean> callback) {
+        verify(block, time, System.currentTimeMillis(), callback);
+    }
+
+    /**
+     * Check whether the most recent edit to a block before a point in time was the result of a player. This
+     * should be used when the check is for an event which happened earlier, such as one replayed once a player
+     * has loaded.
+     *
+     * @param block the block
+     * @param time the time to look back in seconds
+     * @param before the time in milliseconds of the event being checked
+     * @param callback called on the main thread with true if the block was placed by a player
+     */
+    public void verify(Block block, int time, long before, Consumer<Boolean> callback) {
+        if (!running) {
+            callback.accept(hook.isAvailable() && hook.checkBlock(block, time, before));
+            return;
+        }
+
+        Key key = new Key(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ());
+        Boolean cached = getCached(key, time);
+        if (cached != null) {
+            cacheHits.incrementAndGet();
+            callback.accept(cached);
+            return;
+        }
+        queue.add(new Check(key, block, time, before, generation.get(), callback));
+    }
+
+    // a block placed at a position makes any previous result for it stale, and the marker left in its place stops
+    // lookups which are already in flight from caching theirs
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        Block block = event.getBlock();
+        Key key = new Key(block.getWorld().getUID(), block.getX(), block.getY(), block.getZ());
+        synchronized (cache) {
+            cache.put(key, new Result(false, -1, 0, generation.incrementAndGet()));
+        }
+    }
+
+    /**
+     * @return number of checks waiting to be looked up
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return number of lookups made against CoreProtect
+     */
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    /**
+     * @return number of checks answered from the cache
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * @return the average time taken by a lookup in milliseconds
+     */
+    public double getAverageLookupTime() {
+        long count = lookups.get();
+        return count == 0 ? 0 : totalLookupTime.get() / (count * 1_000_000D);
+    }
+
+    /**
+     * @return the time taken by the most recent lookup in milliseconds
+     */
+    public double getLastLookupTime() {
+        return lastLookupTime.get() / 1_000_000D;
+    }
+
+    private void work() {
+        List<Check> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                Check first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                for (Check check : batch) {
+                    Boolean result = getCached(check.key, check.time);
+                    if (result == null) {
+                        long start = System.nanoTime();
+                        try {
+                            result = hook.checkBlock(check.block, check.time, check.before);
+                        } catch (Exception e) {
+                            plugin.getQuestsLogger().debug("CoreProtect lookup failed: " + e.getMessage());
+                            result = false;
+                        }
+                        long elapsed = System.nanoTime() - start;
+                        lookups.incrementAndGet();
+                        totalLookupTime.addAndGet(elapsed);
+                        lastLookupTime.set(elapsed);
+
+                        synchronized (cache) {
+                            Result existing = cache.get(check.key);
+                            if (existing == null || existing.generation <= check.generation) {
+                                cache.put(check.key, new Result(result, check.time, System.currentTimeMillis() + cacheExpiry, check.generation));
+                            }
+                        }
+                    } else {
+                        cacheHits.incrementAndGet();
+                    }
+
+                    boolean placedByPlayer = result;
+                    completed.add(() -> runCallback(check, placedByPlayer));
+                }
+                // if stopping, whatever is left is run by stop() instead
+                if (running) {
+                    plugin.getScheduler().doSync(this::runCompleted);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void runCompleted() {
+        Runnable runnable;
+        while ((runnable = completed.poll()) != null) {
+            runnable.run();
+        }
+    }
+
+    private void runCallback(Check check, boolean placedByPlayer) {
+        try {
+            check.callback.accept(placedByPlayer);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private Boolean getCached(Key key, int time) {
+        synchronized (cache) {
+            Result result = cache.get(key);
+            if (result == null || result.time != time) {
+                return null;
+            }
+            if (System.currentTimeMillis() >= result.expiry) {
+                cache.remove(key);
+                return null;
+            }
+            return result.placedByPlayer;
+        }
+    }
+
+    private static final class Check {
+        private final Key key;
+        private final Block block;
+        private final int time;
+        private final long before;
+        private final long generation;
+        private final Consumer<Boolean> callback;
+
+        private Check(Key key, Block block, int time, long before, long generation, Consumer<Boolean> callback) {
+            this.key = key;
+            this.block = block;
+            this.time = time;
+            this.before = before;
+            this.generation = generation;
+            this.callback = callback;
+        }
+    }
+
+    private static final class Result {
+        private final boolean placedByPlayer;
+        private final int time;
+        private final long expiry;
+        private final long generation;
+
+        private Result(boolean placedByPlayer, int time, long expiry, long generation) {
+            this.placedByPlayer = placedByPlayer;
+            this.time = time;
+            this.expiry = expiry;
+            this.generation = generation;
+        }
+    }
+
+    private static final class Key {
+        private final UUID world;
+        private final int x;
+        private final int y;
+        private final int z;
+
+        private Key(UUID world, int x, int y, int z) {
+            this.world = world;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return x == key.x && y == key.y && z == key.z && world.equals(key.world);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(world, x, y, z);
+        }
+    }
+}
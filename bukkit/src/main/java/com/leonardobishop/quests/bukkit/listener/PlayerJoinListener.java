@@ -6,17 +6,75 @@ import com.leonardobishop.quests.common.player.QPlayer;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class PlayerJoinListener implements Listener {
 
+    private static final long PREFETCH_GRACE_TICKS = 30 * 20;
+
     private final BukkitQuestsPlugin plugin;
+    private final Map<UUID, CompletableFuture<Void>> prefetches = new ConcurrentHashMap<>();
 
     public PlayerJoinListener(BukkitQuestsPlugin plugin) {
         this.plugin = plugin;
     }
 
+    // data is loaded asynchronously while the login thread waits for up to prefetch-timeout, so it is usually
+    // ready by the time the player joins
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        if (!plugin.getQuestsConfig().getBoolean("options.storage.synchronisation.prefetch-on-login", true)) return;
+        // a delay is used to wait for another server to save the player first, so nothing can be loaded yet
+        if (plugin.getQuestsConfig().getInt("options.storage.synchronisation.delay-loading", 0) > 0) return;
+
+        UUID uuid = event.getUniqueId();
+        plugin.getPlayerManager().markLoading(uuid);
+        CompletableFuture<Void> prefetch = CompletableFuture.runAsync(() -> plugin.getPlayerManager().stagePlayer(uuid),
+                runnable -> plugin.getServer().getScheduler().runTaskAsynchronously(plugin, runnable));
+        prefetches.put(uuid, prefetch);
+        int timeout = plugin.getQuestsConfig().getInt("options.storage.synchronisation.prefetch-timeout", 5000);
+        // the player may disconnect before logging in, in which case nothing else would discard the prefetch
+        plugin.getServer().getScheduler().runTaskLater(plugin, () -> expirePrefetch(uuid, prefetch),
+                timeout / 50 + PREFETCH_GRACE_TICKS);
+        try {
+            prefetch.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            plugin.getQuestsLogger().debug("Prefetching player " + uuid + " timed out, they will be loaded once it completes.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            plugin.getQuestsLogger().severe("Failed to prefetch player: " + uuid + "!");
+            e.getCause().printStackTrace();
+        }
+    }
+
+    private void expirePrefetch(UUID uuid, CompletableFuture<Void> prefetch) {
+        if (plugin.getServer().getPlayer(uuid) != null || !prefetches.remove(uuid, prefetch)) return;
+        plugin.getQuestsLogger().debug("Player " + uuid + " did not join after being prefetched, discarding.");
+        plugin.getPlayerManager().discardStagedPlayer(uuid);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent event) {
+        if (event.getResult() == PlayerLoginEvent.Result.ALLOWED) return;
+        UUID uuid = event.getPlayer().getUniqueId();
+        prefetches.remove(uuid);
+        plugin.getPlayerManager().discardStagedPlayer(uuid);
+    }
+
     @EventHandler
     public void onEvent(PlayerJoinEvent event) {
         if (plugin.getDescription().getVersion().contains("beta") && event.getPlayer().hasPermission("quests.admin")) {
@@ -32,16 +90,46 @@ public class PlayerJoinListener implements Listener {
         }
 
         final Player player = event.getPlayer();
+        CompletableFuture<Void> prefetch = prefetches.remove(player.getUniqueId());
+        if (prefetch == null) {
+            load(player);
+        } else if (prefetch.isDone()) {
+            finishLoading(player, true);
+        } else {
+            prefetch.whenComplete((result, throwable) -> plugin.getServer().getScheduler().runTask(plugin, () -> finishLoading(player, true)));
+        }
+    }
+
+    private void load(Player player) {
+        plugin.getPlayerManager().markLoading(player.getUniqueId());
         plugin.getServer().getScheduler().runTaskLaterAsynchronously(plugin, () -> {
-            if (!player.isOnline()) return;
+            if (!player.isOnline()) {
+                plugin.getPlayerManager().discardStagedPlayer(player.getUniqueId());
+                return;
+            }
             plugin.getPlayerManager().loadPlayer(player.getUniqueId());
-            plugin.getServer().getScheduler().runTask(plugin, () -> {
-                QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
-                if (qPlayer == null) return;
-                // run a full check to check for any missed quest completions
-                plugin.getQuestCompleter().queueFullCheck(qPlayer.getQuestProgressFile());
-            });
+            plugin.getServer().getScheduler().runTask(plugin, () -> finishLoading(player, false));
         }, plugin.getQuestsConfig().getInt("options.storage.synchronisation.delay-loading", 0));
     }
 
+    private void finishLoading(Player player, boolean prefetched) {
+        if (!player.isOnline()) {
+            plugin.getPlayerManager().discardStagedPlayer(player.getUniqueId());
+            return;
+        }
+        if (!plugin.getPlayerManager().promotePlayer(player.getUniqueId())) {
+            if (prefetched) {
+                // the prefetch failed, so try again the usual way
+                load(player);
+            } else {
+                plugin.getPlayerManager().discardStagedPlayer(player.getUniqueId());
+            }
+            return;
+        }
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+        if (qPlayer == null) return;
+        // run a full check to check for any missed quest completions
+        plugin.getQuestCompleter().queueFullCheck(qPlayer.getQuestProgressFile());
+    }
+
 }
@@ -17,7 +17,10 @@ public class PlayerLeaveListener implements Listener {
     @EventHandler
     public void onEvent(PlayerQuitEvent event) {
         QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
-        if (qPlayer == null) return;
+        if (qPlayer == null) {
+            plugin.getPlayerManager().discardStagedPlayer(event.getPlayer().getUniqueId());
+            return;
+        }
         plugin.getPlayerManager().removePlayer(qPlayer.getPlayerUUID());
     }
 
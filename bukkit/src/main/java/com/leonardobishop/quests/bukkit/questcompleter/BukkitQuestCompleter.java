@@ -71,7 +71,7 @@ public class BukkitQuestCompleter implements QuestCompleter, Runnable {
                 boolean complete = true;
                 for (Task task : quest.getTasks()) {
                     TaskProgress taskProgress;
-                    if ((taskProgress = questProgress.getTaskProgress(task.getId())) == null || !taskProgress.isCompleted()) {
+                    if ((taskProgress = questProgress.getTaskProgress(task)) == null || !taskProgress.isCompleted()) {
                         complete = false;
                         break;
                     }
@@ -87,7 +87,7 @@ public class BukkitQuestCompleter implements QuestCompleter, Runnable {
         boolean complete = true;
         for (Task task : quest.getTasks()) {
             TaskProgress taskProgress;
-            if ((taskProgress = questProgress.getTaskProgress(task.getId())) == null || !taskProgress.isCompleted()) {
+            if ((taskProgress = questProgress.getTaskProgress(task)) == null || !taskProgress.isCompleted()) {
                 complete = false;
                 break;
             }
@@ -100,10 +100,11 @@ public class NormalQuestController implements QuestController {
                 taskProgress.setCompleted(false);
                 taskProgress.setProgress(null);
             }
+            questProgress.setCompleted(false);
+            qPlayer.getActiveTaskIndex().invalidate();
             if (config.getBoolean("options.allow-quest-track") && config.getBoolean("options.quest-autotrack")) {
                 qPlayer.trackQuest(quest);
             }
-            questProgress.setCompleted(false);
             if (player != null) {
                 QItemStack qItemStack = plugin.getQItemStackRegistry().getQuestItemStack(quest);
                 String displayName = Chat.strip(qItemStack.getName());
@@ -190,6 +191,7 @@ public class NormalQuestController implements QuestController {
         questProgress.setCompleted(true);
         questProgress.setCompletedBefore(true);
         questProgress.setCompletionDate(System.currentTimeMillis());
+        qPlayer.getActiveTaskIndex().invalidate();
         if (config.getBoolean("options.allow-quest-track")) {
             trackNextQuest(qPlayer, quest);
         }
@@ -248,6 +250,7 @@ public class NormalQuestController implements QuestController {
         for (TaskProgress taskProgress : questProgress.getTaskProgress()) {
             taskProgress.setProgress(null);
         }
+        qPlayer.getActiveTaskIndex().invalidate();
         if (player != null) {
             QItemStack qItemStack = plugin.getQItemStackRegistry().getQuestItemStack(quest);
             String displayName = Chat.strip(qItemStack.getName());
@@ -0,0 +1,181 @@
+package com.leonardobishop.quests.bukkit.runnable;
+
+import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
+import com.leonardobishop.quests.common.player.QPlayer;
+import com.leonardobishop.quests.common.player.SaveQueue;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The autosave service periodically saves online players whose progress has changed. There is a single
+ * long-lived task, and a new cycle is only started once every save submitted by the previous one has been
+ * written, so cycles never overlap. Other saves waiting in the queue do not hold a cycle open. Within a cycle, players are submitted to the save queue a few at a time under a
+ * per-tick time budget; the number per tick grows while storage keeps up and is halved when saves back up.
+ * The same task also sweeps expired players out of the offline player cache once a second.
+ */
+public class QuestsAutoSaveService {
+
+    private static final int MAX_PACE = 64;
+    private static final int BACKLOG_TICKS = 20;
+    private static final int SWEEP_TICKS = 20;
+
+    private final BukkitQuestsPlugin plugin;
+    private final Queue<UUID> queue = new ArrayDeque<>();
+    // saves of the current cycle which have not finished yet, counted down on the writer thread
+    private AtomicInteger outstanding = new AtomicInteger();
+    private BukkitTask tickTask;
+    private long interval;
+    private long budget;
+    private long ticksUntilCycle;
+    private int pace = 1;
+    private int ticksUntilSweep = SWEEP_TICKS;
+
+    private boolean inCycle;
+    private long cycleStart;
+    private long cycleStartBytes;
+    private int cyclePlayers;
+
+    private long cycles;
+    private long lastCycleDuration;
+    private long lastCycleBytes;
+    private int lastCyclePlayers;
+
+    public QuestsAutoSaveService(BukkitQuestsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * (Re)start the service.
+     *
+     * @param interval the number of ticks from the end of one cycle to the start of the next
+     * @param budget the maximum time in milliseconds to spend submitting saves each tick
+     */
+    public void start(long interval, double budget) {
+        this.interval = Math.max(1, interval);
+        this.budget = (long) (budget * 1_000_000);
+        if (!inCycle) {
+            this.ticksUntilCycle = this.interval;
+        }
+        if (tickTask == null) {
+            tickTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    public void stop() {
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+        queue.clear();
+        inCycle = false;
+    }
+
+    private void tick() {
+        // offline players only expire when the cache is used, so those who are never looked up again are swept here
+        if (--ticksUntilSweep <= 0) {
+            ticksUntilSweep = SWEEP_TICKS;
+            plugin.getPlayerManager().getOfflinePlayerCache().evictExpired();
+        }
+
+        if (!inCycle) {
+            if (--ticksUntilCycle > 0) return;
+            startCycle();
+        }
+
+        SaveQueue saveQueue = plugin.getPlayerManager().getSaveQueue();
+        if (queue.isEmpty()) {
+            if (outstanding.get() == 0) {
+                finishCycle();
+            }
+            return;
+        }
+
+        // hold back while storage is behind, rather than adding to its backlog
+        int backlog = saveQueue.getPendingCount();
+        if (backlog > pace * BACKLOG_TICKS || saveQueue.isFull()) {
+            pace = Math.max(1, pace / 2);
+            return;
+        }
+        if (backlog <= pace) {
+            pace = Math.min(MAX_PACE, pace + 1);
+        }
+
+        long deadline = System.nanoTime() + budget;
+        for (int i = 0; i < pace && !queue.isEmpty(); i++) {
+            if (i > 0 && System.nanoTime() > deadline) break;
+            UUID uuid = queue.poll();
+            if (Bukkit.getPlayer(uuid) == null) continue;
+            outstanding.incrementAndGet();
+            plugin.getPlayerManager().savePlayer(uuid, outstanding::decrementAndGet);
+            cyclePlayers++;
+        }
+    }
+
+    private void startCycle() {
+        inCycle = true;
+        cycleStart = System.nanoTime();
+        cycleStartBytes = plugin.getStorageProvider().getBytesWritten();
+        cyclePlayers = 0;
+        // a fresh counter, so saves still finishing from a stopped cycle are not counted against this one
+        outstanding = new AtomicInteger();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+            if (qPlayer != null && qPlayer.getQuestProgressFile().hasModified()) {
+                queue.add(player.getUniqueId());
+            }
+        }
+    }
+
+    private void finishCycle() {
+        inCycle = false;
+        ticksUntilCycle = interval;
+        cycles++;
+        lastCycleDuration = (System.nanoTime() - cycleStart) / 1_000_000;
+        lastCycleBytes = plugin.getStorageProvider().getBytesWritten() - cycleStartBytes;
+        lastCyclePlayers = cyclePlayers;
+        plugin.getQuestsLogger().debug("Autosave of " + lastCyclePlayers + " player(s) took " + lastCycleDuration + "ms, "
+                + lastCycleBytes + " bytes written.");
+    }
+
+    /**
+     * @return the number of cycles completed
+     */
+    public long getCycles() {
+        return cycles;
+    }
+
+    /**
+     * @return the time in milliseconds from the start of the last cycle until all of its saves were written
+     */
+    public long getLastCycleDuration() {
+        return lastCycleDuration;
+    }
+
+    /**
+     * @return the number of bytes written by the storage provider during the last cycle, which includes
+     * any other saves written at the same time
+     */
+    public long getLastCycleBytes() {
+        return lastCycleBytes;
+    }
+
+    /**
+     * @return the number of players saved in the last cycle
+     */
+    public int getLastCyclePlayers() {
+        return lastCyclePlayers;
+    }
+
+    /**
+     * @return the current number of players submitted each tick
+     */
+    public int getPace() {
+        return pace;
+    }
+}
@@ -0,0 +1,476 @@
+package com.leonardobishop.quests.bukkit.storage;
+
+import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
+import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
+import com.leonardobishop.quests.common.quest.Quest;
+import com.leonardobishop.quests.common.storage.StorageProvider;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stores each player in a compact binary file. Quest and task ids are written once to a string table at
+ * the start of the file and referred to by index, flags are packed into a single byte and numeric progress
+ * is written in its own type rather than as text.
+ * <p>
+ * Like the YAML storage provider, saves only overwrite the quests which have been modified, so the stored
+ * state of each online player is kept in memory. Players who only have a YAML file are read from it, and are
+ * written in the binary format on their next save.
+ */
+public class BinaryStorageProvider implements StorageProvider {
+
+    private static final int MAGIC = 0x51504401; // QPD, version 1
+    private static final TaskProgress.ProgressType[] PROGRESS_TYPES = TaskProgress.ProgressType.values();
+
+    private final Map<UUID, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<String, StoredQuest>> documents = new ConcurrentHashMap<>();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final BukkitQuestsPlugin plugin;
+    private final File directory;
+
+    public BinaryStorageProvider(BukkitQuestsPlugin plugin) {
+        this.plugin = plugin;
+        this.directory = new File(plugin.getDataFolder() + File.separator + "playerdata");
+    }
+
+    private ReentrantLock lock(UUID uuid) {
+        ReentrantLock lock = locks.computeIfAbsent(uuid, u -> new ReentrantLock());
+        lock.lock();
+        return lock;
+    }
+
+    @Override
+    public void init() {
+        directory.mkdirs();
+    }
+
+    @Override
+    public void shutdown() {
+        documents.clear();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @Override
+    public void releaseProgressFile(@NotNull UUID uuid) {
+        documents.remove(uuid);
+    }
+
+    @Override
+    public @Nullable QuestProgressFile loadProgressFile(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        return load(uuid, true);
+    }
+
+    @Override
+    public @Nullable QuestProgressFile loadDetachedProgressFile(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        return load(uuid, false);
+    }
+
+    // the stored state is only kept for players who are joining, and reused when they are saved
+    private @Nullable QuestProgressFile load(UUID uuid, boolean keepDocument) {
+        ReentrantLock lock = lock(uuid);
+        boolean validateQuests = plugin.getQuestsConfig().getBoolean("options.verify-quest-exists-on-load", true);
+
+        QuestProgressFile questProgressFile = new QuestProgressFile(uuid, plugin);
+        try {
+            Map<String, StoredQuest> stored = read(uuid);
+            if (keepDocument) documents.put(uuid, stored);
+
+            for (StoredQuest storedQuest : stored.values()) {
+                Quest quest = plugin.getQuestManager().getQuestById(storedQuest.id);
+                if (validateQuests && quest == null) continue;
+
+                QuestProgress questProgress = new QuestProgress(plugin, storedQuest.id, storedQuest.completed, storedQuest.completedBefore,
+                        storedQuest.completionDate, uuid, storedQuest.started, true);
+                for (StoredTask storedTask : storedQuest.tasks.values()) {
+                    if (validateQuests && quest.getTaskById(storedTask.id) == null) continue;
+
+                    questProgress.addTaskProgress(new TaskProgress(questProgress, storedTask.id, storedTask.progress, uuid, storedTask.completed, false));
+                }
+                questProgressFile.addQuestProgress(questProgress);
+            }
+        } catch (Exception ex) {
+            plugin.getQuestsLogger().severe("Failed to load player: " + uuid + "!");
+            ex.printStackTrace();
+            if (keepDocument) documents.remove(uuid);
+            return null;
+        } finally {
+            lock.unlock();
+        }
+
+        return questProgressFile;
+    }
+
+    @Override
+    public boolean saveProgressFile(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+        Objects.requireNonNull(questProgressFile, "questProgressFile cannot be null");
+
+        ReentrantLock lock = lock(uuid);
+        try {
+            Map<String, StoredQuest> stored = documents.get(uuid);
+            if (stored == null) {
+                stored = read(uuid);
+            }
+
+            for (QuestProgress questProgress : questProgressFile.getAllQuestProgress()) {
+                if (!questProgress.isModified()) continue;
+                StoredQuest storedQuest = new StoredQuest(questProgress.getQuestId(), questProgress.isStarted(), questProgress.isCompleted(),
+                        questProgress.isCompletedBefore(), questProgress.getCompletionDate());
+                StoredQuest previous = stored.get(storedQuest.id);
+                if (previous != null) {
+                    storedQuest.tasks.putAll(previous.tasks);
+                }
+                for (TaskProgress taskProgress : questProgress.getTaskProgress()) {
+                    storedQuest.tasks.put(taskProgress.getTaskId(), new StoredTask(taskProgress.getTaskId(), taskProgress.isCompleted(), taskProgress.getProgress()));
+                }
+                stored.put(storedQuest.id, storedQuest);
+            }
+
+            plugin.getQuestsLogger().debug("Writing player " + uuid + " to disk.");
+            write(stored, getFile(uuid));
+            plugin.getQuestsLogger().debug("Write of player " + uuid + " to disk complete.");
+            return true;
+        } catch (IOException e) {
+            plugin.getQuestsLogger().debug("Failed to write player: " + uuid + "!.");
+            e.printStackTrace();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Convert every player who only has a YAML file to the binary format. Players who already have
+     * a binary file are left alone. This can be run asynchronously.
+     *
+     * @return the number of players converted
+     */
+    public int convertYaml() {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".yml"));
+        if (files == null) {
+            return 0;
+        }
+
+        int converted = 0;
+        for (File file : files) {
+            UUID uuid;
+            try {
+                uuid = UUID.fromString(file.getName().substring(0, file.getName().length() - 4));
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+
+            ReentrantLock lock = lock(uuid);
+            try {
+                File binaryFile = getFile(uuid);
+                if (binaryFile.exists()) continue;
+                write(readYaml(file), binaryFile);
+                converted++;
+            } catch (Exception e) {
+                plugin.getQuestsLogger().severe("Failed to convert player: " + uuid + "!");
+                e.printStackTrace();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return converted;
+    }
+
+    private File getFile(UUID uuid) {
+        return new File(directory, uuid.toString() + ".dat");
+    }
+
+    private Map<String, StoredQuest> read(UUID uuid) throws IOException {
+        File file = getFile(uuid);
+        if (file.exists()) {
+            plugin.getQuestsLogger().debug("Player " + uuid + " has a valid quest progress file.");
+            return readBinary(file);
+        }
+        File yamlFile = new File(directory, uuid.toString() + ".yml");
+        if (yamlFile.exists()) {
+            plugin.getQuestsLogger().debug("Player " + uuid + " has a YAML quest progress file, which will be converted on save.");
+            return readYaml(yamlFile);
+        }
+        plugin.getQuestsLogger().debug("Player " + uuid + " does not have a quest progress file.");
+        return new LinkedHashMap<>();
+    }
+
+    private Map<String, StoredQuest> readYaml(File file) {
+        Map<String, StoredQuest> stored = new LinkedHashMap<>();
+        YamlConfiguration data = YamlConfiguration.loadConfiguration(file);
+        ConfigurationSection questSection = data.getConfigurationSection("quest-progress");
+        if (questSection == null) {
+            return stored;
+        }
+
+        for (String id : questSection.getKeys(false)) {
+            StoredQuest storedQuest = new StoredQuest(id, questSection.getBoolean(id + ".started"), questSection.getBoolean(id + ".completed"),
+                    questSection.getBoolean(id + ".completed-before"), questSection.getLong(id + ".completion-date"));
+            ConfigurationSection taskSection = questSection.getConfigurationSection(id + ".task-progress");
+            if (taskSection != null) {
+                for (String taskId : taskSection.getKeys(false)) {
+                    storedQuest.tasks.put(taskId, new StoredTask(taskId, taskSection.getBoolean(taskId + ".completed"), taskSection.get(taskId + ".progress")));
+                }
+            }
+            stored.put(id, storedQuest);
+        }
+        return stored;
+    }
+
+    private Map<String, StoredQuest> readBinary(File file) throws IOException {
+        // read onto the heap rather than mapped, as a live mapping stops the file being replaced on some platforms
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) ;
+            buffer.flip();
+        }
+
+        if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+            throw new IOException("not a quest progress file, or an unsupported version: " + file.getName());
+        }
+
+        String[] strings = new String[readVarInt(buffer)];
+        for (int i = 0; i < strings.length; i++) {
+            byte[] bytes = new byte[readVarInt(buffer)];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        Map<String, StoredQuest> stored = new LinkedHashMap<>();
+        int quests = readVarInt(buffer);
+        for (int i = 0; i < quests; i++) {
+            String id = strings[readVarInt(buffer)];
+            int flags = buffer.get();
+            long completionDate = (flags & 8) != 0 ? readVarLong(buffer) : 0;
+            StoredQuest storedQuest = new StoredQuest(id, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0, completionDate);
+
+            int tasks = readVarInt(buffer);
+            for (int j = 0; j < tasks; j++) {
+                String taskId = strings[readVarInt(buffer)];
+                int header = buffer.get() & 0xFF;
+                Object progress;
+                switch (PROGRESS_TYPES[header >>> 4]) {
+                    case INT:
+                        progress = (int) zigZagDecode(readVarLong(buffer));
+                        break;
+                    case LONG:
+                        progress = zigZagDecode(readVarLong(buffer));
+                        break;
+                    case FLOAT:
+                        progress = buffer.getFloat();
+                        break;
+                    case DOUBLE:
+                        progress = buffer.getDouble();
+                        break;
+                    case OBJECT:
+                        progress = strings[readVarInt(buffer)];
+                        break;
+                    default:
+                        progress = null;
+                }
+                storedQuest.tasks.put(taskId, new StoredTask(taskId, (header & 1) != 0, progress));
+            }
+            stored.put(id, storedQuest);
+        }
+        return stored;
+    }
+
+    // written to a temporary file first and moved into place, so a crash mid-write leaves the old file intact
+    private void write(Map<String, StoredQuest> stored, File file) throws IOException {
+        StringTable strings = new StringTable();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        writeVarInt(body, stored.size());
+        for (StoredQuest storedQuest : stored.values()) {
+            writeVarInt(body, strings.indexOf(storedQuest.id));
+            boolean hasCompletionDate = storedQuest.completionDate != 0;
+            body.write((storedQuest.started ? 1 : 0) | (storedQuest.completed ? 2 : 0) | (storedQuest.completedBefore ? 4 : 0) | (hasCompletionDate ? 8 : 0));
+            if (hasCompletionDate) {
+                writeVarLong(body, storedQuest.completionDate);
+            }
+
+            writeVarInt(body, storedQuest.tasks.size());
+            for (StoredTask storedTask : storedQuest.tasks.values()) {
+                writeVarInt(body, strings.indexOf(storedTask.id));
+                Object progress = storedTask.progress;
+                TaskProgress.ProgressType type = getProgressType(progress);
+                body.write((type.ordinal() << 4) | (storedTask.completed ? 1 : 0));
+                switch (type) {
+                    case INT:
+                    case LONG:
+                        writeVarLong(body, zigZagEncode(((Number) progress).longValue()));
+                        break;
+                    case FLOAT:
+                        writeInt(body, Float.floatToIntBits((float) progress));
+                        break;
+                    case DOUBLE:
+                        long bits = Double.doubleToLongBits(((Number) progress).doubleValue());
+                        writeInt(body, (int) (bits >>> 32));
+                        writeInt(body, (int) bits);
+                        break;
+                    case OBJECT:
+                        writeVarInt(body, strings.indexOf(String.valueOf(progress)));
+                        break;
+                }
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.size() + strings.size() * 16 + 8);
+        writeInt(out, MAGIC);
+        writeVarInt(out, strings.size());
+        for (String string : strings.strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        body.writeTo(out);
+
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        byte[] bytes = out.toByteArray();
+        Files.write(temp, bytes);
+        bytesWritten.addAndGet(bytes.length);
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static TaskProgress.ProgressType getProgressType(Object progress) {
+        if (progress == null) {
+            return TaskProgress.ProgressType.NONE;
+        } else if (progress instanceof Integer || progress instanceof Short || progress instanceof Byte) {
+            return TaskProgress.ProgressType.INT;
+        } else if (progress instanceof Long) {
+            return TaskProgress.ProgressType.LONG;
+        } else if (progress instanceof Float) {
+            return TaskProgress.ProgressType.FLOAT;
+        } else if (progress instanceof Number) {
+            return TaskProgress.ProgressType.DOUBLE;
+        } else {
+            return TaskProgress.ProgressType.OBJECT;
+        }
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        return (int) readVarLong(buffer);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static final class StringTable {
+        private final List<String> strings = new ArrayList<>();
+        private final Map<String, Integer> indices = new HashMap<>();
+
+        private int indexOf(String string) {
+            return indices.computeIfAbsent(string, s -> {
+                strings.add(s);
+                return strings.size() - 1;
+            });
+        }
+
+        private int size() {
+            return strings.size();
+        }
+    }
+
+    private static final class StoredQuest {
+        private final String id;
+        private final boolean started;
+        private final boolean completed;
+        private final boolean completedBefore;
+        private final long completionDate;
+        private final Map<String, StoredTask> tasks = new LinkedHashMap<>();
+
+        private StoredQuest(String id, boolean started, boolean completed, boolean completedBefore, long completionDate) {
+            this.id = id;
+            this.started = started;
+            this.completed = completed;
+            this.completedBefore = completedBefore;
+            this.completionDate = completionDate;
+        }
+    }
+
+    private static final class StoredTask {
+        private final String id;
+        private final boolean completed;
+        private final Object progress;
+
+        private StoredTask(String id, boolean completed, Object progress) {
+            this.id = id;
+            this.completed = completed;
+            this.progress = progress;
+        }
+    }
+}
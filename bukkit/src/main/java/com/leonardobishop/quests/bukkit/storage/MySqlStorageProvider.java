@@ -13,22 +13,29 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 public class MySqlStorageProvider implements StorageProvider {
 
-    private static final String CREATE_TABLE_QUEST_PROGRESS =
+    static final String CREATE_TABLE_QUEST_PROGRESS =
             "CREATE TABLE IF NOT EXISTS `{prefix}quest_progress` (" +
                     " `uuid`              VARCHAR(36)  NOT NULL," +
                     " `quest_id`          VARCHAR(50)  NOT NULL," +
@@ -37,7 +44,7 @@ public class MySqlStorageProvider implements StorageProvider {
                     " `completed_before`  BOOL         NOT NULL," +
                     " `completion_date`   BIGINT       NOT NULL," +
                     " PRIMARY KEY (`uuid`, `quest_id`));";
-    private static final String CREATE_TABLE_TASK_PROGRESS =
+    static final String CREATE_TABLE_TASK_PROGRESS =
             "CREATE TABLE IF NOT EXISTS `{prefix}task_progress` (" +
                     " `uuid`       VARCHAR(36)  NOT NULL," +
                     " `quest_id`   VARCHAR(50)  NOT NULL," +
@@ -46,10 +53,92 @@ public class MySqlStorageProvider implements StorageProvider {
                     " `progress`   VARCHAR(64)  NULL," +
                     " `data_type`  VARCHAR(10)  NULL," +
                     " PRIMARY KEY (`uuid`, `quest_id`, `task_id`));";
-    private static final String SELECT_PLAYER_QUEST_PROGRESS =
+    static final String SELECT_PLAYER_QUEST_PROGRESS =
             "SELECT quest_id, started, completed, completed_before, completion_date FROM `{prefix}quest_progress` WHERE uuid=?;";
-    private static final String SELECT_PLAYER_TASK_PROGRESS =
+    static final String SELECT_PLAYER_TASK_PROGRESS =
             "SELECT quest_id, task_id, completed, progress, data_type FROM `{prefix}task_progress` WHERE uuid=?;";
+    private static final String SELECT_PLAYERS_PROGRESS =
+            "SELECT q.uuid, q.quest_id, q.started, q.completed, q.completed_before, q.completion_date, t.task_id, t.completed, t.progress, t.data_type" +
+                    " FROM `{prefix}quest_progress` q LEFT JOIN `{prefix}task_progress` t ON t.uuid = q.uuid AND t.quest_id = q.quest_id" +
+                    " WHERE q.uuid IN ({uuids});";
+    private static final int MAX_PLAYERS_PER_QUERY = 500;
+
+    private static final String CREATE_TABLE_IDS =
+            "CREATE TABLE IF NOT EXISTS `{prefix}ids` (" +
+                    " `id`    INT          NOT NULL AUTO_INCREMENT," +
+                    " `name`  VARCHAR(50)  NOT NULL," +
+                    " PRIMARY KEY (`id`)," +
+                    " UNIQUE KEY (`name`));";
+    private static final String CREATE_TABLE_QUEST_PROGRESS_V2 =
+            "CREATE TABLE IF NOT EXISTS `{prefix}quest_progress_v2` (" +
+                    " `uuid`              BINARY(16)  NOT NULL," +
+                    " `quest`             INT         NOT NULL," +
+                    " `started`           BOOL        NOT NULL," +
+                    " `completed`         BOOL        NOT NULL," +
+                    " `completed_before`  BOOL        NOT NULL," +
+                    " `completion_date`   BIGINT      NOT NULL," +
+                    " PRIMARY KEY (`uuid`, `quest`));";
+    private static final String CREATE_TABLE_TASK_PROGRESS_V2 =
+            "CREATE TABLE IF NOT EXISTS `{prefix}task_progress_v2` (" +
+                    " `uuid`             BINARY(16)  NOT NULL," +
+                    " `quest`            INT         NOT NULL," +
+                    " `task`             INT         NOT NULL," +
+                    " `completed`        BOOL        NOT NULL," +
+                    " `progress_type`    TINYINT     NOT NULL," +
+                    " `progress_long`    BIGINT      NULL," +
+                    " `progress_double`  DOUBLE      NULL," +
+                    " PRIMARY KEY (`uuid`, `quest`, `task`));";
+    private static final String CREATE_TABLE_MIGRATION =
+            "CREATE TABLE IF NOT EXISTS `{prefix}migration` (" +
+                    " `name`       VARCHAR(16)  NOT NULL," +
+                    " `last_uuid`  VARCHAR(36)  NULL," +
+                    " `completed`  BOOL         NOT NULL," +
+                    " PRIMARY KEY (`name`));";
+    private static final String SELECT_PLAYERS_PROGRESS_V2 =
+            "SELECT q.uuid, qn.name, q.started, q.completed, q.completed_before, q.completion_date, tn.name, t.completed, t.progress_type, t.progress_long, t.progress_double" +
+                    " FROM `{prefix}quest_progress_v2` q JOIN `{prefix}ids` qn ON qn.id = q.quest" +
+                    " LEFT JOIN `{prefix}task_progress_v2` t ON t.uuid = q.uuid AND t.quest = q.quest" +
+                    " LEFT JOIN `{prefix}ids` tn ON tn.id = t.task" +
+                    " WHERE q.uuid IN ({uuids});";
+    private static final String WRITE_PLAYER_QUEST_PROGRESS_V2 =
+            "INSERT INTO `{prefix}quest_progress_v2` (uuid, quest, started, completed, completed_before, completion_date) VALUES (?,?,?,?,?,?)" +
+                    " ON DUPLICATE KEY UPDATE started=VALUES(started), completed=VALUES(completed), completed_before=VALUES(completed_before), completion_date=VALUES(completion_date)";
+    private static final String WRITE_PLAYER_TASK_PROGRESS_V2 =
+            "INSERT INTO `{prefix}task_progress_v2` (uuid, quest, task, completed, progress_type, progress_long, progress_double) VALUES (?,?,?,?,?,?,?)" +
+                    " ON DUPLICATE KEY UPDATE completed=VALUES(completed), progress_type=VALUES(progress_type), progress_long=VALUES(progress_long), progress_double=VALUES(progress_double)";
+    private static final String INSERT_ID =
+            "INSERT IGNORE INTO `{prefix}ids` (name) VALUES (?);";
+    private static final String SELECT_ID =
+            "SELECT id FROM `{prefix}ids` WHERE name=?;";
+
+    private static final String SELECT_MIGRATION =
+            "SELECT last_uuid, completed FROM `{prefix}migration` WHERE name='v2';";
+    private static final String WRITE_MIGRATION =
+            "INSERT INTO `{prefix}migration` (name, last_uuid, completed) VALUES ('v2',?,?) ON DUPLICATE KEY UPDATE last_uuid=VALUES(last_uuid), completed=VALUES(completed);";
+    private static final String SELECT_ANY_PROGRESS =
+            "SELECT 1 FROM `{prefix}quest_progress` LIMIT 1;";
+    private static final String SELECT_MIGRATION_CHUNK =
+            "SELECT DISTINCT uuid FROM `{prefix}quest_progress` WHERE uuid > ? ORDER BY uuid LIMIT ?;";
+    private static final String MIGRATE_QUEST_IDS =
+            "INSERT IGNORE INTO `{prefix}ids` (name) SELECT DISTINCT quest_id FROM `{prefix}quest_progress` WHERE uuid BETWEEN ? AND ?;";
+    private static final String MIGRATE_TASK_IDS =
+            "INSERT IGNORE INTO `{prefix}ids` (name) SELECT DISTINCT task_id FROM `{prefix}task_progress` WHERE uuid BETWEEN ? AND ?;";
+    private static final String MIGRATE_QUEST_PROGRESS =
+            "INSERT INTO `{prefix}quest_progress_v2` (uuid, quest, started, completed, completed_before, completion_date)" +
+                    " SELECT UNHEX(REPLACE(q.uuid, '-', '')), i.id, q.started, q.completed, q.completed_before, q.completion_date" +
+                    " FROM `{prefix}quest_progress` q JOIN `{prefix}ids` i ON i.name = q.quest_id WHERE q.uuid BETWEEN ? AND ?" +
+                    " ON DUPLICATE KEY UPDATE started=VALUES(started), completed=VALUES(completed), completed_before=VALUES(completed_before), completion_date=VALUES(completion_date);";
+    private static final String MIGRATE_TASK_PROGRESS =
+            "INSERT INTO `{prefix}task_progress_v2` (uuid, quest, task, completed, progress_type, progress_long, progress_double)" +
+                    " SELECT UNHEX(REPLACE(t.uuid, '-', '')), qi.id, ti.id, t.completed," +
+                    " CASE t.data_type WHEN 'int' THEN 1 WHEN 'long' THEN 2 WHEN 'float' THEN 3 WHEN 'double' THEN 4 ELSE 0 END," +
+                    " CASE WHEN t.data_type IN ('int', 'long') THEN CAST(t.progress AS SIGNED) END," +
+                    " CASE WHEN t.data_type IN ('float', 'double') THEN t.progress + 0E0 END" +
+                    " FROM `{prefix}task_progress` t JOIN `{prefix}ids` qi ON qi.name = t.quest_id JOIN `{prefix}ids` ti ON ti.name = t.task_id" +
+                    " WHERE t.uuid BETWEEN ? AND ?" +
+                    " ON DUPLICATE KEY UPDATE completed=VALUES(completed), progress_type=VALUES(progress_type), progress_long=VALUES(progress_long), progress_double=VALUES(progress_double);";
+    private static final TaskProgress.ProgressType[] PROGRESS_TYPES = TaskProgress.ProgressType.values();
+
     private static final String SELECT_KNOWN_PLAYER_QUEST_PROGRESS =
             "SELECT quest_id FROM `{prefix}quest_progress` WHERE uuid=?;";
     private static final String SELECT_KNOWN_PLAYER_TASK_PROGRESS =
@@ -64,6 +153,10 @@ public class MySqlStorageProvider implements StorageProvider {
     private HikariDataSource hikari;
     private String prefix;
     private Function<String, String> statementProcessor;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private int schemaVersion;
+    private volatile boolean dualWrite;
+    private final AtomicBoolean migrating = new AtomicBoolean();
     private boolean fault;
 
     public MySqlStorageProvider(BukkitQuestsPlugin plugin, ConfigurationSection configuration) {
@@ -110,14 +203,43 @@ public class MySqlStorageProvider implements StorageProvider {
         }
         this.prefix = configuration.getString("database-settings.table-prefix", "quests_");
         this.statementProcessor = s -> s.replace("{prefix}", prefix);
+        this.schemaVersion = configuration.getInt("schema-version", 1);
         try (Connection connection = hikari.getConnection()) {
             try (Statement s = connection.createStatement()) {
                 plugin.getQuestsLogger().debug("Creating default tables");
-                s.addBatch(this.statementProcessor.apply(CREATE_TABLE_QUEST_PROGRESS));
-                s.addBatch(this.statementProcessor.apply(CREATE_TABLE_TASK_PROGRESS));
+                if (schemaVersion == 2) {
+                    s.addBatch(this.statementProcessor.apply(CREATE_TABLE_IDS));
+                    s.addBatch(this.statementProcessor.apply(CREATE_TABLE_QUEST_PROGRESS_V2));
+                    s.addBatch(this.statementProcessor.apply(CREATE_TABLE_TASK_PROGRESS_V2));
+                } else {
+                    s.addBatch(this.statementProcessor.apply(CREATE_TABLE_QUEST_PROGRESS));
+                    s.addBatch(this.statementProcessor.apply(CREATE_TABLE_TASK_PROGRESS));
+                }
+                s.addBatch(this.statementProcessor.apply(CREATE_TABLE_MIGRATION));
 
                 s.executeBatch();
             }
+
+            // switching over before the migration has finished would load every player as new
+            if (schemaVersion == 2 && !isMigrated(connection)) {
+                plugin.getQuestsLogger().severe("The database schema is set to version 2, but the migration to it has not finished. " +
+                        "Set 'schema-version' back to 1 and run '/quests a migratedb' first. Player data will not be loaded or saved!");
+                fault = true;
+            }
+
+            // once a migration has started, the new tables are kept up to date until the schema is switched over
+            if (schemaVersion != 2) {
+                try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(SELECT_MIGRATION));
+                     ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        dualWrite = true;
+                        if (!rs.getBoolean(2)) {
+                            plugin.getQuestsLogger().warning("A migration to the v2 database schema was started but has not finished, " +
+                                    "run '/quests a migratedb' to continue it.");
+                        }
+                    }
+                }
+            }
         } catch (SQLException e) {
             e.printStackTrace();
         }
@@ -128,167 +250,450 @@ public class MySqlStorageProvider implements StorageProvider {
         if (hikari != null) hikari.close();
     }
 
+    // true if the migration has completed, or there is no data in the old tables to migrate
+    private boolean isMigrated(Connection connection) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(SELECT_MIGRATION));
+             ResultSet rs = ps.executeQuery()) {
+            if (rs.next() && rs.getBoolean(2)) return true;
+        }
+        try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(SELECT_ANY_PROGRESS));
+             ResultSet rs = ps.executeQuery()) {
+            return !rs.next();
+        } catch (SQLException e) {
+            // the old tables were never created
+            return true;
+        }
+    }
+
     @Override
     @Nullable
     public QuestProgressFile loadProgressFile(@NotNull UUID uuid) {
         Objects.requireNonNull(uuid, "uuid cannot be null");
 
-        if (fault) return null;
-        Map<String, Quest> presentQuests = new HashMap<>(plugin.getQuestManager().getQuests());
-        boolean validateQuests = plugin.getQuestsConfig().getBoolean("options.verify-quest-exists-on-load", true);
+        return loadProgressFiles(Collections.singletonList(uuid)).get(uuid);
+    }
+
+    /**
+     * Load many players at once. Quest and task progress are fetched together, and players are queried
+     * in groups of up to {@value MAX_PLAYERS_PER_QUERY}, so this takes one round-trip per group.
+     */
+    @Override
+    public @NotNull Map<UUID, QuestProgressFile> loadProgressFiles(@NotNull Collection<UUID> uuids) {
+        Objects.requireNonNull(uuids, "uuids cannot be null");
+
+        Map<UUID, QuestProgressFile> questProgressFiles = new HashMap<>();
+        if (fault || uuids.isEmpty()) return questProgressFiles;
 
-        QuestProgressFile questProgressFile = new QuestProgressFile(uuid, plugin);
+        List<UUID> remaining = new ArrayList<>(uuids);
         try (Connection connection = hikari.getConnection()) {
-            plugin.getQuestsLogger().debug("Querying player " + uuid);
-            Map<String, QuestProgress> questProgressMap = new HashMap<>();
-            try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(SELECT_PLAYER_QUEST_PROGRESS))) {
-                ps.setString(1, uuid.toString());
-
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        String questId = rs.getString(1);
-                        boolean started = rs.getBoolean(2);
-                        boolean completed = rs.getBoolean(3);
-                        boolean completedBefore = rs.getBoolean(4);
-                        long completionDate = rs.getLong(5);
-
-                        if (validateQuests && !presentQuests.containsKey(questId)) continue;
-                        QuestProgress questProgress = new QuestProgress(plugin, questId, completed, completedBefore, completionDate, uuid, started);
+            for (int from = 0; from < remaining.size(); from += MAX_PLAYERS_PER_QUERY) {
+                List<UUID> group = remaining.subList(from, Math.min(remaining.size(), from + MAX_PLAYERS_PER_QUERY));
+                plugin.getQuestsLogger().debug("Querying " + group.size() + " player(s)");
+                questProgressFiles.putAll(schemaVersion == 2 ? queryV2(connection, group) : query(connection, group));
+            }
+        } catch (SQLException e) {
+            plugin.getQuestsLogger().severe("Failed to load " + uuids.size() + " player(s)!");
+            e.printStackTrace();
+        }
+        return questProgressFiles;
+    }
+
+    private Map<UUID, QuestProgressFile> query(Connection connection, List<UUID> uuids) throws SQLException {
+        boolean validateQuests = plugin.getQuestsConfig().getBoolean("options.verify-quest-exists-on-load", true);
+
+        Map<UUID, QuestProgressFile> questProgressFiles = new HashMap<>();
+        Map<UUID, Map<String, QuestProgress>> questProgressMaps = new HashMap<>();
+        for (UUID uuid : uuids) {
+            questProgressFiles.put(uuid, new QuestProgressFile(uuid, plugin));
+            questProgressMaps.put(uuid, new HashMap<>());
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(uuids.size(), "?"));
+        try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(SELECT_PLAYERS_PROGRESS).replace("{uuids}", placeholders))) {
+            for (int i = 0; i < uuids.size(); i++) {
+                ps.setString(i + 1, uuids.get(i).toString());
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = UUID.fromString(rs.getString(1));
+                    Map<String, QuestProgress> questProgressMap = questProgressMaps.get(uuid);
+                    if (questProgressMap == null) continue;
+
+                    String questId = rs.getString(2);
+                    Quest quest = plugin.getQuestManager().getQuestById(questId);
+                    if (validateQuests && quest == null) continue;
+
+                    // quest columns are repeated for each task of the quest
+                    QuestProgress questProgress = questProgressMap.get(questId);
+                    if (questProgress == null) {
+                        boolean started = rs.getBoolean(3);
+                        boolean completed = rs.getBoolean(4);
+                        boolean completedBefore = rs.getBoolean(5);
+                        long completionDate = rs.getLong(6);
+                        questProgress = new QuestProgress(plugin, questId, completed, completedBefore, completionDate, uuid, started);
                         questProgressMap.put(questId, questProgress);
                     }
+
+                    String taskId = rs.getString(7);
+                    if (taskId == null) continue;
+                    if (validateQuests && quest.getTaskById(taskId) == null) continue;
+                    boolean completed = rs.getBoolean(8);
+                    String encodedProgress = rs.getString(9);
+                    String type = rs.getString(10);
+
+                    TaskProgress taskProgress = new TaskProgress(questProgress, taskId, null, uuid, completed);
+                    try {
+                        SqlProgressEncoding.decode(taskProgress, type, encodedProgress);
+                    } catch (NumberFormatException ex) {
+                        plugin.getQuestsLogger().warning("Cannot retrieve progress for task '"
+                                + taskId + "' in quest '" + questId + "' for player " + uuid
+                                + " since data is malformed!");
+                        continue;
+                    } catch (IllegalArgumentException ex) {
+                        plugin.getQuestsLogger().warning("Cannot retrieve progress for task '"
+                                + taskId + "' in quest '" + questId + "' for player " + uuid
+                                + ": " + ex.getMessage());
+                        continue;
+                    }
+                    questProgress.addTaskProgress(taskProgress);
                 }
             }
-            try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(SELECT_PLAYER_TASK_PROGRESS))) {
-                ps.setString(1, uuid.toString());
-
-                try (ResultSet rs = ps.executeQuery()) {
-                    while (rs.next()) {
-                        String questId = rs.getString(1);
-                        String taskId = rs.getString(2);
-                        boolean completed = rs.getBoolean(3);
-                        String encodedProgress = rs.getString(4);
-                        String type = rs.getString(5);
-                        Object progress;
-                        try {
-                            if (type == null) {
-                                progress = null;
-                            } else if (type.equals("double")) {
-                                progress = Double.valueOf(encodedProgress);
-                            } else if (type.equals("float")) {
-                                progress = Float.valueOf(encodedProgress);
-                            } else if (type.equals("int")) {
-                                progress = Integer.valueOf(encodedProgress);
-                            } else {
-                                throw new RuntimeException("unknown data type '" + type + "'");
-                            }
-                        } catch (NumberFormatException ex) {
-                            plugin.getQuestsLogger().warning("Cannot retrieve progress for task '"
-                                    + taskId + "' in quest '" + questId + "' for player " + uuid
-                                    + " since data is malformed!");
-                            continue;
-                        } catch (RuntimeException ex) {
-                            if (ex.getMessage().startsWith("unknown data type ")) {
-                                plugin.getQuestsLogger().warning("Cannot retrieve progress for task '"
-                                        + taskId + "' in quest '" + questId + "' for player " + uuid
-                                        + ": " + ex.getMessage());
-                                continue;
-                            } else {
-                                throw ex;
-                            }
-                        }
+        }
 
-                        QuestProgress linkedQuestProgress = questProgressMap.get(questId);
-                        if (linkedQuestProgress == null) continue;
-                        if (validateQuests) {
-                            if (!presentQuests.containsKey(questId)) continue;
-                            if (presentQuests.get(questId).getTaskById(taskId) == null) continue;
-                        }
-                        TaskProgress questProgress = new TaskProgress(linkedQuestProgress, taskId, progress, uuid, completed);
-                        linkedQuestProgress.addTaskProgress(questProgress);
+        for (Map.Entry<UUID, Map<String, QuestProgress>> entry : questProgressMaps.entrySet()) {
+            QuestProgressFile questProgressFile = questProgressFiles.get(entry.getKey());
+            for (QuestProgress questProgress : entry.getValue().values()) {
+                questProgressFile.addQuestProgress(questProgress);
+            }
+        }
+        return questProgressFiles;
+    }
+
+    private Map<UUID, QuestProgressFile> queryV2(Connection connection, List<UUID> uuids) throws SQLException {
+        boolean validateQuests = plugin.getQuestsConfig().getBoolean("options.verify-quest-exists-on-load", true);
+
+        Map<UUID, QuestProgressFile> questProgressFiles = new HashMap<>();
+        Map<UUID, Map<String, QuestProgress>> questProgressMaps = new HashMap<>();
+        for (UUID uuid : uuids) {
+            questProgressFiles.put(uuid, new QuestProgressFile(uuid, plugin));
+            questProgressMaps.put(uuid, new HashMap<>());
+        }
+
+        String placeholders = String.join(",", Collections.nCopies(uuids.size(), "?"));
+        try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(SELECT_PLAYERS_PROGRESS_V2).replace("{uuids}", placeholders))) {
+            for (int i = 0; i < uuids.size(); i++) {
+                ps.setBytes(i + 1, toBytes(uuids.get(i)));
+            }
+
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    UUID uuid = fromBytes(rs.getBytes(1));
+                    Map<String, QuestProgress> questProgressMap = questProgressMaps.get(uuid);
+                    if (questProgressMap == null) continue;
+
+                    String questId = rs.getString(2);
+                    Quest quest = plugin.getQuestManager().getQuestById(questId);
+                    if (validateQuests && quest == null) continue;
+
+                    QuestProgress questProgress = questProgressMap.get(questId);
+                    if (questProgress == null) {
+                        questProgress = new QuestProgress(plugin, questId, rs.getBoolean(4), rs.getBoolean(5), rs.getLong(6), uuid, rs.getBoolean(3));
+                        questProgressMap.put(questId, questProgress);
                     }
+
+                    String taskId = rs.getString(7);
+                    if (taskId == null) continue;
+                    if (validateQuests && quest.getTaskById(taskId) == null) continue;
+
+                    TaskProgress taskProgress = new TaskProgress(questProgress, taskId, null, uuid, rs.getBoolean(8));
+                    int progressType = rs.getInt(9);
+                    switch (progressType < PROGRESS_TYPES.length ? PROGRESS_TYPES[progressType] : TaskProgress.ProgressType.NONE) {
+                        case INT:
+                            taskProgress.setLong(rs.getLong(10));
+                            break;
+                        case LONG:
+                            taskProgress.setProgress(rs.getLong(10));
+                            break;
+                        case FLOAT:
+                            taskProgress.setProgress((float) rs.getDouble(11));
+                            break;
+                        case DOUBLE:
+                            taskProgress.setDouble(rs.getDouble(11));
+                            break;
+                    }
+                    taskProgress.resetModified();
+                    questProgress.addTaskProgress(taskProgress);
                 }
             }
-            for (QuestProgress questProgress : questProgressMap.values()) {
+        }
+
+        for (Map.Entry<UUID, Map<String, QuestProgress>> entry : questProgressMaps.entrySet()) {
+            QuestProgressFile questProgressFile = questProgressFiles.get(entry.getKey());
+            for (QuestProgress questProgress : entry.getValue().values()) {
                 questProgressFile.addQuestProgress(questProgress);
             }
-        } catch (SQLException e) {
-            plugin.getQuestsLogger().severe("Failed to load player: " + uuid + "!");
-            e.printStackTrace();
-            return null;
         }
-        return questProgressFile;
+        return questProgressFiles;
     }
 
     @Override
-    public void saveProgressFile(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
+    public boolean saveProgressFile(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
         Objects.requireNonNull(uuid, "uuid cannot be null");
         Objects.requireNonNull(questProgressFile, "questProgressFile cannot be null");
 
-        if (fault) return;
+        return saveProgressFiles(Collections.singletonMap(uuid, questProgressFile));
+    }
+
+    @Override
+    public boolean saveProgressFiles(@NotNull Map<UUID, QuestProgressFile> questProgressFiles) {
+        Objects.requireNonNull(questProgressFiles, "questProgressFiles cannot be null");
+
+        if (fault) return false;
+        if (questProgressFiles.isEmpty()) return true;
+        try (Connection connection = hikari.getConnection()) {
+            // all players are written in one transaction
+            connection.setAutoCommit(false);
+            Map<String, Integer> allocated = new HashMap<>();
+            try {
+                for (Map.Entry<UUID, QuestProgressFile> entry : questProgressFiles.entrySet()) {
+                    if (schemaVersion != 2) {
+                        write(connection, entry.getKey(), entry.getValue());
+                    }
+                    if (schemaVersion == 2 || dualWrite) {
+                        writeV2(connection, entry.getKey(), entry.getValue(), allocated);
+                    }
+                }
+                connection.commit();
+                ids.putAll(allocated);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } catch (SQLException e) {
+            plugin.getQuestsLogger().severe("Failed to save player(s): " + questProgressFiles.keySet() + "!");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    private void write(Connection connection, UUID uuid, QuestProgressFile questProgressFile) throws SQLException {
+        try (PreparedStatement writeQuestProgress = connection.prepareStatement(this.statementProcessor.apply(WRITE_PLAYER_QUEST_PROGRESS));
+             PreparedStatement writeTaskProgress = connection.prepareStatement(this.statementProcessor.apply(WRITE_PLAYER_TASK_PROGRESS))) {
+
+            List<QuestProgress> questProgressValues = new ArrayList<>(questProgressFile.getAllQuestProgress());
+            for (QuestProgress questProgress : questProgressValues) {
+                if (!questProgress.isModified()) continue;
+                
+                String questId = questProgress.getQuestId();
+                writeQuestProgress.setString(1, uuid.toString());
+                writeQuestProgress.setString(2, questProgress.getQuestId());
+                writeQuestProgress.setBoolean(3, questProgress.isStarted());
+                writeQuestProgress.setBoolean(4, questProgress.isCompleted());
+                writeQuestProgress.setBoolean(5, questProgress.isCompletedBefore());
+                writeQuestProgress.setLong(6, questProgress.getCompletionDate());
+                writeQuestProgress.setBoolean(7, questProgress.isStarted());
+                writeQuestProgress.setBoolean(8, questProgress.isCompleted());
+                writeQuestProgress.setBoolean(9, questProgress.isCompletedBefore());
+                writeQuestProgress.setLong(10, questProgress.getCompletionDate());
+                writeQuestProgress.addBatch();
+
+                for (TaskProgress taskProgress : questProgress.getTaskProgress()) {
+                    String taskId = taskProgress.getTaskId();
+
+                    String encodedProgress;
+                    String type;
+                    try {
+                        type = SqlProgressEncoding.getDataType(taskProgress);
+                        encodedProgress = SqlProgressEncoding.encode(taskProgress);
+                    } catch (IllegalArgumentException ex) {
+                        plugin.getQuestsLogger().warning("Cannot store progress for task '"
+                                + taskId + "' in quest '" + questId + "' for player " + uuid
+                                + " since " + ex.getMessage() + "!");
+                        continue;
+                    }
+                    writeTaskProgress.setString(1, uuid.toString());
+                    writeTaskProgress.setString(2, questId);
+                    writeTaskProgress.setString(3, taskProgress.getTaskId());
+                    writeTaskProgress.setBoolean(4, taskProgress.isCompleted());
+                    writeTaskProgress.setString(5, encodedProgress);
+                    writeTaskProgress.setString(6, type);
+                    writeTaskProgress.setBoolean(7, taskProgress.isCompleted());
+                    writeTaskProgress.setString(8, encodedProgress);
+                    writeTaskProgress.setString(9, type);
+                    writeTaskProgress.addBatch();
+                }
+            }
+
+            writeQuestProgress.executeBatch();
+            writeTaskProgress.executeBatch();
+        }
+    }
+
+    private void writeV2(Connection connection, UUID uuid, QuestProgressFile questProgressFile, Map<String, Integer> allocated) throws SQLException {
+        byte[] uuidBytes = toBytes(uuid);
+        try (PreparedStatement writeQuestProgress = connection.prepareStatement(this.statementProcessor.apply(WRITE_PLAYER_QUEST_PROGRESS_V2));
+             PreparedStatement writeTaskProgress = connection.prepareStatement(this.statementProcessor.apply(WRITE_PLAYER_TASK_PROGRESS_V2))) {
+
+            for (QuestProgress questProgress : questProgressFile.getAllQuestProgress()) {
+                if (!questProgress.isModified()) continue;
+
+                int questId = getId(connection, questProgress.getQuestId(), allocated);
+                writeQuestProgress.setBytes(1, uuidBytes);
+                writeQuestProgress.setInt(2, questId);
+                writeQuestProgress.setBoolean(3, questProgress.isStarted());
+                writeQuestProgress.setBoolean(4, questProgress.isCompleted());
+                writeQuestProgress.setBoolean(5, questProgress.isCompletedBefore());
+                writeQuestProgress.setLong(6, questProgress.getCompletionDate());
+                writeQuestProgress.addBatch();
+
+                for (TaskProgress taskProgress : questProgress.getTaskProgress()) {
+                    TaskProgress.ProgressType progressType = taskProgress.getProgressType();
+                    if (progressType == TaskProgress.ProgressType.OBJECT) {
+                        plugin.getQuestsLogger().warning("Cannot store progress for task '"
+                                + taskProgress.getTaskId() + "' in quest '" + questProgress.getQuestId() + "' for player " + uuid
+                                + " since type " + taskProgress.getProgress().getClass().getName() + " cannot be encoded!");
+                        continue;
+                    }
+                    writeTaskProgress.setBytes(1, uuidBytes);
+                    writeTaskProgress.setInt(2, questId);
+                    writeTaskProgress.setInt(3, getId(connection, taskProgress.getTaskId(), allocated));
+                    writeTaskProgress.setBoolean(4, taskProgress.isCompleted());
+                    writeTaskProgress.setInt(5, progressType.ordinal());
+                    if (progressType == TaskProgress.ProgressType.INT || progressType == TaskProgress.ProgressType.LONG) {
+                        writeTaskProgress.setLong(6, taskProgress.getLong());
+                    } else {
+                        writeTaskProgress.setNull(6, Types.BIGINT);
+                    }
+                    if (progressType == TaskProgress.ProgressType.FLOAT || progressType == TaskProgress.ProgressType.DOUBLE) {
+                        writeTaskProgress.setDouble(7, taskProgress.getDouble());
+                    } else {
+                        writeTaskProgress.setNull(7, Types.DOUBLE);
+                    }
+                    writeTaskProgress.addBatch();
+                }
+            }
+
+            writeQuestProgress.executeBatch();
+            writeTaskProgress.executeBatch();
+        }
+    }
+
+    // quest and task ids are given a surrogate id the first time they are written, which never changes. ids created
+    // by a transaction are only cached once it commits, since a rollback takes them away again
+    private int getId(Connection connection, String name, Map<String, Integer> allocated) throws SQLException {
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = allocated.get(name);
+        }
+        if (id != null) {
+            return id;
+        }
+        try (PreparedStatement insert = connection.prepareStatement(this.statementProcessor.apply(INSERT_ID))) {
+            insert.setString(1, name);
+            insert.executeUpdate();
+        }
+        try (PreparedStatement select = connection.prepareStatement(this.statementProcessor.apply(SELECT_ID))) {
+            select.setString(1, name);
+            try (ResultSet rs = select.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("id for '" + name + "' was not created");
+                }
+                id = rs.getInt(1);
+            }
+        }
+        allocated.put(name, id);
+        return id;
+    }
+
+    /**
+     * Copy all data from the original tables into the v2 schema, a chunk of players at a time. Saves are
+     * written to both schemas from the moment the migration starts, so the server can stay online while it runs.
+     * An interrupted migration carries on from the last chunk it completed. This must not be called on the
+     * main thread.
+     *
+     * @param chunkSize the number of players to copy in each chunk
+     * @param progress called with a message after each chunk
+     * @return true if the migration completed
+     */
+    public boolean migrateToV2(int chunkSize, Consumer<String> progress) {
+        if (fault || schemaVersion == 2 || !migrating.compareAndSet(false, true)) return false;
+
         try (Connection connection = hikari.getConnection()) {
-            try (PreparedStatement writeQuestProgress = connection.prepareStatement(this.statementProcessor.apply(WRITE_PLAYER_QUEST_PROGRESS));
-                 PreparedStatement writeTaskProgress = connection.prepareStatement(this.statementProcessor.apply(WRITE_PLAYER_TASK_PROGRESS))) {
-
-                List<QuestProgress> questProgressValues = new ArrayList<>(questProgressFile.getAllQuestProgress());
-                for (QuestProgress questProgress : questProgressValues) {
-                    if (!questProgress.isModified()) continue;
-                    
-                    String questId = questProgress.getQuestId();
-                    writeQuestProgress.setString(1, uuid.toString());
-                    writeQuestProgress.setString(2, questProgress.getQuestId());
-                    writeQuestProgress.setBoolean(3, questProgress.isStarted());
-                    writeQuestProgress.setBoolean(4, questProgress.isCompleted());
-                    writeQuestProgress.setBoolean(5, questProgress.isCompletedBefore());
-                    writeQuestProgress.setLong(6, questProgress.getCompletionDate());
-                    writeQuestProgress.setBoolean(7, questProgress.isStarted());
-                    writeQuestProgress.setBoolean(8, questProgress.isCompleted());
-                    writeQuestProgress.setBoolean(9, questProgress.isCompletedBefore());
-                    writeQuestProgress.setLong(10, questProgress.getCompletionDate());
-                    writeQuestProgress.addBatch();
-
-                    for (TaskProgress taskProgress : questProgress.getTaskProgress()) {
-                        String taskId = taskProgress.getTaskId();
-
-                        String encodedProgress;
-                        Object progress = taskProgress.getProgress();
-                        String type;
-                        if (progress == null) {
-                            type = null;
-                            encodedProgress = null;
-                        } else if (progress instanceof Double) {
-                            type = "double";
-                            encodedProgress = String.valueOf(progress);
-                        } else if (progress instanceof Integer) {
-                            type = "int";
-                            encodedProgress = String.valueOf(progress);
-                        } else if (progress instanceof Float) {
-                            type = "float";
-                            encodedProgress = String.valueOf(progress);
-                        } else {
-                            plugin.getQuestsLogger().warning("Cannot store progress for task '"
-                                    + taskId + "' in quest '" + questId + "' for player " + uuid
-                                    + " since type " + progress.getClass().getName() + " cannot be encoded!");
-                            continue;
+            try (Statement s = connection.createStatement()) {
+                s.addBatch(this.statementProcessor.apply(CREATE_TABLE_IDS));
+                s.addBatch(this.statementProcessor.apply(CREATE_TABLE_QUEST_PROGRESS_V2));
+                s.addBatch(this.statementProcessor.apply(CREATE_TABLE_TASK_PROGRESS_V2));
+                s.executeBatch();
+            }
+
+            String lastUuid = "";
+            try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(SELECT_MIGRATION));
+                 ResultSet rs = ps.executeQuery()) {
+                if (rs.next() && rs.getString(1) != null) {
+                    lastUuid = rs.getString(1);
+                }
+            }
+            updateMigration(connection, lastUuid, false);
+            dualWrite = true;
+
+            int migrated = 0;
+            while (true) {
+                List<String> chunk = new ArrayList<>(chunkSize);
+                try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(SELECT_MIGRATION_CHUNK))) {
+                    ps.setString(1, lastUuid);
+                    ps.setInt(2, chunkSize);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            chunk.add(rs.getString(1));
                         }
-                        writeTaskProgress.setString(1, uuid.toString());
-                        writeTaskProgress.setString(2, questId);
-                        writeTaskProgress.setString(3, taskProgress.getTaskId());
-                        writeTaskProgress.setBoolean(4, taskProgress.isCompleted());
-                        writeTaskProgress.setString(5, encodedProgress);
-                        writeTaskProgress.setString(6, type);
-                        writeTaskProgress.setBoolean(7, taskProgress.isCompleted());
-                        writeTaskProgress.setString(8, encodedProgress);
-                        writeTaskProgress.setString(9, type);
-                        writeTaskProgress.addBatch();
                     }
                 }
+                if (chunk.isEmpty()) break;
 
-                writeQuestProgress.executeBatch();
-                writeTaskProgress.executeBatch();
+                String first = chunk.get(0);
+                String last = chunk.get(chunk.size() - 1);
+                for (String statement : new String[]{MIGRATE_QUEST_IDS, MIGRATE_TASK_IDS, MIGRATE_QUEST_PROGRESS, MIGRATE_TASK_PROGRESS}) {
+                    try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(statement))) {
+                        ps.setString(1, first);
+                        ps.setString(2, last);
+                        ps.executeUpdate();
+                    }
+                }
+                lastUuid = last;
+                updateMigration(connection, lastUuid, false);
+                migrated += chunk.size();
+                progress.accept("Migrated " + migrated + " player(s)...");
             }
+
+            updateMigration(connection, lastUuid, true);
+            return true;
         } catch (SQLException e) {
-            plugin.getQuestsLogger().severe("Failed to save player: " + uuid + "!");
+            plugin.getQuestsLogger().severe("Failed to migrate to the v2 database schema!");
             e.printStackTrace();
+            return false;
+        } finally {
+            migrating.set(false);
         }
     }
+
+    private void updateMigration(Connection connection, String lastUuid, boolean completed) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(WRITE_MIGRATION))) {
+            ps.setString(1, lastUuid);
+            ps.setBoolean(2, completed);
+            ps.executeUpdate();
+        }
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+
+    private static UUID fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return new UUID(buffer.getLong(), buffer.getLong());
+    }
 }
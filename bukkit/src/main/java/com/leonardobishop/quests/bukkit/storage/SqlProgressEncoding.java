@@ -0,0 +1,74 @@
+package com.leonardobishop.quests.bukkit.storage;
+
+import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The encoding of task progress shared by the SQL storage providers, where progress is stored as
+ * text alongside the name of its data type.
+ */
+final class SqlProgressEncoding {
+
+    private SqlProgressEncoding() { }
+
+    /**
+     * @return the name of the data type of the progress, or null if there is no progress
+     * @throws IllegalArgumentException if the progress cannot be encoded
+     */
+    static @Nullable String getDataType(TaskProgress taskProgress) {
+        switch (taskProgress.getProgressType()) {
+            case NONE:
+                return null;
+            case INT:
+                return "int";
+            case LONG:
+                return "long";
+            case FLOAT:
+                return "float";
+            case DOUBLE:
+                return "double";
+            default:
+                throw new IllegalArgumentException("type " + taskProgress.getProgress().getClass().getName() + " cannot be encoded");
+        }
+    }
+
+    /**
+     * @return the progress as text, or null if there is no progress
+     */
+    static @Nullable String encode(TaskProgress taskProgress) {
+        switch (taskProgress.getProgressType()) {
+            case INT:
+            case LONG:
+                return Long.toString(taskProgress.getLong());
+            case FLOAT:
+                return Float.toString((float) taskProgress.getDouble());
+            case DOUBLE:
+                return Double.toString(taskProgress.getDouble());
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Set the progress of a task from its encoded form, without marking it as modified.
+     *
+     * @throws NumberFormatException if the progress is malformed
+     * @throws IllegalArgumentException if the data type is not known
+     */
+    static void decode(TaskProgress taskProgress, @Nullable String type, @Nullable String encodedProgress) {
+        if (type == null) {
+            return;
+        } else if (type.equals("double")) {
+            taskProgress.setDouble(Double.parseDouble(encodedProgress));
+        } else if (type.equals("float")) {
+            taskProgress.setProgress(Float.parseFloat(encodedProgress));
+        } else if (type.equals("int")) {
+            taskProgress.setLong(Integer.parseInt(encodedProgress));
+        } else if (type.equals("long")) {
+            taskProgress.setProgress(Long.parseLong(encodedProgress));
+        } else {
+            throw new IllegalArgumentException("unknown data type '" + type + "'");
+        }
+        taskProgress.resetModified();
+    }
+}
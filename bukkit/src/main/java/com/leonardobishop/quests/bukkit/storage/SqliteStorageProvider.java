@@ -0,0 +1,336 @@
+package com.leonardobishop.quests.bukkit.storage;
+
+import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
+import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
+import com.leonardobishop.quests.common.quest.Quest;
+import com.leonardobishop.quests.common.storage.StorageProvider;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Stores players in an embedded SQLite database, using the same tables as {@link MySqlStorageProvider}.
+ * The database runs in WAL mode, so loads are made concurrently from a small set of read connections while a
+ * single writer thread owns the only write connection. Saves made around the same time are grouped into one
+ * transaction; each save still only returns once its transaction has been committed.
+ */
+public class SqliteStorageProvider implements StorageProvider {
+
+    private static final String WRITE_PLAYER_QUEST_PROGRESS =
+            "INSERT OR REPLACE INTO `{prefix}quest_progress` (uuid, quest_id, started, completed, completed_before, completion_date) VALUES (?,?,?,?,?,?)";
+    private static final String WRITE_PLAYER_TASK_PROGRESS =
+            "INSERT OR REPLACE INTO `{prefix}task_progress` (uuid, quest_id, task_id, completed, progress, data_type) VALUES (?,?,?,?,?,?)";
+
+    private final ConfigurationSection configuration;
+    private final BukkitQuestsPlugin plugin;
+    private final BlockingQueue<PendingSave> queue = new LinkedBlockingQueue<>();
+    private BlockingQueue<Connection> readConnections;
+    private Connection writeConnection;
+    private Function<String, String> statementProcessor;
+    private int batchSize;
+    private Thread writer;
+    private volatile boolean running;
+    private boolean fault;
+
+    public SqliteStorageProvider(BukkitQuestsPlugin plugin, ConfigurationSection configuration) {
+        this.plugin = plugin;
+        if (configuration == null) {
+            configuration = new YamlConfiguration();
+        }
+        this.configuration = configuration;
+    }
+
+    @Override
+    public void init() {
+        File file = new File(plugin.getDataFolder(), configuration.getString("file", "database.db"));
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        String prefix = configuration.getString("table-prefix", "quests_");
+        this.statementProcessor = s -> s.replace("{prefix}", prefix);
+        this.batchSize = Math.max(1, configuration.getInt("batch-size", 64));
+        int readConnectionCount = Math.max(1, configuration.getInt("read-connections", 4));
+
+        try {
+            Class.forName("org.sqlite.JDBC");
+            writeConnection = DriverManager.getConnection(url);
+            try (Statement s = writeConnection.createStatement()) {
+                s.execute("PRAGMA journal_mode=WAL;");
+                s.execute("PRAGMA synchronous=NORMAL;");
+                plugin.getQuestsLogger().debug("Creating default tables");
+                s.execute(this.statementProcessor.apply(MySqlStorageProvider.CREATE_TABLE_QUEST_PROGRESS));
+                s.execute(this.statementProcessor.apply(MySqlStorageProvider.CREATE_TABLE_TASK_PROGRESS));
+            }
+            writeConnection.setAutoCommit(false);
+
+            readConnections = new ArrayBlockingQueue<>(readConnectionCount);
+            for (int i = 0; i < readConnectionCount; i++) {
+                Connection connection = DriverManager.getConnection(url);
+                try (Statement s = connection.createStatement()) {
+                    s.execute("PRAGMA query_only=true;");
+                }
+                readConnections.add(connection);
+            }
+        } catch (ClassNotFoundException | SQLException e) {
+            e.printStackTrace();
+            fault = true;
+            return;
+        }
+
+        running = true;
+        writer = new Thread(this::work, "Quests SQLite Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (queue) {
+            running = false;
+        }
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (readConnections != null) {
+            for (Connection connection : readConnections) {
+                close(connection);
+            }
+        }
+        if (writeConnection != null) close(writeConnection);
+    }
+
+    @Override
+    @Nullable
+    public QuestProgressFile loadProgressFile(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        if (fault) return null;
+        Map<String, Quest> presentQuests = plugin.getQuestManager().getQuests();
+        boolean validateQuests = plugin.getQuestsConfig().getBoolean("options.verify-quest-exists-on-load", true);
+
+        QuestProgressFile questProgressFile = new QuestProgressFile(uuid, plugin);
+        Connection connection;
+        try {
+            connection = readConnections.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        try {
+            plugin.getQuestsLogger().debug("Querying player " + uuid);
+            Map<String, QuestProgress> questProgressMap = new HashMap<>();
+            try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(MySqlStorageProvider.SELECT_PLAYER_QUEST_PROGRESS))) {
+                ps.setString(1, uuid.toString());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String questId = rs.getString(1);
+                        if (validateQuests && !presentQuests.containsKey(questId)) continue;
+                        QuestProgress questProgress = new QuestProgress(plugin, questId, rs.getBoolean(3), rs.getBoolean(4), rs.getLong(5), uuid, rs.getBoolean(2));
+                        questProgressMap.put(questId, questProgress);
+                    }
+                }
+            }
+            try (PreparedStatement ps = connection.prepareStatement(this.statementProcessor.apply(MySqlStorageProvider.SELECT_PLAYER_TASK_PROGRESS))) {
+                ps.setString(1, uuid.toString());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        String questId = rs.getString(1);
+                        String taskId = rs.getString(2);
+
+                        QuestProgress linkedQuestProgress = questProgressMap.get(questId);
+                        if (linkedQuestProgress == null) continue;
+                        if (validateQuests && presentQuests.get(questId).getTaskById(taskId) == null) continue;
+
+                        TaskProgress taskProgress = new TaskProgress(linkedQuestProgress, taskId, null, uuid, rs.getBoolean(3));
+                        try {
+                            SqlProgressEncoding.decode(taskProgress, rs.getString(5), rs.getString(4));
+                        } catch (IllegalArgumentException ex) {
+                            plugin.getQuestsLogger().warning("Cannot retrieve progress for task '"
+                                    + taskId + "' in quest '" + questId + "' for player " + uuid
+                                    + ": " + ex.getMessage());
+                            continue;
+                        }
+                        linkedQuestProgress.addTaskProgress(taskProgress);
+                    }
+                }
+            }
+            for (QuestProgress questProgress : questProgressMap.values()) {
+                questProgressFile.addQuestProgress(questProgress);
+            }
+        } catch (SQLException e) {
+            plugin.getQuestsLogger().severe("Failed to load player: " + uuid + "!");
+            e.printStackTrace();
+            return null;
+        } finally {
+            readConnections.add(connection);
+        }
+        return questProgressFile;
+    }
+
+    @Override
+    public boolean saveProgressFile(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+        Objects.requireNonNull(questProgressFile, "questProgressFile cannot be null");
+
+        return saveProgressFiles(Collections.singletonMap(uuid, questProgressFile));
+    }
+
+    @Override
+    public boolean saveProgressFiles(@NotNull Map<UUID, QuestProgressFile> questProgressFiles) {
+        Objects.requireNonNull(questProgressFiles, "questProgressFiles cannot be null");
+
+        if (fault) return false;
+        List<PendingSave> saves = new ArrayList<>(questProgressFiles.size());
+        for (Map.Entry<UUID, QuestProgressFile> entry : questProgressFiles.entrySet()) {
+            saves.add(new PendingSave(entry.getKey(), entry.getValue()));
+        }
+        boolean queued;
+        synchronized (queue) {
+            queued = running;
+            if (queued) queue.addAll(saves);
+        }
+        if (!queued) {
+            // the writer has already stopped, so there is nothing left to group with
+            write(saves);
+        }
+
+        boolean saved = true;
+        for (PendingSave save : saves) {
+            try {
+                save.future.join();
+            } catch (CompletionException e) {
+                plugin.getQuestsLogger().severe("Failed to save player: " + save.uuid + "!");
+                e.getCause().printStackTrace();
+                saved = false;
+            }
+        }
+        return saved;
+    }
+
+    private void work() {
+        List<PendingSave> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingSave first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private synchronized void write(List<PendingSave> batch) {
+        try (PreparedStatement writeQuestProgress = writeConnection.prepareStatement(this.statementProcessor.apply(WRITE_PLAYER_QUEST_PROGRESS));
+             PreparedStatement writeTaskProgress = writeConnection.prepareStatement(this.statementProcessor.apply(WRITE_PLAYER_TASK_PROGRESS))) {
+            for (PendingSave save : batch) {
+                addBatch(save, writeQuestProgress, writeTaskProgress);
+            }
+            writeQuestProgress.executeBatch();
+            writeTaskProgress.executeBatch();
+            writeConnection.commit();
+            plugin.getQuestsLogger().debug("Wrote " + batch.size() + " player(s) in one transaction.");
+
+            for (PendingSave save : batch) {
+                save.future.complete(null);
+            }
+        } catch (SQLException e) {
+            try {
+                writeConnection.rollback();
+            } catch (SQLException ignored) { }
+            for (PendingSave save : batch) {
+                save.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private void addBatch(PendingSave save, PreparedStatement writeQuestProgress, PreparedStatement writeTaskProgress) throws SQLException {
+        String uuid = save.uuid.toString();
+        for (QuestProgress questProgress : save.questProgressFile.getAllQuestProgress()) {
+            if (!questProgress.isModified()) continue;
+
+            String questId = questProgress.getQuestId();
+            writeQuestProgress.setString(1, uuid);
+            writeQuestProgress.setString(2, questId);
+            writeQuestProgress.setBoolean(3, questProgress.isStarted());
+            writeQuestProgress.setBoolean(4, questProgress.isCompleted());
+            writeQuestProgress.setBoolean(5, questProgress.isCompletedBefore());
+            writeQuestProgress.setLong(6, questProgress.getCompletionDate());
+            writeQuestProgress.addBatch();
+
+            for (TaskProgress taskProgress : questProgress.getTaskProgress()) {
+                String encodedProgress;
+                String type;
+                try {
+                    type = SqlProgressEncoding.getDataType(taskProgress);
+                    encodedProgress = SqlProgressEncoding.encode(taskProgress);
+                } catch (IllegalArgumentException ex) {
+                    plugin.getQuestsLogger().warning("Cannot store progress for task '"
+                            + taskProgress.getTaskId() + "' in quest '" + questId + "' for player " + uuid
+                            + " since " + ex.getMessage() + "!");
+                    continue;
+                }
+                writeTaskProgress.setString(1, uuid);
+                writeTaskProgress.setString(2, questId);
+                writeTaskProgress.setString(3, taskProgress.getTaskId());
+                writeTaskProgress.setBoolean(4, taskProgress.isCompleted());
+                writeTaskProgress.setString(5, encodedProgress);
+                writeTaskProgress.setString(6, type);
+                writeTaskProgress.addBatch();
+            }
+        }
+    }
+
+    private void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static final class PendingSave {
+        private final UUID uuid;
+        private final QuestProgressFile questProgressFile;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private PendingSave(UUID uuid, QuestProgressFile questProgressFile) {
+            this.uuid = uuid;
+            this.questProgressFile = questProgressFile;
+        }
+    }
+}
@@ -12,18 +12,25 @@ import org.jetbrains.annotations.Nullable;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 public class YamlStorageProvider implements StorageProvider {
 
     private final Map<UUID, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<UUID, YamlConfiguration> documents = new ConcurrentHashMap<>();
+    private final AtomicLong bytesWritten = new AtomicLong();
     private final BukkitQuestsPlugin plugin;
 
     public YamlStorageProvider(BukkitQuestsPlugin plugin) {
@@ -45,14 +52,36 @@ public class YamlStorageProvider implements StorageProvider {
 
     @Override
     public void shutdown() {
-        // no impl
+        documents.clear();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    @Override
+    public void releaseProgressFile(@NotNull UUID uuid) {
+        documents.remove(uuid);
     }
 
     public @Nullable QuestProgressFile loadProgressFile(@NotNull UUID uuid) {
         Objects.requireNonNull(uuid, "uuid cannot be null");
 
+        return load(uuid, true);
+    }
+
+    @Override
+    public @Nullable QuestProgressFile loadDetachedProgressFile(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        return load(uuid, false);
+    }
+
+    // the parsed document is only kept for players who are joining, and reused when they are saved
+    private @Nullable QuestProgressFile load(UUID uuid, boolean keepDocument) {
         ReentrantLock lock = lock(uuid);
-        Map<String, Quest> presentQuests = new HashMap<>(plugin.getQuestManager().getQuests());
+        Map<String, Quest> presentQuests = plugin.getQuestManager().getQuests();
         boolean validateQuests = plugin.getQuestsConfig().getBoolean("options.verify-quest-exists-on-load", true);
         
         QuestProgressFile questProgressFile = new QuestProgressFile(uuid, plugin);
@@ -62,6 +91,7 @@ public class YamlStorageProvider implements StorageProvider {
                 File file = new File(plugin.getDataFolder() + File.separator + "playerdata" + File.separator + uuid.toString() + ".yml");
                 if (file.exists()) {
                     YamlConfiguration data = YamlConfiguration.loadConfiguration(file);
+                    if (keepDocument) documents.put(uuid, data);
                     plugin.getQuestsLogger().debug("Player " + uuid + " has a valid quest progress file.");
                     if (data.isConfigurationSection("quest-progress")) { //Same job as "isSet" + it checks if is CfgSection
                         for (String id : data.getConfigurationSection("quest-progress").getKeys(false)) {
@@ -91,11 +121,13 @@ public class YamlStorageProvider implements StorageProvider {
                     }
                 } else {
                     plugin.getQuestsLogger().debug("Player " + uuid + " does not have a quest progress file.");
+                    if (keepDocument) documents.put(uuid, new YamlConfiguration());
                 }
             }
         } catch (Exception ex) {
             plugin.getQuestsLogger().severe("Failed to load player: " + uuid + "!");
             ex.printStackTrace();
+            if (keepDocument) documents.remove(uuid);
             return null;
         } finally {
             lock.unlock();
@@ -104,7 +136,7 @@ public class YamlStorageProvider implements StorageProvider {
         return questProgressFile;
     }
 
-    public void saveProgressFile(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
+    public boolean saveProgressFile(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
         Objects.requireNonNull(uuid, "uuid cannot be null");
         Objects.requireNonNull(questProgressFile, "questProgressFile cannot be null");
 
@@ -117,15 +149,12 @@ public class YamlStorageProvider implements StorageProvider {
             }
 
             File file = new File(plugin.getDataFolder() + File.separator + "playerdata" + File.separator + uuid.toString() + ".yml");
-            if (!file.exists()) {
-                try {
-                    file.createNewFile();
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            }
 
-            YamlConfiguration data = YamlConfiguration.loadConfiguration(file);
+            // the document parsed when the player was loaded is reused, so the file only has to be read if it has been released
+            YamlConfiguration data = documents.get(uuid);
+            if (data == null) {
+                data = file.exists() ? YamlConfiguration.loadConfiguration(file) : new YamlConfiguration();
+            }
             for (QuestProgress questProgress : questProgressValues) {
                 if (!questProgress.isModified()) continue;
                 data.set("quest-progress." + questProgress.getQuestId() + ".started", questProgress.isStarted());
@@ -142,14 +171,30 @@ public class YamlStorageProvider implements StorageProvider {
 
             plugin.getQuestsLogger().debug("Writing player " + uuid + " to disk.");
             try {
-                data.save(file);
+                write(data, file);
                 plugin.getQuestsLogger().debug("Write of player " + uuid + " to disk complete.");
+                return true;
             } catch (IOException e) {
                 plugin.getQuestsLogger().debug("Failed to write player: " + uuid + "!.");
                 e.printStackTrace();
+                return false;
             }
         } finally {
             lock.unlock();
         }
     }
+
+    // written to a temporary file first and moved into place, so a crash mid-write leaves the old file intact
+    private void write(YamlConfiguration data, File file) throws IOException {
+        Path target = file.toPath();
+        Path temp = target.resolveSibling(file.getName() + ".tmp");
+        byte[] bytes = data.saveToString().getBytes(StandardCharsets.UTF_8);
+        Files.write(temp, bytes);
+        bytesWritten.addAndGet(bytes.length);
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
 }
@@ -0,0 +1,69 @@
+package com.leonardobishop.quests.bukkit.tasktype;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+
+import java.util.UUID;
+
+/**
+ * The movement of a single player since the last time samples were dispatched by the {@link MovementSampler}.
+ */
+public class MovementSample {
+
+    private final UUID player;
+    private World world;
+    private int blockX;
+    private int blockY;
+    private int blockZ;
+    private int blocksWalked;
+
+    public MovementSample(UUID player) {
+        this.player = player;
+    }
+
+    void record(Location to) {
+        this.world = to.getWorld();
+        this.blockX = to.getBlockX();
+        this.blockY = to.getBlockY();
+        this.blockZ = to.getBlockZ();
+        this.blocksWalked++;
+    }
+
+    void reset() {
+        this.blocksWalked = 0;
+    }
+
+    public UUID getPlayer() {
+        return player;
+    }
+
+    /**
+     * @return the world the player was last seen in
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    public int getBlockX() {
+        return blockX;
+    }
+
+    public int getBlockY() {
+        return blockY;
+    }
+
+    public int getBlockZ() {
+        return blockZ;
+    }
+
+    /**
+     * @return the number of blocks the player has crossed horizontally since the last dispatch
+     */
+    public int getBlocksWalked() {
+        return blocksWalked;
+    }
+
+    public boolean hasMoved() {
+        return blocksWalked > 0;
+    }
+}
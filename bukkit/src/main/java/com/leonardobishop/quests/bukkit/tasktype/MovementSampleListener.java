@@ -0,0 +1,23 @@
+package com.leonardobishop.quests.bukkit.tasktype;
+
+import com.leonardobishop.quests.common.player.QPlayer;
+import org.bukkit.entity.Player;
+
+/**
+ * Implemented by task types which progress as players move, in place of listening
+ * to {@link org.bukkit.event.player.PlayerMoveEvent} directly.
+ *
+ * @see MovementSampler
+ */
+public interface MovementSampleListener {
+
+    /**
+     * Called for each player who has moved since the last dispatch.
+     *
+     * @param player the player
+     * @param qPlayer the players quest data
+     * @param sample the movement of the player since the last dispatch
+     */
+    void onMovementSample(Player player, QPlayer qPlayer, MovementSample sample);
+
+}
@@ -0,0 +1,126 @@
+package com.leonardobishop.quests.bukkit.tasktype;
+
+import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
+import com.leonardobishop.quests.common.player.QPlayer;
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The movement sampler is the single {@link PlayerMoveEvent} listener for task types which accumulate movement
+ * and do not need to see every step (position tasks need exact positions, so they listen for moves themselves).
+ * Moves only update a small per-player {@link MovementSample}; every few ticks, the samples of players who
+ * have moved are handed to each registered {@link MovementSampleListener} with a single player lookup.
+ */
+public class MovementSampler implements Listener {
+
+    private final BukkitQuestsPlugin plugin;
+    private final List<MovementSampleListener> listeners = new ArrayList<>();
+    private final Map<UUID, MovementSample> samples = new HashMap<>();
+    private BukkitTask dispatchTask;
+
+    public MovementSampler(BukkitQuestsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Register a listener to receive movement samples.
+     *
+     * @param listener the listener
+     */
+    public void registerListener(MovementSampleListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * (Re)start dispatching samples.
+     *
+     * @param interval the number of ticks between each dispatch
+     */
+    public void start(long interval) {
+        stop();
+        dispatchTask = Bukkit.getScheduler().runTaskTimer(plugin, this::dispatch, interval, interval);
+    }
+
+    public void stop() {
+        if (dispatchTask != null) {
+            dispatchTask.cancel();
+            dispatchTask = null;
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (from.getBlockX() == to.getBlockX() && from.getBlockZ() == to.getBlockZ()) {
+            return;
+        }
+
+        Player player = event.getPlayer();
+        if (player.hasMetadata("NPC")) return;
+
+        MovementSample sample = samples.get(player.getUniqueId());
+        if (sample == null) {
+            sample = new MovementSample(player.getUniqueId());
+            samples.put(player.getUniqueId(), sample);
+        }
+        sample.record(to);
+    }
+
+    // runs before the player is unloaded, so that their last movements are not lost
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onQuit(PlayerQuitEvent event) {
+        MovementSample sample = samples.remove(event.getPlayer().getUniqueId());
+        if (sample != null && sample.hasMoved()) {
+            dispatch(event.getPlayer(), sample);
+        }
+    }
+
+    private void dispatch() {
+        Iterator<MovementSample> iterator = samples.values().iterator();
+        while (iterator.hasNext()) {
+            MovementSample sample = iterator.next();
+            if (!sample.hasMoved()) continue;
+
+            Player player = Bukkit.getPlayer(sample.getPlayer());
+            if (player == null) {
+                iterator.remove();
+                continue;
+            }
+            dispatch(player, sample);
+        }
+    }
+
+    private void dispatch(Player player, MovementSample sample) {
+        try {
+            QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+            if (qPlayer == null) {
+                return;
+            }
+
+            for (MovementSampleListener listener : listeners) {
+                try {
+                    listener.onMovementSample(player, qPlayer, sample);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        } finally {
+            sample.reset();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.leonardobishop.quests.bukkit.tasktype;
+
+import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
+import com.leonardobishop.quests.common.player.QPlayer;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The polling scheduler runs the periodic checks of task types which cannot be driven by events.
+ * Rather than every task type checking every online player in a single tick, each poller has its
+ * online players spread over its period, and the scheduler stops for the tick once it has used
+ * up its time budget. There is only ever one poller per task type, so reloads do not stack them.
+ * <p>
+ * If a cycle overruns its period, players who have not been polled yet are owed the missed cycle and are
+ * polled once for each cycle when they are reached, so counting pollers such as playtime do not fall behind.
+ */
+public class PollingScheduler {
+
+    private final BukkitQuestsPlugin plugin;
+    private final Map<String, Registration> registrations = new LinkedHashMap<>();
+    private BukkitTask tickTask;
+    private long budget;
+
+    public PollingScheduler(BukkitQuestsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Register a poller for a task type, replacing any poller previously registered for it.
+     *
+     * @param type the task type
+     * @param period the number of ticks in which every online player should be polled once
+     * @param poller the poller
+     */
+    public void register(String type, long period, Poller poller) {
+        Objects.requireNonNull(type, "type cannot be null");
+        Objects.requireNonNull(poller, "poller cannot be null");
+
+        registrations.put(type, new Registration(Math.max(1, period), poller));
+    }
+
+    public void unregister(String type) {
+        registrations.remove(type);
+    }
+
+    /**
+     * (Re)start the scheduler.
+     *
+     * @param budget the maximum time in milliseconds to spend polling each tick
+     */
+    public void start(double budget) {
+        this.budget = (long) (budget * 1_000_000);
+        if (tickTask == null) {
+            tickTask = Bukkit.getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    public void stop() {
+        if (tickTask != null) {
+            tickTask.cancel();
+            tickTask = null;
+        }
+    }
+
+    private void tick() {
+        long deadline = System.nanoTime() + budget;
+        for (Registration registration : registrations.values()) {
+            if (--registration.ticksUntilCycle <= 0) {
+                registration.ticksUntilCycle = registration.period;
+                // players still waiting from a cycle which overran keep their place and are owed this one too
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    registration.pending.merge(player.getUniqueId(), 1, Integer::sum);
+                }
+            }
+
+            int remaining = registration.pending.size();
+            if (remaining == 0) continue;
+            long quota = (remaining + registration.ticksUntilCycle - 1) / registration.ticksUntilCycle;
+
+            // every poller gets at least one player per tick, so none can be starved by those before it
+            Iterator<Map.Entry<UUID, Integer>> iterator = registration.pending.entrySet().iterator();
+            for (int i = 0; i < quota && iterator.hasNext(); i++) {
+                if (i > 0 && System.nanoTime() > deadline) break;
+                Map.Entry<UUID, Integer> entry = iterator.next();
+                iterator.remove();
+                poll(registration, entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void poll(Registration registration, UUID uuid, int cycles) {
+        Player player = Bukkit.getPlayer(uuid);
+        if (player == null) {
+            return;
+        }
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
+        if (qPlayer == null) {
+            return;
+        }
+
+        try {
+            for (int i = 0; i < cycles; i++) {
+                registration.poller.poll(player, qPlayer);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A periodic check for a single player.
+     */
+    public interface Poller {
+
+        void poll(Player player, QPlayer qPlayer);
+
+    }
+
+    private static final class Registration {
+        private final long period;
+        private final Poller poller;
+        private final Map<UUID, Integer> pending = new LinkedHashMap<>();
+        private long ticksUntilCycle;
+
+        private Registration(long period, Poller poller) {
+            this.period = period;
+            this.poller = poller;
+            this.ticksUntilCycle = period;
+        }
+    }
+}
@@ -4,10 +4,9 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
@@ -59,34 +58,29 @@ public final class BreedingTaskType extends BukkitTaskType {
                     continue;
                 }
 
-                for (Quest quest : super.getRegisteredQuests()) {
-                    if (qPlayer.hasStartedQuest(quest)) {
-                        QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+                for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+                    Task task = activeTask.getTask();
+                    if (!TaskUtils.validateWorld(player, task)) continue;
 
-                        for (Task task : quest.getTasksOfType(super.getType())) {
-                            if (!TaskUtils.validateWorld(player, task)) continue;
+                    TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                            TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                            if (taskProgress.isCompleted()) {
-                                continue;
-                            }
+                    if (taskProgress.isCompleted()) {
+                        continue;
+                    }
 
-                            int breedingNeeded = (int) task.getConfigValue("amount");
-                            int breedingProgress;
+                    int breedingNeeded = (int) task.getConfigValue("amount");
+                    int breedingProgress;
 
-                            if (taskProgress.getProgress() == null) {
-                                breedingProgress = 0;
-                            } else {
-                                breedingProgress = (int) taskProgress.getProgress();
-                            }
+                    if (taskProgress.getProgress() == null) {
+                        breedingProgress = 0;
+                    } else {
+                        breedingProgress = (int) taskProgress.getProgress();
+                    }
 
-                            taskProgress.setProgress(breedingProgress + 1);
+                    taskProgress.setProgress(breedingProgress + 1);
 
-                            if (((int) taskProgress.getProgress()) >= breedingNeeded) {
-                                taskProgress.setCompleted(true);
-                            }
-                        }
+                    if (((int) taskProgress.getProgress()) >= breedingNeeded) {
+                        taskProgress.setCompleted(true);
                     }
                 }
             }
@@ -4,10 +4,9 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.Bukkit;
 import org.bukkit.Location;
@@ -68,38 +67,33 @@ public final class BrewingTaskType extends BukkitTaskType {
                 return;
             }
 
-            for (Quest quest : super.getRegisteredQuests()) {
-                if (qPlayer.hasStartedQuest(quest)) {
-                    QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+            for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+                Task task = activeTask.getTask();
+                if (!TaskUtils.validateWorld(player, task)) continue;
 
-                    for (Task task : quest.getTasksOfType(super.getType())) {
-                        if (!TaskUtils.validateWorld(player, task)) continue;
+                TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                        TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                        if (taskProgress.isCompleted()) {
-                            continue;
-                        }
+                if (taskProgress.isCompleted()) {
+                    continue;
+                }
 
-                        int potionsNeeded = (int) task.getConfigValue("amount");
+                int potionsNeeded = (int) task.getConfigValue("amount");
 
-                        int progress;
-                        if (taskProgress.getProgress() == null) {
-                            progress = 0;
-                        } else {
-                            progress = (int) taskProgress.getProgress();
-                        }
+                int progress;
+                if (taskProgress.getProgress() == null) {
+                    progress = 0;
+                } else {
+                    progress = (int) taskProgress.getProgress();
+                }
 
-                        ItemStack potion1 = event.getContents().getItem(0);
-                        ItemStack potion2 = event.getContents().getItem(1);
-                        ItemStack potion3 = event.getContents().getItem(2);
+                ItemStack potion1 = event.getContents().getItem(0);
+                ItemStack potion2 = event.getContents().getItem(1);
+                ItemStack potion3 = event.getContents().getItem(2);
 
-                        taskProgress.setProgress(progress + (potion1 == null ? 0 : 1) + (potion2 == null ? 0 : 1) + (potion3 == null ? 0 : 1));
+                taskProgress.setProgress(progress + (potion1 == null ? 0 : 1) + (potion2 == null ? 0 : 1) + (potion3 == null ? 0 : 1));
 
-                        if (((int) taskProgress.getProgress()) >= potionsNeeded) {
-                            taskProgress.setCompleted(true);
-                        }
-                    }
+                if (((int) taskProgress.getProgress()) >= potionsNeeded) {
+                    taskProgress.setCompleted(true);
                 }
             }
         }
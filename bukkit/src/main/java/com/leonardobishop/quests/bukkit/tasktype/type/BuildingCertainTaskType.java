@@ -2,16 +2,16 @@ package com.leonardobishop.quests.bukkit.tasktype.type;
 
 import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
+import com.leonardobishop.quests.bukkit.util.BlockMatchTable;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
 import com.leonardobishop.quests.common.config.ConfigProblemDescriptions;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.Material;
-import org.bukkit.block.Block;
+import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockBreakEvent;
@@ -21,10 +21,12 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class BuildingCertainTaskType extends BukkitTaskType {
 
     private final BukkitQuestsPlugin plugin;
+    private BlockMatchTable blockMatchTable = BlockMatchTable.empty();
 
     public BuildingCertainTaskType(BukkitQuestsPlugin plugin) {
         super("blockplacecertain", TaskUtils.TASK_ATTRIBUTION_STRING, "Place a set amount of a specific block.");
@@ -68,120 +70,100 @@ public final class BuildingCertainTaskType extends BukkitTaskType {
         return problems;
     }
 
+    @Override
+    public @NotNull Object compileConfig(@NotNull Task task) {
+        return new Config((int) task.getConfigValue("amount"),
+                (boolean) task.getConfigValue("reverse-if-placed", false));
+    }
+
+    @Override
+    public void onReady() {
+        this.blockMatchTable = BlockMatchTable.compile(this);
+    }
+
+    @SuppressWarnings("deprecation")
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockPlace(BlockPlaceEvent event) {
         if (event.getPlayer().hasMetadata("NPC")) return;
+        if (!blockMatchTable.isInterested(event.getBlock().getType())) return;
+
+        addPlace(event.getPlayer().getUniqueId(), event.getPlayer().getWorld(), event.getBlock().getType(), event.getBlock().getData());
+    }
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+    // replayed with the same values if the player has not finished loading, by which time the block may have changed
+    private void addPlace(UUID uuid, World world, Material type, int data) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addPlace(uuid, world, type, data));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(event.getPlayer(), task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    if (matchBlock(task, event.getBlock())) {
-                        increment(task, taskProgress, 1);
-                    }
-                }
+            if (blockMatchTable.matches(task, type, data)) {
+                increment(task, taskProgress, 1);
             }
         }
     }
 
     // subtract if enabled
+    @SuppressWarnings("deprecation")
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
         if (event.getPlayer().hasMetadata("NPC")) return;
+        if (!blockMatchTable.isInterested(event.getBlock().getType())) return;
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+        removePlace(event.getPlayer().getUniqueId(), event.getBlock().getType(), event.getBlock().getData());
+    }
+
+    // replayed with the same values if the player has not finished loading, by which time the block is gone
+    private void removePlace(UUID uuid, Material type, int data) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> removePlace(uuid, type, data));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    if (task.getConfigValue("reverse-if-placed") != null && ((boolean) task.getConfigValue("reverse-if-placed"))) {
-                        if (matchBlock(task, event.getBlock())) {
-                            increment(task, taskProgress, -1);
-                        }
-                    }
+            if (task.getCompiledConfig(Config.class).reverseIfPlaced) {
+                if (blockMatchTable.matches(task, type, data)) {
+                    increment(task, taskProgress, -1);
                 }
             }
         }
     }
 
-    @SuppressWarnings("deprecation")
-    private boolean matchBlock(Task task, Block block) {
-        Material material;
-
-        Object configBlock = task.getConfigValues().containsKey("block") ? task.getConfigValue("block") : task.getConfigValue("blocks");
-        Object configData = task.getConfigValue("data");
-        Object configSimilarBlocks = task.getConfigValue("use-similar-blocks");
-
-        List<String> checkBlocks = new ArrayList<>();
-        if (configBlock instanceof List) {
-            checkBlocks.addAll((List) configBlock);
-        } else {
-            checkBlocks.add(String.valueOf(configBlock));
-        }
-
-        for (String materialName : checkBlocks) {
-            // LOG:1 LOG:2 LOG should all be supported with this
-            String[] split = materialName.split(":");
-            int comparableData = 0;
-            if (configData != null) {
-                comparableData = (int) configData;
-            }
-            if (split.length > 1) {
-                comparableData = Integer.parseInt(split[1]);
-            }
-
-            material = Material.getMaterial(String.valueOf(split[0]));
-            Material blockType = block.getType();
-
-            short blockData = block.getData();
+    private void increment(Task task, TaskProgress taskProgress, int amount) {
+        int brokenBlocksNeeded = task.getCompiledConfig(Config.class).amount;
 
-            if (blockType == material) {
-                if (((split.length == 1 && configData == null) || ((int) blockData) == comparableData))
-                    return true;
-            }
+        if (taskProgress.increment(amount) >= brokenBlocksNeeded) {
+            taskProgress.setCompleted(true);
         }
-        return false;
     }
 
-    private void increment(Task task, TaskProgress taskProgress, int amount) {
-        int brokenBlocksNeeded = (int) task.getConfigValue("amount");
-
-        int progressBlocksBroken;
-        if (taskProgress.getProgress() == null) {
-            progressBlocksBroken = 0;
-        } else {
-            progressBlocksBroken = (int) taskProgress.getProgress();
-        }
+    private static final class Config {
 
-        taskProgress.setProgress(progressBlocksBroken + amount);
+        private final int amount;
+        private final boolean reverseIfPlaced;
 
-        if (((int) taskProgress.getProgress()) >= brokenBlocksNeeded) {
-            taskProgress.setCompleted(true);
+        private Config(int amount, boolean reverseIfPlaced) {
+            this.amount = amount;
+            this.reverseIfPlaced = reverseIfPlaced;
         }
     }
 
@@ -4,11 +4,11 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockPlaceEvent;
@@ -17,6 +17,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class BuildingTaskType extends BukkitTaskType {
 
@@ -35,44 +36,50 @@ public final class BuildingTaskType extends BukkitTaskType {
         return problems;
     }
 
+    @Override
+    public @NotNull Object compileConfig(@NotNull Task task) {
+        return new Config((int) task.getConfigValue("amount"));
+    }
+
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockPlace(BlockPlaceEvent event) {
         if (event.getPlayer().hasMetadata("NPC")) return;
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+        addPlace(event.getPlayer().getUniqueId(), event.getPlayer().getWorld());
+    }
+
+    // replayed with the same values if the player has not finished loading
+    private void addPlace(UUID uuid, World world) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addPlace(uuid, world));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(event.getPlayer(), task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            int brokenBlocksNeeded = task.getCompiledConfig(Config.class).amount;
 
-                    int brokenBlocksNeeded = (int) task.getConfigValue("amount");
+            if (taskProgress.increment(1) >= brokenBlocksNeeded) {
+                taskProgress.setCompleted(true);
+            }
+        }
+    }
 
-                    int progressBlocksBroken;
-                    if (taskProgress.getProgress() == null) {
-                        progressBlocksBroken = 0;
-                    } else {
-                        progressBlocksBroken = (int) taskProgress.getProgress();
-                    }
+    private static final class Config {
 
-                    taskProgress.setProgress(progressBlocksBroken + 1);
+        private final int amount;
 
-                    if (((int) taskProgress.getProgress()) >= brokenBlocksNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
-            }
+        private Config(int amount) {
+            this.amount = amount;
         }
     }
 
@@ -4,11 +4,11 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -18,6 +18,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class CommandTaskType extends BukkitTaskType {
 
@@ -41,50 +42,50 @@ public final class CommandTaskType extends BukkitTaskType {
         if (e.getPlayer().hasMetadata("NPC")) return;
 
         Player player = e.getPlayer();
+        String message = e.getMessage();
+        if (message.length() >= 1) {
+            message = message.substring(1);
+        }
+        addCommand(player.getUniqueId(), player.getWorld(), message);
+    }
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+    // replayed with the same values if the player has not finished loading
+    private void addCommand(UUID uuid, World world, String message) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addCommand(uuid, world, message));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(player, task)) continue;
-
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
-                    Object configCommand = task.getConfigValue("command");
-                    Object configIgnoreCase = task.getConfigValue("ignore-case");
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    List<String> commands = new ArrayList<>();
-                    if (configCommand instanceof List) {
-                        commands.addAll((List) configCommand);
-                    } else {
-                        commands.add(String.valueOf(configCommand));
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
+            Object configCommand = task.getConfigValue("command");
+            Object configIgnoreCase = task.getConfigValue("ignore-case");
+
+            List<String> commands = new ArrayList<>();
+            if (configCommand instanceof List) {
+                commands.addAll((List) configCommand);
+            } else {
+                commands.add(String.valueOf(configCommand));
+            }
 
-                    boolean ignoreCasing = false;
-                    if (configIgnoreCase != null) {
-                        ignoreCasing = (boolean) task.getConfigValue("ignore-case");
-                    }
-                    String message = e.getMessage();
-                    if (message.length() >= 1) {
-                        message = message.substring(1);
-                    }
+            boolean ignoreCasing = false;
+            if (configIgnoreCase != null) {
+                ignoreCasing = (boolean) task.getConfigValue("ignore-case");
+            }
 
-                    for (String command : commands) {
-                        if (ignoreCasing && command.equalsIgnoreCase(message)) {
-                            taskProgress.setCompleted(true);
-                        } else if (!ignoreCasing && command.equals(message)) {
-                            taskProgress.setCompleted(true);
-                        }
-                    }
+            for (String command : commands) {
+                if (ignoreCasing && command.equalsIgnoreCase(message)) {
+                    taskProgress.setCompleted(true);
+                } else if (!ignoreCasing && command.equals(message)) {
+                    taskProgress.setCompleted(true);
                 }
             }
         }
@@ -5,12 +5,12 @@ import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
 import com.leonardobishop.quests.common.config.ConfigProblemDescriptions;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -23,6 +23,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class CraftingTaskType extends BukkitTaskType {
 
@@ -76,65 +77,66 @@ public final class CraftingTaskType extends BukkitTaskType {
             return;
         }
 
-        ItemStack clickedItem = event.getCurrentItem();
+        ItemStack clickedItem = event.getCurrentItem().clone();
         Player player = (Player) event.getWhoClicked();
         int clickedAmount = getCraftAmount(event);
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+        addCraft(player.getUniqueId(), player.getWorld(), clickedItem, clickedAmount);
+    }
+
+    // replayed with the same values if the player has not finished loading, by which time the inventory has changed
+    private void addCraft(UUID uuid, World world, ItemStack clickedItem, int clickedAmount) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addCraft(uuid, world, clickedItem, clickedAmount));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(player, task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            Material material;
+            int amount = (int) task.getConfigValue("amount");
+            Object configBlock = task.getConfigValue("item");
+            Object configData = task.getConfigValue("data");
 
-                    Material material;
-                    int amount = (int) task.getConfigValue("amount");
-                    Object configBlock = task.getConfigValue("item");
-                    Object configData = task.getConfigValue("data");
+            ItemStack is;
+            if (configBlock instanceof ConfigurationSection) {
+                is = plugin.getItemStack("", (ConfigurationSection) configBlock);
+            } else {
+                material = Material.getMaterial(String.valueOf(configBlock));
 
-                    ItemStack is;
-                    if (configBlock instanceof ConfigurationSection) {
-                        is = plugin.getItemStack("", (ConfigurationSection) configBlock);
-                    } else {
-                        material = Material.getMaterial(String.valueOf(configBlock));
-
-                        if (material == null) {
-                            continue;
-                        }
-                        if (configData != null) {
-                            is = new ItemStack(material, 1, ((Integer) configData).shortValue());
-                        } else {
-                            is = new ItemStack(material, 1);
-                        }
-                    }
+                if (material == null) {
+                    continue;
+                }
+                if (configData != null) {
+                    is = new ItemStack(material, 1, ((Integer) configData).shortValue());
+                } else {
+                    is = new ItemStack(material, 1);
+                }
+            }
 
-                    if (!clickedItem.isSimilar(is)) continue;
+            if (!clickedItem.isSimilar(is)) continue;
 
-                    int progress;
-                    if (taskProgress.getProgress() == null) {
-                        progress = 0;
-                    } else {
-                        progress = (int) taskProgress.getProgress();
-                    }
+            int progress;
+            if (taskProgress.getProgress() == null) {
+                progress = 0;
+            } else {
+                progress = (int) taskProgress.getProgress();
+            }
 
-                    taskProgress.setProgress(progress + clickedAmount);
+            taskProgress.setProgress(progress + clickedAmount);
 
-                    if ((int) taskProgress.getProgress() >= amount) {
-                        taskProgress.setProgress(amount);
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if ((int) taskProgress.getProgress() >= amount) {
+                taskProgress.setProgress(amount);
+                taskProgress.setCompleted(true);
             }
         }
     }
@@ -4,11 +4,11 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -18,6 +18,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class DealDamageTaskType extends BukkitTaskType {
 
@@ -47,40 +48,41 @@ public final class DealDamageTaskType extends BukkitTaskType {
 
         if (player.hasMetadata("NPC")) return;
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+        addDamage(player.getUniqueId(), player.getWorld(), damage);
+    }
+
+    // replayed with the same values if the player has not finished loading
+    private void addDamage(UUID uuid, World world, double damage) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addDamage(uuid, world, damage));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(player, task)) continue;
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    double progressDamage;
-                    int damageNeeded = (int) task.getConfigValue("amount");
+            double progressDamage;
+            int damageNeeded = (int) task.getConfigValue("amount");
 
-                    if (taskProgress.getProgress() == null) {
-                        progressDamage = 0.0;
-                    } else {
-                        progressDamage = (double) taskProgress.getProgress();
-                    }
+            if (taskProgress.getProgress() == null) {
+                progressDamage = 0.0;
+            } else {
+                progressDamage = (double) taskProgress.getProgress();
+            }
 
-                    taskProgress.setProgress(progressDamage + damage);
+            taskProgress.setProgress(progressDamage + damage);
 
-                    if (((double) taskProgress.getProgress()) >= (double) damageNeeded) {
-                        taskProgress.setProgress(damageNeeded);
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((double) taskProgress.getProgress()) >= (double) damageNeeded) {
+                taskProgress.setProgress(damageNeeded);
+                taskProgress.setCompleted(true);
             }
         }
     }
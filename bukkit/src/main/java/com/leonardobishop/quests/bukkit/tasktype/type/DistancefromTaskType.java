@@ -2,33 +2,37 @@ package com.leonardobishop.quests.bukkit.tasktype.type;
 
 import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
+import com.leonardobishop.quests.bukkit.tasktype.MovementSample;
+import com.leonardobishop.quests.bukkit.tasktype.MovementSampleListener;
+import com.leonardobishop.quests.bukkit.util.PositionIndex;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
 import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.Bukkit;
-import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
-import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.world.WorldLoadEvent;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
-public final class DistancefromTaskType extends BukkitTaskType {
+public final class DistancefromTaskType extends BukkitTaskType implements MovementSampleListener {
 
     private final BukkitQuestsPlugin plugin;
+    private PositionIndex positionIndex = new PositionIndex();
 
     public DistancefromTaskType(BukkitQuestsPlugin plugin) {
         super("distancefrom", TaskUtils.TASK_ATTRIBUTION_STRING, "Distance yourself from a set of co-ordinates.");
         this.plugin = plugin;
+        plugin.getMovementSampler().registerListener(this);
     }
 
     @Override
@@ -45,63 +49,55 @@ public final class DistancefromTaskType extends BukkitTaskType {
         return problems;
     }
 
-//    private HashMap<String, HashMap<String, Integer>> distanceSquaredCache = new HashMap<>();
-//
-//    @Override
-//    public void onReady() {
-//        distanceSquaredCache.clear();
-//        for (Quest quest : super.getRegisteredQuests()) {
-//            HashMap<String, Integer> squaredDistances = new HashMap<>();
-//            for (Task task : quest.getTasksOfType(super.getType())) {
-//                int distance = (int) task.getConfigValue("distance");
-//                squaredDistances.put(task.getId(), distance);
-//            }
-//            distanceSquaredCache.put(quest.getId(), squaredDistances);
-//        }
-//    }
+    @Override
+    public void onReady() {
+        PositionIndex positionIndex = new PositionIndex();
+        for (Quest quest : super.getRegisteredQuests()) {
+            for (Task task : quest.getTasksOfType(super.getType())) {
+                Object worldString = task.getConfigValue("world");
+                World world = worldString == null ? null : Bukkit.getWorld(String.valueOf(worldString));
+                if (world == null) {
+                    continue;
+                }
 
-    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    public void onMove(PlayerMoveEvent event) {
-        if (event.getFrom().getBlockX() == event.getTo().getBlockX() && event.getFrom().getBlockZ() == event.getTo().getBlockZ()) {
-            return;
+                int x = (int) task.getConfigValue("x");
+                int y = (int) task.getConfigValue("y");
+                int z = (int) task.getConfigValue("z");
+                int distance = (int) task.getConfigValue("distance");
+                positionIndex.addUnbucketed(world, task, x, y, z, distance);
+            }
         }
+        this.positionIndex = positionIndex;
+    }
 
-        if (event.getPlayer().hasMetadata("NPC")) return;
-        Player player = event.getPlayer();
+    // targets in worlds which were not loaded yet could not be indexed
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent event) {
+        onReady();
+    }
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
-        if (qPlayer == null) {
+    @Override
+    public void onMovementSample(Player player, QPlayer qPlayer, MovementSample sample) {
+        UUID world = sample.getWorld().getUID();
+        if (!positionIndex.hasTargets(world)) {
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    int x = (int) task.getConfigValue("x");
-                    int y = (int) task.getConfigValue("y");
-                    int z = (int) task.getConfigValue("z");
-                    String worldString = (String) task.getConfigValue("world");
-                    int distance = (int) task.getConfigValue("distance");
-                    int distanceSquared = distance * distance;
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    World world = Bukkit.getWorld(worldString);
-                    if (world == null) {
-                        continue;
-                    }
+            PositionIndex.Target target = positionIndex.getTarget(world, task);
+            if (target == null) {
+                continue;
+            }
 
-                    Location location = new Location(world, x, y, z);
-                    if (player.getWorld().equals(world) && player.getLocation().distanceSquared(location) > distanceSquared) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (target.distanceSquared(sample.getBlockX(), sample.getBlockY(), sample.getBlockZ()) > target.getRadiusSquared()) {
+                taskProgress.setCompleted(true);
             }
         }
     }
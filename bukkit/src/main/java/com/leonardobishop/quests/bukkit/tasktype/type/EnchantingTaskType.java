@@ -4,11 +4,11 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -18,6 +18,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class EnchantingTaskType extends BukkitTaskType {
 
@@ -41,40 +42,40 @@ public final class EnchantingTaskType extends BukkitTaskType {
         if (e.getEnchanter().hasMetadata("NPC")) return;
 
         Player player = e.getEnchanter();
+        addEnchant(player.getUniqueId(), player.getWorld());
+    }
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+    // replayed with the same values if the player has not finished loading
+    private void addEnchant(UUID uuid, World world) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addEnchant(uuid, world));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(player, task)) continue;
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    int enchantsNeeded = (int) task.getConfigValue("amount");
+            int enchantsNeeded = (int) task.getConfigValue("amount");
 
-                    int progressEnchant;
-                    if (taskProgress.getProgress() == null) {
-                        progressEnchant = 0;
-                    } else {
-                        progressEnchant = (int) taskProgress.getProgress();
-                    }
+            int progressEnchant;
+            if (taskProgress.getProgress() == null) {
+                progressEnchant = 0;
+            } else {
+                progressEnchant = (int) taskProgress.getProgress();
+            }
 
-                    taskProgress.setProgress(progressEnchant + 1);
+            taskProgress.setProgress(progressEnchant + 1);
 
-                    if (((int) taskProgress.getProgress()) >= enchantsNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((int) taskProgress.getProgress()) >= enchantsNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
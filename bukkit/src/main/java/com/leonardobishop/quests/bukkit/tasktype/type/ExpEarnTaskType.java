@@ -4,11 +4,11 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.player.PlayerExpChangeEvent;
@@ -17,6 +17,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class ExpEarnTaskType extends BukkitTaskType {
 
@@ -39,41 +40,40 @@ public final class ExpEarnTaskType extends BukkitTaskType {
     public void onExpEarn(PlayerExpChangeEvent e) {
         if (e.getPlayer().hasMetadata("NPC")) return;
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(e.getPlayer().getUniqueId());
+        addExp(e.getPlayer().getUniqueId(), e.getPlayer().getWorld(), e.getAmount());
+    }
+
+    // replayed with the same values if the player has not finished loading
+    private void addExp(UUID uuid, World world, int amount) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addExp(uuid, world, amount));
             return;
         }
 
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-                
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(e.getPlayer(), task)) continue;
-
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-                    
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
-                    int amount = e.getAmount();
-                    int expNeeded = (int) task.getConfigValue("amount");
-                    
-                    int progressExp;
-                    if (taskProgress.getProgress() == null) {
-                        progressExp = 0;
-                    } else {
-                        progressExp = (int) taskProgress.getProgress();
-                    }
-                    
-                    taskProgress.setProgress(progressExp + amount);
-                    
-                    if (((int) taskProgress.getProgress()) >= expNeeded) {
-                        taskProgress.setCompleted(true);
-                    }                    
-                }
+            TaskProgress taskProgress = activeTask.getTaskProgress();
+            
+            if (taskProgress.isCompleted()) {
+                continue;
             }
-        }        
+            int expNeeded = (int) task.getConfigValue("amount");
+            
+            int progressExp;
+            if (taskProgress.getProgress() == null) {
+                progressExp = 0;
+            } else {
+                progressExp = (int) taskProgress.getProgress();
+            }
+            
+            taskProgress.setProgress(progressExp + amount);
+            
+            if (((int) taskProgress.getProgress()) >= expNeeded) {
+                taskProgress.setCompleted(true);
+            }                    
+        }
     }
 }
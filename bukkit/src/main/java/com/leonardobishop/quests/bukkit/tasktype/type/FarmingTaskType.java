@@ -3,17 +3,19 @@ package com.leonardobishop.quests.bukkit.tasktype.type;
 import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.material.Crops;
 
+import java.util.UUID;
+
 public final class FarmingTaskType extends BukkitTaskType {
 
     private final BukkitQuestsPlugin plugin;
@@ -32,51 +34,52 @@ public final class FarmingTaskType extends BukkitTaskType {
         }
         Crops crop = (Crops) event.getBlock().getState();
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+        addHarvest(event.getPlayer().getUniqueId(), event.getPlayer().getWorld(), event.getBlock().getType(), event.getBlock().getData());
+    }
+
+    // replayed with the same values if the player has not finished loading, by which time the block is gone
+    private void addHarvest(UUID uuid, World world, Material type, int data) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addHarvest(uuid, world, type, data));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(event.getPlayer(), task)) continue;
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    Material material;
-                    Object configBlock = task.getConfigValue("block");
-                    Object configData = task.getConfigValue("data");
+            Material material;
+            Object configBlock = task.getConfigValue("block");
+            Object configData = task.getConfigValue("data");
 
-                    material = Material.matchMaterial(String.valueOf(configBlock));
+            material = Material.matchMaterial(String.valueOf(configBlock));
 
 
-                    if (material != null && event.getBlock().getType().equals(material)) {
+            if (material != null && type.equals(material)) {
 
-                        if (configData != null && (((int) event.getBlock().getData()) != ((int) configData))) {
-                            continue;
-                        }
-                        int brokenBlocksNeeded = (int) task.getConfigValue("amount");
+                if (configData != null && (data != ((int) configData))) {
+                    continue;
+                }
+                int brokenBlocksNeeded = (int) task.getConfigValue("amount");
 
-                        int progressBlocksBroken;
-                        if (taskProgress.getProgress() == null) {
-                            progressBlocksBroken = 0;
-                        } else {
-                            progressBlocksBroken = (int) taskProgress.getProgress();
-                        }
+                int progressBlocksBroken;
+                if (taskProgress.getProgress() == null) {
+                    progressBlocksBroken = 0;
+                } else {
+                    progressBlocksBroken = (int) taskProgress.getProgress();
+                }
 
-                        taskProgress.setProgress(progressBlocksBroken + 1);
+                taskProgress.setProgress(progressBlocksBroken + 1);
 
-                        if (((int) taskProgress.getProgress()) >= brokenBlocksNeeded) {
-                            taskProgress.setCompleted(true);
-                        }
-                    }
+                if (((int) taskProgress.getProgress()) >= brokenBlocksNeeded) {
+                    taskProgress.setCompleted(true);
                 }
             }
         }
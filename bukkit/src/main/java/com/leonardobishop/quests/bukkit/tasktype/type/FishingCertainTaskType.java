@@ -5,12 +5,12 @@ import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
 import com.leonardobishop.quests.common.config.ConfigProblemDescriptions;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.entity.Item;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class FishingCertainTaskType extends BukkitTaskType {
 
@@ -60,57 +61,58 @@ public final class FishingCertainTaskType extends BukkitTaskType {
             return;
         }
         Item caught = (Item) event.getCaught();
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+        addCatch(player.getUniqueId(), player.getWorld(), caught.getItemStack().clone());
+    }
+
+    // replayed with the same values if the player has not finished loading, by which time the item may be gone
+    private void addCatch(UUID uuid, World world, ItemStack caught) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addCatch(uuid, world, caught));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(player, task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    int catchesNeeded = (int) task.getConfigValue("amount");
-                    String configItem = (String) task.getConfigValue("item");
-                    Object configData = task.getConfigValue("data");
+            int catchesNeeded = (int) task.getConfigValue("amount");
+            String configItem = (String) task.getConfigValue("item");
+            Object configData = task.getConfigValue("data");
 
-                    ItemStack is;
-                    Material material = Material.getMaterial(String.valueOf(configItem));
+            ItemStack is;
+            Material material = Material.getMaterial(String.valueOf(configItem));
 
-                    if (material == null) {
-                        continue;
-                    }
-                    if (configData != null) {
-                        is = new ItemStack(material, 1, ((Integer) configData).shortValue());
-                    } else {
-                        is = new ItemStack(material, 1);
-                    }
+            if (material == null) {
+                continue;
+            }
+            if (configData != null) {
+                is = new ItemStack(material, 1, ((Integer) configData).shortValue());
+            } else {
+                is = new ItemStack(material, 1);
+            }
 
-                    if (!caught.getItemStack().isSimilar(is)) {
-                        return;
-                    }
+            if (!caught.isSimilar(is)) {
+                return;
+            }
 
-                    int progressCatches;
-                    if (taskProgress.getProgress() == null) {
-                        progressCatches = 0;
-                    } else {
-                        progressCatches = (int) taskProgress.getProgress();
-                    }
+            int progressCatches;
+            if (taskProgress.getProgress() == null) {
+                progressCatches = 0;
+            } else {
+                progressCatches = (int) taskProgress.getProgress();
+            }
 
-                    taskProgress.setProgress(progressCatches + 1);
+            taskProgress.setProgress(progressCatches + 1);
 
-                    if (((int) taskProgress.getProgress()) >= catchesNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((int) taskProgress.getProgress()) >= catchesNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
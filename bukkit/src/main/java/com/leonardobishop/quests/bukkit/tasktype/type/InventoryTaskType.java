@@ -5,10 +5,9 @@ import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
 import com.leonardobishop.quests.common.config.ConfigProblemDescriptions;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.Bukkit;
 import org.bukkit.Material;
@@ -18,17 +17,26 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.inventory.InventoryCloseEvent;
 import org.bukkit.event.player.PlayerPickupItemEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.ItemStack;
+import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 public final class InventoryTaskType extends BukkitTaskType {
 
     private final BukkitQuestsPlugin plugin;
-    
+    private final Set<UUID> dirty = new HashSet<>();
+    private BukkitTask scanTask;
+
     public InventoryTaskType(BukkitQuestsPlugin plugin) {
         super("inventory", TaskUtils.TASK_ATTRIBUTION_STRING, "Obtain a set of items.");
         this.plugin = plugin;
@@ -70,20 +78,70 @@ public final class InventoryTaskType extends BukkitTaskType {
         return problems;
     }
 
+    @Override
+    public @NotNull Object compileConfig(@NotNull Task task) {
+        Object configBlock = task.getConfigValue("item");
+        Object configData = task.getConfigValue("data");
+
+        ItemStack is;
+        if (configBlock instanceof ConfigurationSection) {
+            is = plugin.getItemStack("", (ConfigurationSection) configBlock);
+        } else {
+            Material material = Material.getMaterial(String.valueOf(configBlock));
+
+            if (material == null) {
+                is = null;
+            } else if (configData != null) {
+                is = new ItemStack(material, 1, ((Integer) configData).shortValue());
+            } else {
+                is = new ItemStack(material, 1);
+            }
+        }
+
+        return new Config(is, (int) task.getConfigValue("amount"),
+                (boolean) task.getConfigValue("remove-items-when-complete", false),
+                (boolean) task.getConfigValue("update-progress", false));
+    }
+
+    @Override
+    public void onReady() {
+        // rescheduled on every reload, so that a changed interval takes effect
+        if (this.scanTask != null) {
+            this.scanTask.cancel();
+        }
+        long interval = plugin.getQuestsConfig().getInt("options.performance-tweaking.inventory-scan-interval", 5);
+        this.scanTask = Bukkit.getScheduler().runTaskTimer(plugin, this::scanDirtyInventories, interval, interval);
+    }
+
     @SuppressWarnings("deprecation")
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onItemPickup(PlayerPickupItemEvent event) {
         if (event.getPlayer().hasMetadata("NPC")) return;
 
-        Bukkit.getScheduler().runTaskLater(plugin, () -> this.checkInventory(event.getPlayer()), 1L);
+        dirty.add(event.getPlayer().getUniqueId());
     }
 
     @EventHandler(priority = EventPriority.MONITOR)
     public void onInventoryClick(InventoryCloseEvent event) {
-        Bukkit.getScheduler().runTaskLater(plugin, () -> checkInventory((Player) event.getPlayer()), 1L); //Still some work to do as it doesn't really work
+        dirty.add(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        dirty.remove(event.getPlayer().getUniqueId());
+    }
+
+    private void scanDirtyInventories() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        for (UUID uuid : dirty) {
+            checkInventory(Bukkit.getPlayer(uuid));
+        }
+        dirty.clear();
     }
 
-    @SuppressWarnings("deprecation")
     private void checkInventory(Player player) {
         if (player == null || !player.isOnline()) {
             return;
@@ -91,60 +149,71 @@ public final class InventoryTaskType extends BukkitTaskType {
 
         QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(player.getUniqueId(), () -> checkInventory(player));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        List<ActiveTask> tasks = new ArrayList<>();
+        Map<Material, List<Integer>> tasksByMaterial = new EnumMap<>(Material.class);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(player, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(player, task)) continue;
+            if (activeTask.getTaskProgress().isCompleted()) {
+                continue;
+            }
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            ItemStack is = task.getCompiledConfig(Config.class).template;
+            if (is == null) {
+                continue;
+            }
+            tasksByMaterial.computeIfAbsent(is.getType(), m -> new ArrayList<>()).add(tasks.size());
+            tasks.add(activeTask);
+        }
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+        if (tasks.isEmpty()) {
+            return;
+        }
 
-                    Material material;
-                    int amount = (int) task.getConfigValue("amount");
-                    Object configBlock = task.getConfigValue("item");
-                    Object configData = task.getConfigValue("data");
-                    Object remove = task.getConfigValue("remove-items-when-complete");
+        // count every item of interest in a single pass over the inventory
+        int[] counts = new int[tasks.size()];
+        for (int i = 0; i < 36; i++) {
+            ItemStack slot = player.getInventory().getItem(i);
+            if (slot == null) continue;
 
-                    ItemStack is;
-                    if (configBlock instanceof ConfigurationSection) {
-                        is = plugin.getItemStack("", (ConfigurationSection) configBlock);
-                    } else {
-                        material = Material.getMaterial(String.valueOf(configBlock));
+            List<Integer> interested = tasksByMaterial.get(slot.getType());
+            if (interested == null) continue;
 
-                        if (material == null) {
-                            continue;
-                        }
-                        if (configData != null) {
-                            is = new ItemStack(material, 1, ((Integer) configData).shortValue());
-                        } else {
-                            is = new ItemStack(material, 1);
-                        }
-                    }
+            for (int index : interested) {
+                if (slot.isSimilar(tasks.get(index).getTask().getCompiledConfig(Config.class).template)) {
+                    counts[index] += slot.getAmount();
+                }
+            }
+        }
 
-                    if (task.getConfigValue("update-progress") != null
-                            && (Boolean) task.getConfigValue("update-progress")) {
-                        int inInv = getAmount(player, is, amount);
-                        if (taskProgress.getProgress() != null && (int) taskProgress.getProgress() != inInv) {
-                            taskProgress.setProgress(inInv);
-                        } else if (taskProgress.getProgress() == null) {
-                            taskProgress.setProgress(inInv);
-                        }
-                    }
+        for (int index = 0; index < tasks.size(); index++) {
+            TaskProgress taskProgress = tasks.get(index).getTaskProgress();
+            Config config = tasks.get(index).getTask().getCompiledConfig(Config.class);
+
+            if (config.updateProgress) {
+                int inInv = Math.min(counts[index], config.amount);
+                if (taskProgress.getProgressType() == TaskProgress.ProgressType.NONE || taskProgress.getLong() != inInv) {
+                    taskProgress.setLong(inInv);
+                }
+            }
+
+            if (counts[index] >= config.amount) {
+                taskProgress.setCompleted(true);
 
-                    if (player.getInventory().containsAtLeast(is, amount)) {
-                        is.setAmount(amount);
-                        taskProgress.setCompleted(true);
+                if (config.removeItemsWhenComplete) {
+                    ItemStack is = config.template.clone();
+                    is.setAmount(config.amount);
+                    player.getInventory().removeItem(is);
 
-                        if (remove != null && ((Boolean) remove)) {
-                            player.getInventory().removeItem(is);
+                    // the removed items can no longer count towards any other task
+                    for (int other : tasksByMaterial.get(is.getType())) {
+                        if (config.template.isSimilar(tasks.get(other).getTask().getCompiledConfig(Config.class).template)) {
+                            counts[other] -= config.amount;
                         }
                     }
                 }
@@ -152,18 +221,19 @@ public final class InventoryTaskType extends BukkitTaskType {
         }
     }
 
-    private int getAmount(Player player, ItemStack is, int max) {
-        if (is == null) {
-            return 0;
-        }
-        int amount = 0;
-        for (int i = 0; i < 36; i++) {
-            ItemStack slot = player.getInventory().getItem(i);
-            if (slot == null || !slot.isSimilar(is))
-                continue;
-            amount += slot.getAmount();
+    private static final class Config {
+
+        private final ItemStack template;
+        private final int amount;
+        private final boolean removeItemsWhenComplete;
+        private final boolean updateProgress;
+
+        private Config(ItemStack template, int amount, boolean removeItemsWhenComplete, boolean updateProgress) {
+            this.template = template;
+            this.amount = amount;
+            this.removeItemsWhenComplete = removeItemsWhenComplete;
+            this.updateProgress = updateProgress;
         }
-        return Math.min(amount, max);
     }
 
 }
@@ -4,13 +4,12 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.Material;
+import org.bukkit.World;
 import org.bukkit.entity.Cow;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -21,6 +20,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class MilkingTaskType extends BukkitTaskType {
 
@@ -49,42 +49,40 @@ public final class MilkingTaskType extends BukkitTaskType {
         if (event.getPlayer().hasMetadata("NPC")) return;
 
         Player player = event.getPlayer();
+        addMilk(player.getUniqueId(), player.getWorld());
+    }
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+    // replayed with the same values if the player has not finished loading
+    private void addMilk(UUID uuid, World world) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addMilk(uuid, world));
             return;
         }
 
-        QuestProgressFile questProgressFile = qPlayer.getQuestProgressFile();
-
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(player, task)) continue;
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    int cowsNeeded = (int) task.getConfigValue("amount");
+            int cowsNeeded = (int) task.getConfigValue("amount");
 
-                    int progressMilked;
-                    if (taskProgress.getProgress() == null) {
-                        progressMilked = 0;
-                    } else {
-                        progressMilked = (int) taskProgress.getProgress();
-                    }
+            int progressMilked;
+            if (taskProgress.getProgress() == null) {
+                progressMilked = 0;
+            } else {
+                progressMilked = (int) taskProgress.getProgress();
+            }
 
-                    taskProgress.setProgress(progressMilked + 1);
+            taskProgress.setProgress(progressMilked + 1);
 
-                    if (((int) taskProgress.getProgress()) >= cowsNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((int) taskProgress.getProgress()) >= cowsNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
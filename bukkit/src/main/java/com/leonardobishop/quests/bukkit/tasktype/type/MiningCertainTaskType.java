@@ -2,13 +2,13 @@ package com.leonardobishop.quests.bukkit.tasktype.type;
 
 import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
+import com.leonardobishop.quests.bukkit.util.BlockMatchTable;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
 import com.leonardobishop.quests.common.config.ConfigProblemDescriptions;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
@@ -21,10 +21,12 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class MiningCertainTaskType extends BukkitTaskType {
 
     private final BukkitQuestsPlugin plugin;
+    private BlockMatchTable blockMatchTable = BlockMatchTable.empty();
 
     public MiningCertainTaskType(BukkitQuestsPlugin plugin) {
         super("blockbreakcertain", TaskUtils.TASK_ATTRIBUTION_STRING, "Break a set amount of a specific block.");
@@ -70,126 +72,133 @@ public final class MiningCertainTaskType extends BukkitTaskType {
         return problems;
     }
 
+    @Override
+    public @NotNull Object compileConfig(@NotNull Task task) {
+        return new Config((int) task.getConfigValue("amount"),
+                (boolean) task.getConfigValue("reverse-if-placed", false),
+                (boolean) task.getConfigValue("check-coreprotect", false),
+                (int) task.getConfigValue("check-coreprotect-time", 3600));
+    }
+
+    @Override
+    public void onReady() {
+        this.blockMatchTable = BlockMatchTable.compile(this);
+    }
+
+    @SuppressWarnings("deprecation")
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
         if (event.getPlayer().hasMetadata("NPC")) return;
+        if (!blockMatchTable.isInterested(event.getBlock().getType())) return;
+
+        addBreak(event.getPlayer().getUniqueId(), event.getBlock(), event.getBlock().getType(), event.getBlock().getData(), System.currentTimeMillis());
+    }
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+    // replayed with the same values if the player has not finished loading, by which time the block is gone; the
+    // block itself is only used for its position
+    private void addBreak(UUID uuid, Block block, Material type, int data, long brokenAt) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addBreak(uuid, block, type, data, brokenAt));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(block.getWorld(), task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(event.getPlayer(), task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
-
-                    if (matchBlock(task, event.getBlock())) {
-                        boolean coreProtectEnabled = (boolean) task.getConfigValue("check-coreprotect", false);
-                        int coreProtectTime = (int) task.getConfigValue("check-coreprotect-time", 3600);
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                        if (coreProtectEnabled && plugin.getCoreProtectHook().checkBlock(event.getBlock(), coreProtectTime)) {
-                            continue;
+            if (blockMatchTable.matches(task, type, data)) {
+                Config config = task.getCompiledConfig(Config.class);
+                if (config.checkCoreProtect) {
+                    // the lookup is made asynchronously, progress is only added once the block is known to be natural;
+                    // the task is looked up again then as the player may have quit or their quests changed since
+                    plugin.getCoreProtectVerifier().verify(block, config.checkCoreProtectTime, brokenAt, placedByPlayer -> {
+                        if (placedByPlayer) return;
+
+                        TaskProgress current = getTaskProgress(uuid, task);
+                        if (current != null && !current.isCompleted()) {
+                            increment(task, current, 1);
                         }
-                        increment(task, taskProgress, 1);
-                    }
+                    });
+                    continue;
                 }
+                increment(task, taskProgress, 1);
             }
         }
     }
 
     // subtract if enabled
+    @SuppressWarnings("deprecation")
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockPlace(BlockPlaceEvent event) {
         if (event.getPlayer().hasMetadata("NPC")) return;
+        if (!blockMatchTable.isInterested(event.getBlock().getType())) return;
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+        removeBreak(event.getPlayer().getUniqueId(), event.getBlock().getType(), event.getBlock().getData());
+    }
+
+    // replayed with the same values if the player has not finished loading, by which time the block may have changed
+    private void removeBreak(UUID uuid, Material type, int data) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> removeBreak(uuid, type, data));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    if (task.getConfigValue("reverse-if-placed") != null && ((boolean) task.getConfigValue("reverse-if-placed"))) {
-                        if (matchBlock(task, event.getBlock())) {
-                            increment(task, taskProgress, -1);
-                        }
-                    }
+            if (task.getCompiledConfig(Config.class).reverseIfPlaced) {
+                if (blockMatchTable.matches(task, type, data)) {
+                    increment(task, taskProgress, -1);
                 }
             }
         }
     }
 
-    @SuppressWarnings("deprecation")
-    private boolean matchBlock(Task task, Block block) {
-        Material material;
-
-        Object configBlock = task.getConfigValues().containsKey("block") ? task.getConfigValue("block") : task.getConfigValue("blocks");
-        Object configData = task.getConfigValue("data");
-        Object configSimilarBlocks = task.getConfigValue("use-similar-blocks");
-
-        List<String> checkBlocks = new ArrayList<>();
-        if (configBlock instanceof List) {
-            checkBlocks.addAll((List) configBlock);
-        } else {
-            checkBlocks.add(String.valueOf(configBlock));
-        }
-
-        for (String materialName : checkBlocks) {
-            // LOG:1 LOG:2 LOG should all be supported with this
-            String[] split = materialName.split(":");
-            int comparableData = 0;
-            if (configData != null) {
-                comparableData = (int) configData;
-            }
-            if (split.length > 1) {
-                comparableData = Integer.parseInt(split[1]);
-            }
-
-            material = Material.getMaterial(String.valueOf(split[0]));
-            Material blockType = block.getType();
+    private TaskProgress getTaskProgress(UUID uuid, Task task) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
+        if (qPlayer == null) return null;
 
-            short blockData = block.getData();
-
-            if (blockType == material) {
-            	if (((split.length == 1 && configData == null) || ((int) blockData) == comparableData))
-                	return true;
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            if (activeTask.getTask() == task) {
+                return activeTask.getTaskProgress();
             }
         }
-        return false;
+        return null;
     }
 
     private void increment(Task task, TaskProgress taskProgress, int amount) {
-        int brokenBlocksNeeded = (int) task.getConfigValue("amount");
+        int brokenBlocksNeeded = task.getCompiledConfig(Config.class).amount;
 
-        int progressBlocksBroken;
-        if (taskProgress.getProgress() == null) {
-            progressBlocksBroken = 0;
-        } else {
-            progressBlocksBroken = (int) taskProgress.getProgress();
+        if (taskProgress.increment(amount) >= brokenBlocksNeeded) {
+            taskProgress.setCompleted(true);
         }
+    }
 
-        taskProgress.setProgress(progressBlocksBroken + amount);
+    private static final class Config {
 
-        if (((int) taskProgress.getProgress()) >= brokenBlocksNeeded) {
-            taskProgress.setCompleted(true);
+        private final int amount;
+        private final boolean reverseIfPlaced;
+        private final boolean checkCoreProtect;
+        private final int checkCoreProtectTime;
+
+        private Config(int amount, boolean reverseIfPlaced, boolean checkCoreProtect, int checkCoreProtectTime) {
+            this.amount = amount;
+            this.reverseIfPlaced = reverseIfPlaced;
+            this.checkCoreProtect = checkCoreProtect;
+            this.checkCoreProtectTime = checkCoreProtectTime;
         }
     }
 
@@ -4,11 +4,11 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.block.BlockBreakEvent;
@@ -17,6 +17,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class MiningTaskType extends BukkitTaskType {
 
@@ -36,44 +37,55 @@ public final class MiningTaskType extends BukkitTaskType {
         return problems;
     }
 
+    // compiled once when the quest is loaded, so that event handlers do not need to look up and cast config values
+    @Override
+    public @NotNull Object compileConfig(@NotNull Task task) {
+        return new Config((int) task.getConfigValue("amount"));
+    }
+
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
         if (event.getPlayer().hasMetadata("NPC")) return;  // citizens also causes these events to fire
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId()); // get the qplayer so you can get their progress
+        addBreak(event.getPlayer().getUniqueId(), event.getPlayer().getWorld());
+    }
+
+    // replayed with the same values if the player has not finished loading, so nothing is read from the event or world
+    private void addBreak(UUID uuid, World world) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid); // get the qplayer so you can get their progress
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addBreak(uuid, world));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) { // iterate through all quests which are registered to use this task type
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) { // get all tasks of this type
-                    if (!TaskUtils.validateWorld(event.getPlayer(), task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress(); // get the task progress and increment progress by 1
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId()); // get the task progress and increment progress by 1
+            if (taskProgress.isCompleted()) { // dont need to increment a completed task
+                continue;
+            }
 
-                    if (taskProgress.isCompleted()) { // dont need to increment a completed task
-                        continue;
-                    }
+            int brokenBlocksNeeded = task.getCompiledConfig(Config.class).amount; // this will retrieve the value compiled from the config under the key "amount"
 
-                    int brokenBlocksNeeded = (int) task.getConfigValue("amount"); // this will retrieve a value from the config under the key "value"
+            // note: if the player has never progressed before, increment() will start from 0
+            // numeric progress is stored as a primitive, so this does not allocate
+            long progressBlocksBroken = taskProgress.increment(1);
 
-                    int progressBlocksBroken;
-                    if (taskProgress.getProgress() == null) { // note: if the player has never progressed before, getProgress() will return null
-                        progressBlocksBroken = 0;
-                    } else {
-                        progressBlocksBroken = (int) taskProgress.getProgress();
-                    }
+            if (progressBlocksBroken >= brokenBlocksNeeded) { // completion statement, if true the task is complete
+                taskProgress.setCompleted(true);
+            }
+        }
+    }
 
-                    taskProgress.setProgress(progressBlocksBroken + 1); // the progress does not have to be an int, although must be serializable by the yaml provider
+    private static final class Config {
 
-                    if (((int) taskProgress.getProgress()) >= brokenBlocksNeeded) { // completion statement, if true the task is complete
-                        taskProgress.setCompleted(true);
-                    }
-                }
-            }
+        private final int amount;
+
+        private Config(int amount) {
+            this.amount = amount;
         }
     }
 
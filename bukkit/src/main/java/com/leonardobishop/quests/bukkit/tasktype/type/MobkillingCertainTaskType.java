@@ -6,11 +6,11 @@ import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.bukkit.util.chat.Chat;
 import com.leonardobishop.quests.common.config.ConfigProblem;
 import com.leonardobishop.quests.common.config.ConfigProblemDescriptions;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.EntityType;
 import org.bukkit.entity.Player;
@@ -22,6 +22,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class MobkillingCertainTaskType extends BukkitTaskType {
 
@@ -63,74 +64,75 @@ public final class MobkillingCertainTaskType extends BukkitTaskType {
 
         if (killer.hasMetadata("NPC")) return;
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(killer.getUniqueId());
+        addKill(killer.getUniqueId(), killer.getWorld(), mob.getType(), mob.getCustomName());
+    }
+
+    // replayed with the same values if the player has not finished loading, by which time the mob is gone
+    private void addKill(UUID uuid, World world, EntityType mobType, String customName) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addKill(uuid, world, mobType, customName));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(killer, task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            String configEntity = (String) task.getConfigValue("mob");
 
-                    String configEntity = (String) task.getConfigValue("mob");
+            EntityType entity;
+            try {
+                entity = EntityType.valueOf(configEntity);
+            } catch (IllegalArgumentException ex) {
+                continue;
+            }
 
-                    EntityType entity;
-                    try {
-                        entity = EntityType.valueOf(configEntity);
-                    } catch (IllegalArgumentException ex) {
-                        continue;
-                    }
+            Object configName = task.getConfigValues().containsKey("name") ? task.getConfigValue("name") : task.getConfigValue("names");
 
-                    Object configName = task.getConfigValues().containsKey("name") ? task.getConfigValue("name") : task.getConfigValue("names");
-
-                    if (configName != null) {
-                        List<String> configNames = new ArrayList<>();
-                        if (configName instanceof List) {
-                            configNames.addAll((List) configName);
-                        } else {
-                            configNames.add(String.valueOf(configName));
-                        }
-
-                        boolean validName = false;
-                        for (String name : configNames) {
-                            name = Chat.color(name);
-                            if (mob.getCustomName() == null || !mob.getCustomName().equals(name)) {
-                                validName = true;
-                                break;
-                            }
-                        }
-
-                        if (!validName) continue;
-                    }
+            if (configName != null) {
+                List<String> configNames = new ArrayList<>();
+                if (configName instanceof List) {
+                    configNames.addAll((List) configName);
+                } else {
+                    configNames.add(String.valueOf(configName));
+                }
 
-                    if (mob.getType() != entity) {
-                        continue;
+                boolean validName = false;
+                for (String name : configNames) {
+                    name = Chat.color(name);
+                    if (customName == null || !customName.equals(name)) {
+                        validName = true;
+                        break;
                     }
+                }
 
-                    int mobKillsNeeded = (int) task.getConfigValue("amount");
+                if (!validName) continue;
+            }
 
-                    int progressKills;
-                    if (taskProgress.getProgress() == null) {
-                        progressKills = 0;
-                    } else {
-                        progressKills = (int) taskProgress.getProgress();
-                    }
+            if (mobType != entity) {
+                continue;
+            }
 
-                    taskProgress.setProgress(progressKills + 1);
+            int mobKillsNeeded = (int) task.getConfigValue("amount");
 
-                    if (((int) taskProgress.getProgress()) >= mobKillsNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            int progressKills;
+            if (taskProgress.getProgress() == null) {
+                progressKills = 0;
+            } else {
+                progressKills = (int) taskProgress.getProgress();
+            }
+
+            taskProgress.setProgress(progressKills + 1);
+
+            if (((int) taskProgress.getProgress()) >= mobKillsNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
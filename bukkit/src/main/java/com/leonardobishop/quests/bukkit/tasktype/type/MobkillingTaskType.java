@@ -4,11 +4,11 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.entity.Animals;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Monster;
@@ -21,6 +21,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class MobkillingTaskType extends BukkitTaskType {
 
@@ -55,54 +56,55 @@ public final class MobkillingTaskType extends BukkitTaskType {
 
         if (killer.hasMetadata("NPC")) return;
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(killer.getUniqueId());
+        addKill(killer.getUniqueId(), killer.getWorld(), mob instanceof Animals, mob instanceof Monster);
+    }
+
+    // replayed with the same values if the player has not finished loading, by which time the mob is gone
+    private void addKill(UUID uuid, World world, boolean animal, boolean monster) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addKill(uuid, world, animal, monster));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(killer, task)) continue;
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    boolean hostilitySpecified = false;
-                    boolean hostile = false;
-                    if (task.getConfigValue("hostile") != null) {
-                        hostilitySpecified = true;
-                        hostile = (boolean) task.getConfigValue("hostile");
-                    }
+            boolean hostilitySpecified = false;
+            boolean hostile = false;
+            if (task.getConfigValue("hostile") != null) {
+                hostilitySpecified = true;
+                hostile = (boolean) task.getConfigValue("hostile");
+            }
 
-                    if (hostilitySpecified) {
-                        if (!hostile && !(mob instanceof Animals)) {
-                            continue;
-                        } else if (hostile && !(mob instanceof Monster)) {
-                            continue;
-                        }
-                    }
+            if (hostilitySpecified) {
+                if (!hostile && !animal) {
+                    continue;
+                } else if (hostile && !monster) {
+                    continue;
+                }
+            }
 
-                    int mobKillsNeeded = (int) task.getConfigValue("amount");
+            int mobKillsNeeded = (int) task.getConfigValue("amount");
 
-                    int progressKills;
-                    if (taskProgress.getProgress() == null) {
-                        progressKills = 0;
-                    } else {
-                        progressKills = (int) taskProgress.getProgress();
-                    }
+            int progressKills;
+            if (taskProgress.getProgress() == null) {
+                progressKills = 0;
+            } else {
+                progressKills = (int) taskProgress.getProgress();
+            }
 
-                    taskProgress.setProgress(progressKills + 1);
+            taskProgress.setProgress(progressKills + 1);
 
-                    if (((int) taskProgress.getProgress()) >= mobKillsNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((int) taskProgress.getProgress()) >= mobKillsNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
@@ -4,15 +4,11 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
@@ -22,11 +18,11 @@ import java.util.List;
 public final class PlaytimeTaskType extends BukkitTaskType {
 
     private final BukkitQuestsPlugin plugin;
-    private BukkitTask poll;
 
     public PlaytimeTaskType(BukkitQuestsPlugin plugin) {
         super("playtime", TaskUtils.TASK_ATTRIBUTION_STRING, "Track the amount of playing time a user has been on");
         this.plugin = plugin;
+        plugin.getPollingScheduler().register(super.getType(), 1200L, this::poll);
     }
 
     @Override
@@ -37,52 +33,20 @@ public final class PlaytimeTaskType extends BukkitTaskType {
         return problems;
     }
 
-
-    @Override
-    public void onReady() {
-        if (this.poll == null) {
-            this.poll = new BukkitRunnable() {
-                @Override
-                public void run() {
-                    for (Player player : Bukkit.getOnlinePlayers()) {
-                        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
-                        if (qPlayer == null) {
-                            continue;
-                        }
-
-                        for (Quest quest : PlaytimeTaskType.super.getRegisteredQuests()) {
-                            if (qPlayer.hasStartedQuest(quest)) {
-                                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-                                for (Task task : quest.getTasksOfType(PlaytimeTaskType.super.getType())) {
-                                    if (!TaskUtils.validateWorld(player, task)) continue;
-
-                                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-                                    if (taskProgress.isCompleted()) {
-                                        continue;
-                                    }
-                                    int minutes = (int) task.getConfigValue("minutes");
-                                    if (taskProgress.getProgress() == null) {
-                                        taskProgress.setProgress(1);
-                                    } else {
-                                        taskProgress.setProgress((int) taskProgress.getProgress() + 1);
-                                    }
-                                    if (((int) taskProgress.getProgress()) >= minutes) {
-                                        taskProgress.setCompleted(true);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }.runTaskTimer(plugin, 1200L, 1200L);
+    private void poll(Player player, QPlayer qPlayer) {
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(player, task)) continue;
+
+            TaskProgress taskProgress = activeTask.getTaskProgress();
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
+            int minutes = (int) task.getConfigValue("minutes");
+            if (taskProgress.increment(1) >= minutes) {
+                taskProgress.setCompleted(true);
+            }
         }
     }
 
-    @Override
-    public void onDisable() {
-//        if (this.poll != null) {
-//            this.poll.cancel();
-//        }
-    }
-
 }
@@ -2,10 +2,11 @@ package com.leonardobishop.quests.bukkit.tasktype.type;
 
 import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
+import com.leonardobishop.quests.bukkit.util.PositionIndex;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
 import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
@@ -16,15 +17,18 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.world.WorldLoadEvent;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class PositionTaskType extends BukkitTaskType {
 
     private final BukkitQuestsPlugin plugin;
+    private PositionIndex positionIndex = new PositionIndex();
 
     public PositionTaskType(BukkitQuestsPlugin plugin) {
         super("position", TaskUtils.TASK_ATTRIBUTION_STRING, "Reach a set of co-ordinates.");
@@ -45,53 +49,76 @@ public final class PositionTaskType extends BukkitTaskType {
         return problems;
     }
 
+    @Override
+    public void onReady() {
+        PositionIndex positionIndex = new PositionIndex();
+        for (Quest quest : super.getRegisteredQuests()) {
+            for (Task task : quest.getTasksOfType(super.getType())) {
+                Object worldString = task.getConfigValue("world");
+                World world = worldString == null ? null : Bukkit.getWorld(String.valueOf(worldString));
+                if (world == null) {
+                    continue;
+                }
+
+                int x = (int) task.getConfigValue("x");
+                int y = (int) task.getConfigValue("y");
+                int z = (int) task.getConfigValue("z");
+                int padding = (int) task.getConfigValue("distance-padding", 0);
+                positionIndex.add(world, task, x, y, z, padding);
+            }
+        }
+        this.positionIndex = positionIndex;
+    }
+
+    // targets in worlds which were not loaded yet could not be indexed
+    @EventHandler
+    public void onWorldLoad(WorldLoadEvent event) {
+        onReady();
+    }
+
+    // every block change is checked rather than a sample, so players cannot walk through a target between samples;
+    // the index keeps this cheap for moves which are nowhere near a target
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onMove(PlayerMoveEvent event) {
-        if (event.getFrom().getBlockX() == event.getTo().getBlockX() && event.getFrom().getBlockZ() == event.getTo().getBlockZ()) {
+        Location from = event.getFrom();
+        Location to = event.getTo();
+        if (from.getBlockX() == to.getBlockX() && from.getBlockZ() == to.getBlockZ()) {
             return;
         }
 
-        if (event.getPlayer().hasMetadata("NPC")) return;
+        UUID world = to.getWorld().getUID();
+        int blockX = to.getBlockX();
+        int blockY = to.getBlockY();
+        int blockZ = to.getBlockZ();
+        if (!positionIndex.hasTargetsNear(world, blockX, blockZ)) {
+            return;
+        }
 
         Player player = event.getPlayer();
+        if (player.hasMetadata("NPC")) return;
 
         QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
         if (qPlayer == null) {
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
-
-                    int x = (int) task.getConfigValue("x");
-                    int y = (int) task.getConfigValue("y");
-                    int z = (int) task.getConfigValue("z");
-                    String worldString = (String) task.getConfigValue("world");
-                    int padding = 0;
-                    if (task.getConfigValue("distance-padding") != null) {
-                        padding = (int) task.getConfigValue("distance-padding");
-                    }
-                    int paddingSquared = padding * padding;
-                    World world = Bukkit.getWorld(worldString);
-                    if (world == null) {
-                        continue;
-                    }
-
-                    Location location = new Location(world, x, y, z);
-                    if (player.getWorld().equals(world) && player.getLocation().getBlockX() == location.getBlockX() && player.getLocation().getBlockY() == location.getBlockY() && player.getLocation().getBlockZ() == location.getBlockZ()) {
-                        taskProgress.setCompleted(true);
-                    } else if (padding != 0 && player.getWorld().equals(world) && player.getLocation().distanceSquared(location) < paddingSquared) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            TaskProgress taskProgress = activeTask.getTaskProgress();
+
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
+
+            PositionIndex.Target target = positionIndex.getTargetNear(world, blockX, blockZ, task);
+            if (target == null) {
+                continue;
+            }
+
+            if (target.isAt(blockX, blockY, blockZ)) {
+                taskProgress.setCompleted(true);
+            } else if (target.getRadiusSquared() != 0 && target.distanceSquared(blockX, blockY, blockZ) < target.getRadiusSquared()) {
+                taskProgress.setCompleted(true);
             }
         }
     }
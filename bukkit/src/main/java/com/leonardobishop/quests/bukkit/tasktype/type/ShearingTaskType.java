@@ -4,11 +4,11 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.entity.Sheep;
 import org.bukkit.event.EventHandler;
@@ -19,6 +19,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class ShearingTaskType extends BukkitTaskType {
 
@@ -46,40 +47,40 @@ public final class ShearingTaskType extends BukkitTaskType {
         if (event.getPlayer().hasMetadata("NPC")) return;
 
         Player player = event.getPlayer();
+        addShear(player.getUniqueId(), player.getWorld());
+    }
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
+    // replayed with the same values if the player has not finished loading
+    private void addShear(UUID uuid, World world) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addShear(uuid, world));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(player, task)) continue;
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    int sheepNeeded = (int) task.getConfigValue("amount");
+            int sheepNeeded = (int) task.getConfigValue("amount");
 
-                    int progressSheared;
-                    if (taskProgress.getProgress() == null) {
-                        progressSheared = 0;
-                    } else {
-                        progressSheared = (int) taskProgress.getProgress();
-                    }
+            int progressSheared;
+            if (taskProgress.getProgress() == null) {
+                progressSheared = 0;
+            } else {
+                progressSheared = (int) taskProgress.getProgress();
+            }
 
-                    taskProgress.setProgress(progressSheared + 1);
+            taskProgress.setProgress(progressSheared + 1);
 
-                    if (((int) taskProgress.getProgress()) >= sheepNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((int) taskProgress.getProgress()) >= sheepNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
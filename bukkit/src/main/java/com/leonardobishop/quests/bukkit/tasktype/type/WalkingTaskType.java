@@ -2,30 +2,30 @@ package com.leonardobishop.quests.bukkit.tasktype.type;
 
 import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
+import com.leonardobishop.quests.bukkit.tasktype.MovementSample;
+import com.leonardobishop.quests.bukkit.tasktype.MovementSampleListener;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
-import org.bukkit.event.EventHandler;
-import org.bukkit.event.EventPriority;
-import org.bukkit.event.player.PlayerMoveEvent;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
-public final class WalkingTaskType extends BukkitTaskType {
+public final class WalkingTaskType extends BukkitTaskType implements MovementSampleListener {
 
     private final BukkitQuestsPlugin plugin;
 
     public WalkingTaskType(BukkitQuestsPlugin plugin) {
         super("walking", TaskUtils.TASK_ATTRIBUTION_STRING, "Walk a set distance.");
         this.plugin = plugin;
+        plugin.getMovementSampler().registerListener(this);
     }
 
     @Override
@@ -36,50 +36,39 @@ public final class WalkingTaskType extends BukkitTaskType {
         return problems;
     }
 
-    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    public void onMove(PlayerMoveEvent event) {
-        if (event.getFrom().getBlockX() == event.getTo().getBlockX() && event.getFrom().getBlockZ() == event.getTo().getBlockZ()) {
-            return;
-        }
-
-        Player player = event.getPlayer();
-
-        if (player.hasMetadata("NPC")) return;
+    @Override
+    public @NotNull Object compileConfig(@NotNull Task task) {
+        return new Config((int) task.getConfigValue("distance"));
+    }
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
-        if (qPlayer == null) {
-            return;
-        }
+    @Override
+    public void onMovementSample(Player player, QPlayer qPlayer, MovementSample sample) {
+        World world = sample.getWorld();
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(player, task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            int distanceNeeded = task.getCompiledConfig(Config.class).distance;
 
-                    int distanceNeeded = (int) task.getConfigValue("distance");
+            if (taskProgress.increment(sample.getBlocksWalked()) >= distanceNeeded) {
+                taskProgress.setCompleted(true);
+            }
+        }
+    }
 
-                    int progressDistance;
-                    if (taskProgress.getProgress() == null) {
-                        progressDistance = 0;
-                    } else {
-                        progressDistance = (int) taskProgress.getProgress();
-                    }
+    private static final class Config {
 
-                    taskProgress.setProgress(progressDistance + 1);
+        private final int distance;
 
-                    if (((int) taskProgress.getProgress()) >= distanceNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
-            }
+        private Config(int distance) {
+            this.distance = distance;
         }
     }
 
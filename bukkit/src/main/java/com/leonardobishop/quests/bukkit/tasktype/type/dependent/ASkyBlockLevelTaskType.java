@@ -4,10 +4,9 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import com.wasteofplastic.askyblock.events.IslandPostLevelEvent;
 import org.bukkit.event.EventHandler;
@@ -17,6 +16,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class ASkyBlockLevelTaskType extends BukkitTaskType {
 
@@ -37,30 +37,31 @@ public final class ASkyBlockLevelTaskType extends BukkitTaskType {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onIslandLevel(IslandPostLevelEvent event) {
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer());
+        setLevel(event.getPlayer(), event.getLongLevel());
+    }
+
+    // replayed with the same values if the player has not finished loading
+    private void setLevel(UUID uuid, long level) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> setLevel(uuid, level));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    long islandLevelNeeded = (long) (int) task.getConfigValue("level");
+            long islandLevelNeeded = (long) (int) task.getConfigValue("level");
 
-                    taskProgress.setProgress(event.getLongLevel());
+            taskProgress.setProgress(level);
 
-                    if (((long) taskProgress.getProgress()) >= islandLevelNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((long) taskProgress.getProgress()) >= islandLevelNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
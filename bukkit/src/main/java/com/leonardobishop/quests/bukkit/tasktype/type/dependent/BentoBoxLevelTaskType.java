@@ -4,10 +4,9 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import com.leonardobishop.quests.common.tasktype.TaskTypeManager;
 import org.bukkit.event.EventHandler;
@@ -62,37 +61,32 @@ public final class BentoBoxLevelTaskType extends BukkitTaskType {
                     continue;
                 }
 
-                for (Quest quest : super.getRegisteredQuests()) {
-                    if (qPlayer.hasStartedQuest(quest)) {
-                        QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+                for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+                    Task task = activeTask.getTask();
+                    TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                        for (Task task : quest.getTasksOfType(super.getType())) {
-                            TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                            if (taskProgress.isCompleted()) {
-                                continue;
-                            }
+                    if (taskProgress.isCompleted()) {
+                        continue;
+                    }
 
-                            long islandLevelNeeded = (long) (int) task.getConfigValue("level");
+                    long islandLevelNeeded = (long) (int) task.getConfigValue("level");
 
-                            Object results = keyValues.get("results");
+                    Object results = keyValues.get("results");
 
-                            try {
-                                if (levelField == null) {
-                                    levelField = results.getClass().getDeclaredField("level");
-                                    levelField.setAccessible(true);
-                                }
+                    try {
+                        if (levelField == null) {
+                            levelField = results.getClass().getDeclaredField("level");
+                            levelField.setAccessible(true);
+                        }
 
-                                AtomicLong level = (AtomicLong) levelField.get(results);
-                                taskProgress.setProgress(level.get());
-                            } catch (NoSuchFieldException | IllegalAccessException e) {
-                                e.printStackTrace();
-                            }
+                        AtomicLong level = (AtomicLong) levelField.get(results);
+                        taskProgress.setProgress(level.get());
+                    } catch (NoSuchFieldException | IllegalAccessException e) {
+                        e.printStackTrace();
+                    }
 
-                            if (((long) taskProgress.getProgress()) >= islandLevelNeeded) {
-                                taskProgress.setCompleted(true);
-                            }
-                        }
+                    if (((long) taskProgress.getProgress()) >= islandLevelNeeded) {
+                        taskProgress.setCompleted(true);
                     }
                 }
             }
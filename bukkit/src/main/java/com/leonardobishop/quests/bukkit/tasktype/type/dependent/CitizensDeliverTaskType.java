@@ -6,10 +6,9 @@ import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.bukkit.util.chat.Chat;
 import com.leonardobishop.quests.common.config.ConfigProblem;
 import com.leonardobishop.quests.common.config.ConfigProblemDescriptions;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import net.citizensnpcs.api.event.NPCRightClickEvent;
 import org.bukkit.Bukkit;
@@ -81,56 +80,52 @@ public final class CitizensDeliverTaskType extends BukkitTaskType {
         }
         QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(player.getUniqueId(), () -> checkInventory(player, citizenName));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!Chat.strip(Chat.color(String.valueOf(task.getConfigValue("npc-name"))))
+                    .equals(Chat.strip(Chat.color(citizenName)))) {
+                continue;
+            }
+            if (!TaskUtils.validateWorld(player, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!Chat.strip(Chat.color(String.valueOf(task.getConfigValue("npc-name"))))
-                            .equals(Chat.strip(Chat.color(citizenName)))) {
-                        return;
-                    }
-                    if (!TaskUtils.validateWorld(player, task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            Material material;
+            int amount = (int) task.getConfigValue("amount");
+            Object configBlock = task.getConfigValue("item");
+            Object configData = task.getConfigValue("data");
+            Object remove = task.getConfigValue("remove-items-when-complete");
 
-                    Material material;
-                    int amount = (int) task.getConfigValue("amount");
-                    Object configBlock = task.getConfigValue("item");
-                    Object configData = task.getConfigValue("data");
-                    Object remove = task.getConfigValue("remove-items-when-complete");
-
-                    ItemStack is;
-                    if (configBlock instanceof ConfigurationSection) {
-                        is = plugin.getItemStack("", (ConfigurationSection) configBlock);
-                    } else {
-                        material = Material.getMaterial(String.valueOf(configBlock));
-
-                        if (material == null) {
-                            continue;
-                        }
-                        if (configData != null) {
-                            is = new ItemStack(material, 1, ((Integer) configData).shortValue());
-                        } else {
-                            is = new ItemStack(material, 1);
-                        }
-                    }
+            ItemStack is;
+            if (configBlock instanceof ConfigurationSection) {
+                is = plugin.getItemStack("", (ConfigurationSection) configBlock);
+            } else {
+                material = Material.getMaterial(String.valueOf(configBlock));
 
-                    if (player.getInventory().containsAtLeast(is, amount)) {
-                        is.setAmount(amount);
-                        taskProgress.setCompleted(true);
+                if (material == null) {
+                    continue;
+                }
+                if (configData != null) {
+                    is = new ItemStack(material, 1, ((Integer) configData).shortValue());
+                } else {
+                    is = new ItemStack(material, 1);
+                }
+            }
 
-                        if (remove != null && ((Boolean) remove)) {
-                            player.getInventory().removeItem(is);
-                        }
-                    }
+            if (player.getInventory().containsAtLeast(is, amount)) {
+                is.setAmount(amount);
+                taskProgress.setCompleted(true);
+
+                if (remove != null && ((Boolean) remove)) {
+                    player.getInventory().removeItem(is);
                 }
             }
         }
@@ -5,12 +5,12 @@ import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.bukkit.util.chat.Chat;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import net.citizensnpcs.api.event.NPCRightClickEvent;
+import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.jetbrains.annotations.NotNull;
@@ -18,6 +18,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class CitizensInteractTaskType extends BukkitTaskType {
 
@@ -38,31 +39,31 @@ public final class CitizensInteractTaskType extends BukkitTaskType {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onNPCClick(NPCRightClickEvent event) {
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getClicker().getUniqueId());
+        addInteraction(event.getClicker().getUniqueId(), event.getClicker().getWorld(), Chat.strip(Chat.color(event.getNPC().getName())));
+    }
+
+    // replayed with the same values if the player has not finished loading
+    private void addInteraction(UUID uuid, World world, String npcName) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addInteraction(uuid, world, npcName));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(event.getClicker(), task)) continue;
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                    if (!Chat.strip(Chat.color(String.valueOf(task.getConfigValue("npc-name"))))
-                            .equals(Chat.strip(Chat.color(event.getNPC().getName())))) {
-                        return;
-                    }
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (!Chat.strip(Chat.color(String.valueOf(task.getConfigValue("npc-name")))).equals(npcName)) {
+                return;
+            }
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    taskProgress.setCompleted(true);
-                }
+            if (taskProgress.isCompleted()) {
+                continue;
             }
+
+            taskProgress.setCompleted(true);
         }
     }
 
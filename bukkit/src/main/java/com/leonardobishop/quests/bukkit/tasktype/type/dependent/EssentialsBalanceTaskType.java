@@ -5,6 +5,7 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
 import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
@@ -52,7 +53,7 @@ public class EssentialsBalanceTaskType extends BukkitTaskType {
             }
             QuestProgressFile questProgressFile = qPlayer.getQuestProgressFile();
             QuestProgress questProgress = questProgressFile.getQuestProgress(quest);
-            TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            TaskProgress taskProgress = questProgress.getTaskProgress(task);
 
             int earningsNeeded = (int) task.getConfigValue("amount");
             BigDecimal money = ess.getUser(player).getMoney();
@@ -65,30 +66,31 @@ public class EssentialsBalanceTaskType extends BukkitTaskType {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onMoneyEarn(UserBalanceUpdateEvent event) {
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+        setBalance(event.getPlayer().getUniqueId(), event.getNewBalance());
+    }
+
+    // replayed with the same values if the player has not finished loading
+    private void setBalance(UUID uuid, BigDecimal balance) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> setBalance(uuid, balance));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    int earningsNeeded = (int) task.getConfigValue("amount");
+            int earningsNeeded = (int) task.getConfigValue("amount");
 
-                    taskProgress.setProgress(event.getNewBalance());
+            taskProgress.setProgress(balance);
 
-                    if (event.getNewBalance().compareTo(BigDecimal.valueOf(earningsNeeded)) > 0) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (balance.compareTo(BigDecimal.valueOf(earningsNeeded)) > 0) {
+                taskProgress.setCompleted(true);
             }
         }
     }
@@ -4,20 +4,19 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import net.ess3.api.events.UserBalanceUpdateEvent;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.jetbrains.annotations.NotNull;
 
-import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public class EssentialsMoneyEarnTaskType extends BukkitTaskType {
 
@@ -38,35 +37,30 @@ public class EssentialsMoneyEarnTaskType extends BukkitTaskType {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onMoneyEarn(UserBalanceUpdateEvent event) {
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+        double earned = event.getNewBalance().subtract(event.getOldBalance()).doubleValue();
+        addEarnings(event.getPlayer().getUniqueId(), earned);
+    }
+
+    // replayed with the same values if the player has not finished loading
+    private void addEarnings(UUID uuid, double earned) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addEarnings(uuid, earned));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
-
-                    int earningsNeeded = (int) task.getConfigValue("amount");
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    BigDecimal current = (BigDecimal) taskProgress.getProgress();
-                    if (current == null) {
-                        current = new BigDecimal(0);
-                    }
-                    BigDecimal newProgress = current.add(event.getNewBalance().subtract(event.getOldBalance()));
-                    taskProgress.setProgress(newProgress);
+            int earningsNeeded = (int) task.getConfigValue("amount");
 
-                    if (newProgress.compareTo(BigDecimal.valueOf(earningsNeeded)) > 0) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (taskProgress.increment(earned) > earningsNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
@@ -6,10 +6,9 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -53,25 +52,20 @@ public final class IridiumSkyblockValueTaskType extends BukkitTaskType {
                 continue;
             }
 
-            for (Quest quest : IridiumSkyblockValueTaskType.super.getRegisteredQuests()) {
-                if (qPlayer.hasStartedQuest(quest)) {
-                    QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+            for (ActiveTask activeTask : qPlayer.getActiveTasks(IridiumSkyblockValueTaskType.super.getType())) {
+                Task task = activeTask.getTask();
+                TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    for (Task task : quest.getTasksOfType(IridiumSkyblockValueTaskType.super.getType())) {
-                        TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                        if (taskProgress.isCompleted()) {
-                            continue;
-                        }
+                if (taskProgress.isCompleted()) {
+                    continue;
+                }
 
-                        int islandValueNeeded = (int) task.getConfigValue("value");
+                int islandValueNeeded = (int) task.getConfigValue("value");
 
-                        taskProgress.setProgress(event.getIslandWorth());
+                taskProgress.setProgress(event.getIslandWorth());
 
-                        if (((double) taskProgress.getProgress()) >= islandValueNeeded) {
-                            taskProgress.setCompleted(true);
-                        }
-                    }
+                if (((double) taskProgress.getProgress()) >= islandValueNeeded) {
+                    taskProgress.setCompleted(true);
                 }
             }
         }
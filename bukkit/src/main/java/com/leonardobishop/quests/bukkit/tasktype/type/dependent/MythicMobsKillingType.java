@@ -4,12 +4,12 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import io.lumine.xikage.mythicmobs.api.bukkit.events.MythicMobDeathEvent;
+import org.bukkit.World;
 import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -19,6 +19,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class MythicMobsKillingType extends BukkitTaskType {
 
@@ -56,51 +57,52 @@ public final class MythicMobsKillingType extends BukkitTaskType {
         String mobName = event.getMobType().getInternalName();
         double level = event.getMobLevel();
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(killer.getUniqueId());
+        addKill(killer.getUniqueId(), killer.getWorld(), mobName, level);
+    }
+
+    // replayed with the same values if the player has not finished loading, by which time the mob is gone
+    private void addKill(UUID uuid, World world, String mobName, double level) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addKill(uuid, world, mobName, level));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(killer.getWorld().getName(), task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    String configName = (String) task.getConfigValue("name");
-                    int minMobLevel = (int) task.getConfigValue("min-level", -1);
-                    int requiredLevel = (int) task.getConfigValue("level", -1);
+            String configName = (String) task.getConfigValue("name");
+            int minMobLevel = (int) task.getConfigValue("min-level", -1);
+            int requiredLevel = (int) task.getConfigValue("level", -1);
 
-                    if (!mobName.equals(configName) || level < minMobLevel) {
-                        return;
-                    }
+            if (!mobName.equals(configName) || level < minMobLevel) {
+                return;
+            }
 
-                    if (requiredLevel != -1 && level != requiredLevel) {
-                        return;
-                    }
+            if (requiredLevel != -1 && level != requiredLevel) {
+                return;
+            }
 
-                    int mobKillsNeeded = (int) task.getConfigValue("amount");
+            int mobKillsNeeded = (int) task.getConfigValue("amount");
 
-                    int progressKills;
-                    if (taskProgress.getProgress() == null) {
-                        progressKills = 0;
-                    } else {
-                        progressKills = (int) taskProgress.getProgress();
-                    }
+            int progressKills;
+            if (taskProgress.getProgress() == null) {
+                progressKills = 0;
+            } else {
+                progressKills = (int) taskProgress.getProgress();
+            }
 
-                    taskProgress.setProgress(progressKills + 1);
+            taskProgress.setProgress(progressKills + 1);
 
-                    if (((int) taskProgress.getProgress()) >= mobKillsNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((int) taskProgress.getProgress()) >= mobKillsNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
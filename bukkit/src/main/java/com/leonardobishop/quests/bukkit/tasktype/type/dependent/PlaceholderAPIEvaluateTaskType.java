@@ -4,16 +4,12 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import me.clip.placeholderapi.PlaceholderAPI;
-import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
@@ -23,11 +19,11 @@ import java.util.List;
 public final class PlaceholderAPIEvaluateTaskType extends BukkitTaskType {
 
     private final BukkitQuestsPlugin plugin;
-    private BukkitTask poll;
 
     public PlaceholderAPIEvaluateTaskType(BukkitQuestsPlugin plugin) {
         super("placeholderapi_evaluate", TaskUtils.TASK_ATTRIBUTION_STRING, "Evaluate the result of a placeholder");
         this.plugin = plugin;
+        plugin.getPollingScheduler().register(super.getType(), 30L, this::poll);
     }
 
     @Override
@@ -58,88 +54,63 @@ public final class PlaceholderAPIEvaluateTaskType extends BukkitTaskType {
         return problems;
     }
 
-    @Override
-    public void onReady() {
-        this.poll = new BukkitRunnable() {
-            @Override
-            public void run() {
-                for (Player player : Bukkit.getOnlinePlayers()) {
-                    QPlayer qPlayer = plugin.getPlayerManager().getPlayer(player.getUniqueId());
-                    if (qPlayer == null) {
+    private void poll(Player player, QPlayer qPlayer) {
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(player, task)) continue;
+            TaskProgress taskProgress = activeTask.getTaskProgress();
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
+            String placeholder = (String) task.getConfigValue("placeholder");
+            String evaluates = String.valueOf(task.getConfigValue("evaluates"));
+            String configOperator = (String) task.getConfigValue("operator");
+            Operator operator = null;
+            if (configOperator != null) {
+                try {
+                    operator = Operator.valueOf(configOperator);
+                } catch (IllegalArgumentException ignored) { }
+            }
+            if (placeholder != null && evaluates != null) {
+                double numericEvaluates = 0;
+                if (operator != null) {
+                    try {
+                        numericEvaluates = Double.parseDouble(evaluates);
+                    } catch (NumberFormatException ex) {
                         continue;
                     }
+                }
 
-                    for (Quest quest : PlaceholderAPIEvaluateTaskType.super.getRegisteredQuests()) {
-                        if (qPlayer.hasStartedQuest(quest)) {
-                            QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-                            for (Task task : quest.getTasksOfType(PlaceholderAPIEvaluateTaskType.super.getType())) {
-                                if (!TaskUtils.validateWorld(player, task)) continue;
-                                TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-                                if (taskProgress.isCompleted()) {
-                                    continue;
-                                }
-                                String placeholder = (String) task.getConfigValue("placeholder");
-                                String evaluates = String.valueOf(task.getConfigValue("evaluates"));
-                                String configOperator = (String) task.getConfigValue("operator");
-                                Operator operator = null;
-                                if (configOperator != null) {
-                                    try {
-                                        operator = Operator.valueOf(configOperator);
-                                    } catch (IllegalArgumentException ignored) { }
-                                }
-                                if (placeholder != null && evaluates != null) {
-                                    double numericEvaluates = 0;
-                                    if (operator != null) {
-                                        try {
-                                            numericEvaluates = Double.parseDouble(evaluates);
-                                        } catch (NumberFormatException ex) {
-                                            continue;
-                                        }
-                                    }
-
-                                    String evaluated = PlaceholderAPI.setPlaceholders(player, placeholder);
-                                    if (operator == null && evaluated.equals(evaluates)) {
-                                        taskProgress.setCompleted(true);
-                                    } else if (operator != null) {
-                                        double numericEvaluated;
-                                        try {
-                                            numericEvaluated = Double.parseDouble(evaluated);
-                                        } catch (NumberFormatException ex) {
-                                            continue;
-                                        }
-                                        switch (operator) {
-                                            case GREATER_THAN:
-                                                if (numericEvaluated > numericEvaluates)
-                                                    taskProgress.setCompleted(true);
-                                                continue;
-                                            case LESS_THAN:
-                                                if (numericEvaluated < numericEvaluates)
-                                                    taskProgress.setCompleted(true);
-                                                continue;
-                                            case GREATER_THAN_OR_EQUAL_TO:
-                                                if (numericEvaluated >= numericEvaluates)
-                                                    taskProgress.setCompleted(true);
-                                                continue;
-                                            case LESS_THAN_OR_EQUAL_TO:
-                                                if (numericEvaluated <= numericEvaluates)
-                                                    taskProgress.setCompleted(true);
-                                                continue;
-                                        }
-                                    }
-                                }
-
-                            }
-                        }
+                String evaluated = PlaceholderAPI.setPlaceholders(player, placeholder);
+                if (operator == null && evaluated.equals(evaluates)) {
+                    taskProgress.setCompleted(true);
+                } else if (operator != null) {
+                    double numericEvaluated;
+                    try {
+                        numericEvaluated = Double.parseDouble(evaluated);
+                    } catch (NumberFormatException ex) {
+                        continue;
+                    }
+                    switch (operator) {
+                        case GREATER_THAN:
+                            if (numericEvaluated > numericEvaluates)
+                                taskProgress.setCompleted(true);
+                            continue;
+                        case LESS_THAN:
+                            if (numericEvaluated < numericEvaluates)
+                                taskProgress.setCompleted(true);
+                            continue;
+                        case GREATER_THAN_OR_EQUAL_TO:
+                            if (numericEvaluated >= numericEvaluates)
+                                taskProgress.setCompleted(true);
+                            continue;
+                        case LESS_THAN_OR_EQUAL_TO:
+                            if (numericEvaluated <= numericEvaluates)
+                                taskProgress.setCompleted(true);
+                            continue;
                     }
                 }
             }
-        }.runTaskTimer(plugin, 30L, 30L);
-    }
-
-    @Override
-    public void onDisable() {
-        if (this.poll != null) {
-            this.poll.cancel();
         }
     }
 
@@ -4,13 +4,13 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import net.brcdev.shopgui.event.ShopPreTransactionEvent;
 import net.brcdev.shopgui.shop.ShopManager;
+import org.bukkit.World;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.jetbrains.annotations.NotNull;
@@ -18,6 +18,7 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public class ShopGUIPlusBuyCertainTaskType extends BukkitTaskType {
 
@@ -41,45 +42,46 @@ public class ShopGUIPlusBuyCertainTaskType extends BukkitTaskType {
     public void onMobKill(ShopPreTransactionEvent event) {
         if (event.getShopAction() != ShopManager.ShopAction.BUY) return;
 
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+        addTransaction(event.getPlayer().getUniqueId(), event.getPlayer().getWorld(), event.getShopItem().getId(), event.getAmount());
+    }
+
+    // replayed with the same values if the player has not finished loading
+    private void addTransaction(UUID uuid, World world, String itemId, int amount) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> addTransaction(uuid, world, itemId, amount));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
-
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    if (!TaskUtils.validateWorld(event.getPlayer().getWorld().getName(), task)) continue;
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            if (!TaskUtils.validateWorld(world, task)) continue;
 
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    String configName = (String) task.getConfigValue("id");
+            String configName = (String) task.getConfigValue("id");
 
-                    if (!event.getShopItem().getId().equals(configName)) {
-                        return;
-                    }
+            if (!itemId.equals(configName)) {
+                return;
+            }
 
-                    int amountNeeded = (int) task.getConfigValue("amount");
+            int amountNeeded = (int) task.getConfigValue("amount");
 
-                    int progressAmount;
-                    if (taskProgress.getProgress() == null) {
-                        progressAmount = 0;
-                    } else {
-                        progressAmount = (int) taskProgress.getProgress();
-                    }
+            int progressAmount;
+            if (taskProgress.getProgress() == null) {
+                progressAmount = 0;
+            } else {
+                progressAmount = (int) taskProgress.getProgress();
+            }
 
-                    taskProgress.setProgress(progressAmount + event.getAmount());
+            taskProgress.setProgress(progressAmount + amount);
 
-                    if (((int) taskProgress.getProgress()) >= amountNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((int) taskProgress.getProgress()) >= amountNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
@@ -5,10 +5,9 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -44,24 +43,19 @@ public final class SuperiorSkyblockLevelTaskType extends BukkitTaskType {
         if (qPlayer == null)
             return;
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
+            if (taskProgress.isCompleted())
+                continue;
 
-                    if (taskProgress.isCompleted())
-                        continue;
+            int islandLevelNeeded = (int) task.getConfigValue("level");
 
-                    int islandLevelNeeded = (int) task.getConfigValue("level");
+            taskProgress.setProgress((int) event.getLevel().doubleValue());
 
-                    taskProgress.setProgress((int) event.getLevel().doubleValue());
-
-                    if (((int) taskProgress.getProgress()) >= islandLevelNeeded)
-                        taskProgress.setCompleted(true);
-                }
-            }
+            if (((int) taskProgress.getProgress()) >= islandLevelNeeded)
+                taskProgress.setCompleted(true);
         }
     }
 }
\ No newline at end of file
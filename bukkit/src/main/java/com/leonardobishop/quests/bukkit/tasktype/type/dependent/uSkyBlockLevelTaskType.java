@@ -4,10 +4,9 @@ import com.leonardobishop.quests.bukkit.BukkitQuestsPlugin;
 import com.leonardobishop.quests.bukkit.tasktype.BukkitTaskType;
 import com.leonardobishop.quests.bukkit.util.TaskUtils;
 import com.leonardobishop.quests.common.config.ConfigProblem;
+import com.leonardobishop.quests.common.player.ActiveTask;
 import com.leonardobishop.quests.common.player.QPlayer;
-import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
-import com.leonardobishop.quests.common.quest.Quest;
 import com.leonardobishop.quests.common.quest.Task;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -17,6 +16,7 @@ import us.talabrek.ultimateskyblock.api.event.uSkyBlockScoreChangedEvent;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.UUID;
 
 public final class uSkyBlockLevelTaskType extends BukkitTaskType {
 
@@ -37,30 +37,31 @@ public final class uSkyBlockLevelTaskType extends BukkitTaskType {
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onIslandLevel(uSkyBlockScoreChangedEvent event) {
-        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(event.getPlayer().getUniqueId());
+        setScore(event.getPlayer().getUniqueId(), event.getScore().getScore());
+    }
+
+    // replayed with the same values if the player has not finished loading
+    private void setScore(UUID uuid, double score) {
+        QPlayer qPlayer = plugin.getPlayerManager().getPlayer(uuid);
         if (qPlayer == null) {
+            plugin.getPlayerManager().deferUntilLoaded(uuid, () -> setScore(uuid, score));
             return;
         }
 
-        for (Quest quest : super.getRegisteredQuests()) {
-            if (qPlayer.hasStartedQuest(quest)) {
-                QuestProgress questProgress = qPlayer.getQuestProgressFile().getQuestProgress(quest);
+        for (ActiveTask activeTask : qPlayer.getActiveTasks(super.getType())) {
+            Task task = activeTask.getTask();
+            TaskProgress taskProgress = activeTask.getTaskProgress();
 
-                for (Task task : quest.getTasksOfType(super.getType())) {
-                    TaskProgress taskProgress = questProgress.getTaskProgress(task.getId());
-
-                    if (taskProgress.isCompleted()) {
-                        continue;
-                    }
+            if (taskProgress.isCompleted()) {
+                continue;
+            }
 
-                    double islandLevelNeeded = (double) (int) task.getConfigValue("level");
+            double islandLevelNeeded = (double) (int) task.getConfigValue("level");
 
-                    taskProgress.setProgress(event.getScore().getScore());
+            taskProgress.setProgress(score);
 
-                    if (((double) taskProgress.getProgress()) >= islandLevelNeeded) {
-                        taskProgress.setCompleted(true);
-                    }
-                }
+            if (((double) taskProgress.getProgress()) >= islandLevelNeeded) {
+                taskProgress.setCompleted(true);
             }
         }
     }
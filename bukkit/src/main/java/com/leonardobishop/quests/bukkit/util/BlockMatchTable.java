@@ -0,0 +1,145 @@
+package com.leonardobishop.quests.bukkit.util;
+
+import com.leonardobishop.quests.common.quest.Quest;
+import com.leonardobishop.quests.common.quest.Task;
+import com.leonardobishop.quests.common.tasktype.TaskType;
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A lookup table from block materials to the tasks which are interested in them, compiled from the
+ * {@code block}/{@code blocks} and {@code data} options of every task of a task type.
+ * Block events can use this to discard materials which no task is looking for, and to test
+ * a task against a block without parsing its configuration again.
+ */
+public class BlockMatchTable {
+
+    private final Map<Material, MaterialBucket> buckets;
+
+    private BlockMatchTable(Map<Material, MaterialBucket> buckets) {
+        this.buckets = buckets;
+    }
+
+    /**
+     * @return a table which does not match any block
+     */
+    public static BlockMatchTable empty() {
+        return new BlockMatchTable(new EnumMap<>(Material.class));
+    }
+
+    /**
+     * Compile a table for all tasks of a task type, from all quests registered to it.
+     * Materials which do not exist on the server are ignored.
+     *
+     * @param taskType the task type
+     * @return the compiled table
+     */
+    public static BlockMatchTable compile(TaskType taskType) {
+        Map<Material, MaterialBucket> buckets = new EnumMap<>(Material.class);
+        for (Quest quest : taskType.getRegisteredQuests()) {
+            for (Task task : quest.getTasksOfType(taskType.getType())) {
+                Object configBlock = task.getConfigValues().containsKey("block") ? task.getConfigValue("block") : task.getConfigValue("blocks");
+                Object configData = task.getConfigValue("data");
+
+                List<String> checkBlocks = new ArrayList<>();
+                if (configBlock instanceof List) {
+                    for (Object block : (List) configBlock) {
+                        checkBlocks.add(String.valueOf(block));
+                    }
+                } else {
+                    checkBlocks.add(String.valueOf(configBlock));
+                }
+
+                for (String materialName : checkBlocks) {
+                    // LOG:1 LOG:2 LOG should all be supported with this
+                    String[] split = materialName.split(":");
+                    Material material = Material.getMaterial(split[0]);
+                    if (material == null) {
+                        continue;
+                    }
+
+                    MaterialBucket bucket = buckets.computeIfAbsent(material, m -> new MaterialBucket());
+                    if (split.length > 1) {
+                        try {
+                            bucket.addTask(task, Integer.parseInt(split[1]));
+                        } catch (NumberFormatException ignored) { }
+                    } else if (configData instanceof Integer) {
+                        bucket.addTask(task, (int) configData);
+                    } else {
+                        bucket.addTask(task);
+                    }
+                }
+            }
+        }
+        return new BlockMatchTable(buckets);
+    }
+
+    /**
+     * Get whether any task is interested in a specific material.
+     *
+     * @param material the material
+     * @return true if at least one task may match a block of this material
+     */
+    public boolean isInterested(Material material) {
+        return buckets.containsKey(material);
+    }
+
+    /**
+     * Test whether a block matches the configured blocks of a specific task.
+     *
+     * @param task the task
+     * @param block the block
+     * @return true if the block matches
+     */
+    @SuppressWarnings("deprecation")
+    public boolean matches(Task task, Block block) {
+        return matches(task, block.getType(), block.getData());
+    }
+
+    /**
+     * Test whether a block which is no longer in the world, such as one broken in an event being replayed,
+     * matched the configured blocks of a specific task.
+     *
+     * @param task the task
+     * @param material the material of the block
+     * @param data the data value of the block
+     * @return true if the block matches
+     */
+    public boolean matches(Task task, Material material, int data) {
+        MaterialBucket bucket = buckets.get(material);
+        if (bucket == null) {
+            return false;
+        }
+        return bucket.matches(task, data);
+    }
+
+    private static class MaterialBucket {
+
+        private final Set<Task> anyData = new HashSet<>();
+        private final Map<Integer, Set<Task>> byData = new HashMap<>();
+
+        private void addTask(Task task) {
+            anyData.add(task);
+        }
+
+        private void addTask(Task task, int data) {
+            byData.computeIfAbsent(data, d -> new HashSet<>()).add(task);
+        }
+
+        private boolean matches(Task task, int data) {
+            if (anyData.contains(task)) {
+                return true;
+            }
+            Set<Task> tasks = byData.get(data);
+            return tasks != null && tasks.contains(task);
+        }
+    }
+}
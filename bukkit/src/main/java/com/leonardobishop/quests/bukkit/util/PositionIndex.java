@@ -0,0 +1,167 @@
+package com.leonardobishop.quests.bukkit.util;
+
+import com.leonardobishop.quests.common.quest.Task;
+import org.bukkit.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An index of target co-ordinates of tasks, grouped by the UID of their world and bucketed by chunk.
+ * Each target is added to every chunk its radius reaches, so a lookup only has to consider the chunk a
+ * player is standing in. Targets with a very large radius are kept in a separate per-world bucket instead.
+ */
+public class PositionIndex {
+
+    private static final int MAX_CHUNK_RADIUS = 8;
+
+    private final Map<UUID, WorldIndex> worlds = new HashMap<>();
+
+    /**
+     * Add a target to the index.
+     *
+     * @param world the world the target is in
+     * @param task the task the target belongs to
+     * @param x target x co-ordinate
+     * @param y target y co-ordinate
+     * @param z target z co-ordinate
+     * @param radius the radius around the target which is of interest, 0 if only the block itself is
+     */
+    public void add(World world, Task task, int x, int y, int z, int radius) {
+        WorldIndex worldIndex = worlds.computeIfAbsent(world.getUID(), uid -> new WorldIndex());
+        Target target = new Target(x, y, z, radius);
+        worldIndex.targets.put(task, target);
+
+        int chunkRadius = (radius + 15) >> 4;
+        if (chunkRadius > MAX_CHUNK_RADIUS) {
+            worldIndex.wide.put(task, target);
+            return;
+        }
+        int chunkX = x >> 4;
+        int chunkZ = z >> 4;
+        for (int cx = chunkX - chunkRadius; cx <= chunkX + chunkRadius; cx++) {
+            for (int cz = chunkZ - chunkRadius; cz <= chunkZ + chunkRadius; cz++) {
+                worldIndex.chunks.computeIfAbsent(chunkKey(cx, cz), k -> new HashMap<>()).put(task, target);
+            }
+        }
+    }
+
+    /**
+     * Add a target to the index without bucketing it by chunk. The target will only be returned
+     * by {@link #getTarget(UUID, Task)}; this is suitable for targets which are of interest
+     * <i>outside</i> of their radius.
+     *
+     * @param world the world the target is in
+     * @param task the task the target belongs to
+     * @param x target x co-ordinate
+     * @param y target y co-ordinate
+     * @param z target z co-ordinate
+     * @param radius the radius around the target
+     */
+    public void addUnbucketed(World world, Task task, int x, int y, int z, int radius) {
+        worlds.computeIfAbsent(world.getUID(), uid -> new WorldIndex()).targets.put(task, new Target(x, y, z, radius));
+    }
+
+    /**
+     * Get whether any target may be within reach of a block.
+     *
+     * @param world the UID of the world
+     * @param blockX block x co-ordinate
+     * @param blockZ block z co-ordinate
+     * @return true if there is a target whose radius may reach the block
+     */
+    public boolean hasTargetsNear(UUID world, int blockX, int blockZ) {
+        WorldIndex worldIndex = worlds.get(world);
+        if (worldIndex == null) {
+            return false;
+        }
+        return !worldIndex.wide.isEmpty() || worldIndex.chunks.containsKey(chunkKey(blockX >> 4, blockZ >> 4));
+    }
+
+    /**
+     * Get the target of a task, if its radius may reach a block.
+     *
+     * @param world the UID of the world
+     * @param blockX block x co-ordinate
+     * @param blockZ block z co-ordinate
+     * @param task the task
+     * @return the target, or null if it is not near the block
+     */
+    public @Nullable Target getTargetNear(UUID world, int blockX, int blockZ, Task task) {
+        WorldIndex worldIndex = worlds.get(world);
+        if (worldIndex == null) {
+            return null;
+        }
+        Map<Task, Target> chunk = worldIndex.chunks.get(chunkKey(blockX >> 4, blockZ >> 4));
+        Target target = chunk == null ? null : chunk.get(task);
+        return target != null ? target : worldIndex.wide.get(task);
+    }
+
+    /**
+     * Get the target of a task in a world, regardless of distance.
+     *
+     * @param world the UID of the world
+     * @param task the task
+     * @return the target, or null if the task has no target in the world
+     */
+    public @Nullable Target getTarget(UUID world, Task task) {
+        WorldIndex worldIndex = worlds.get(world);
+        return worldIndex == null ? null : worldIndex.targets.get(task);
+    }
+
+    /**
+     * @param world the UID of the world
+     * @return true if any task has a target in the world
+     */
+    public boolean hasTargets(UUID world) {
+        return worlds.containsKey(world);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static class WorldIndex {
+        private final Map<Task, Target> targets = new HashMap<>();
+        private final Map<Task, Target> wide = new HashMap<>();
+        private final Map<Long, Map<Task, Target>> chunks = new HashMap<>();
+    }
+
+    public static final class Target {
+
+        private final int x;
+        private final int y;
+        private final int z;
+        private final long radiusSquared;
+
+        private Target(int x, int y, int z, int radius) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.radiusSquared = (long) radius * radius;
+        }
+
+        /**
+         * @return true if the block is the target block
+         */
+        public boolean isAt(int blockX, int blockY, int blockZ) {
+            return blockX == x && blockY == y && blockZ == z;
+        }
+
+        /**
+         * @return the squared distance between the target and a block
+         */
+        public long distanceSquared(int blockX, int blockY, int blockZ) {
+            long dx = blockX - x;
+            long dy = blockY - y;
+            long dz = blockZ - z;
+            return dx * dx + dy * dy + dz * dz;
+        }
+
+        public long getRadiusSquared() {
+            return radiusSquared;
+        }
+    }
+}
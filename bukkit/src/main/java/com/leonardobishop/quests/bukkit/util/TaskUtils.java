@@ -3,6 +3,8 @@ package com.leonardobishop.quests.bukkit.util;
 import com.leonardobishop.quests.common.config.ConfigProblem;
 import com.leonardobishop.quests.common.config.ConfigProblemDescriptions;
 import com.leonardobishop.quests.common.quest.Task;
+import com.leonardobishop.quests.common.quest.WorldFilter;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 
 import java.util.List;
@@ -12,11 +14,17 @@ public class TaskUtils {
     public static String TASK_ATTRIBUTION_STRING = "<built-in>";
 
     public static boolean validateWorld(Player player, Task task) {
-        return validateWorld(player.getLocation().getWorld().getName(), task.getConfigValue("worlds"));
+        return validateWorld(player.getWorld(), task);
+    }
+
+    public static boolean validateWorld(World world, Task task) {
+        WorldFilter worldFilter = task.getWorldFilter();
+        return worldFilter == null || worldFilter.test(world.getUID(), world.getName());
     }
 
     public static boolean validateWorld(String worldName, Task task) {
-        return validateWorld(worldName, task.getConfigValue("worlds"));
+        WorldFilter worldFilter = task.getWorldFilter();
+        return worldFilter == null || worldFilter.test(worldName);
     }
 
     public static boolean validateWorld(String worldName, Object configurationData) {
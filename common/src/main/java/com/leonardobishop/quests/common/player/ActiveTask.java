@@ -0,0 +1,60 @@
+package com.leonardobishop.quests.common.player;
+
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
+import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
+import com.leonardobishop.quests.common.quest.Quest;
+import com.leonardobishop.quests.common.quest.Task;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Represents a task which a player is currently working towards, along with the quest it belongs to
+ * and the players progress for it.
+ *
+ * @see ActiveTaskIndex
+ */
+public class ActiveTask {
+
+    private final Quest quest;
+    private final Task task;
+    private final QuestProgressFile questProgressFile;
+    private TaskProgress taskProgress;
+
+    public ActiveTask(Quest quest, Task task, TaskProgress taskProgress) {
+        this(quest, task, taskProgress, null);
+    }
+
+    /**
+     * @param questProgressFile the file to look the progress up in again while it is an untouched view, so
+     *                          that progress added to the file by something else is not missed
+     */
+    public ActiveTask(Quest quest, Task task, TaskProgress taskProgress, QuestProgressFile questProgressFile) {
+        this.quest = quest;
+        this.task = task;
+        this.taskProgress = taskProgress;
+        this.questProgressFile = questProgressFile;
+    }
+
+    /**
+     * @return the quest this task belongs to
+     */
+    public @NotNull Quest getQuest() {
+        return quest;
+    }
+
+    /**
+     * @return the task
+     */
+    public @NotNull Task getTask() {
+        return task;
+    }
+
+    /**
+     * @return the players progress for this task
+     */
+    public @NotNull TaskProgress getTaskProgress() {
+        if (questProgressFile != null && taskProgress.isUntouched() && questProgressFile.hasQuestProgress(quest)) {
+            taskProgress = questProgressFile.getQuestProgress(quest).getTaskProgress(task);
+        }
+        return taskProgress;
+    }
+}
@@ -0,0 +1,107 @@
+package com.leonardobishop.quests.common.player;
+
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
+import com.leonardobishop.quests.common.plugin.Quests;
+import com.leonardobishop.quests.common.quest.Quest;
+import com.leonardobishop.quests.common.quest.Task;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The active task index keeps track of every task a player is currently working towards, grouped by task type.
+ * This allows task types to iterate only the tasks of quests the player has started, rather than testing
+ * every quest registered to them on every event.
+ *
+ * The index is built lazily and must be invalidated whenever the set of started quests may have changed,
+ * such as when a quest is started, completed or cancelled. Autostart quests which are not yet available
+ * because of a cooldown or missing permission will cause the index to expire and be rebuilt once they could be.
+ */
+public class ActiveTaskIndex {
+
+    private final Quests plugin;
+    private final QPlayer qPlayer;
+
+    private Map<String, List<ActiveTask>> activeTasks = Collections.emptyMap();
+    private boolean valid;
+    private long expiry;
+
+    public ActiveTaskIndex(Quests plugin, QPlayer qPlayer) {
+        this.plugin = plugin;
+        this.qPlayer = qPlayer;
+    }
+
+    /**
+     * Get all tasks of a specific task type which the player is currently working towards.
+     * The index will be rebuilt first if it has been invalidated or has expired.
+     *
+     * @param type the task type
+     * @return immutable list of {@link ActiveTask}
+     */
+    public @NotNull List<ActiveTask> getActiveTasks(@NotNull String type) {
+        Objects.requireNonNull(type, "type cannot be null");
+
+        if (!valid || System.currentTimeMillis() >= expiry) {
+            rebuild();
+        }
+        List<ActiveTask> list = activeTasks.get(type);
+        return list == null ? Collections.emptyList() : list;
+    }
+
+    /**
+     * Marks this index as invalid, so that it is rebuilt the next time it is queried.
+     */
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * @return whether the index is currently valid and has not expired
+     */
+    public boolean isValid() {
+        return valid && System.currentTimeMillis() < expiry;
+    }
+
+    private void rebuild() {
+        Map<String, List<ActiveTask>> activeTasks = new HashMap<>();
+        QuestProgressFile questProgressFile = qPlayer.getQuestProgressFile();
+        boolean autoStart = plugin.getQuestsConfig().getBoolean("options.quest-autostart");
+        long refreshInterval = plugin.getQuestsConfig().getInt("options.performance-tweaking.quest-autostart-refresh-interval", 100) * 50L;
+        long now = System.currentTimeMillis();
+        long expiry = Long.MAX_VALUE;
+
+        for (Quest quest : plugin.getQuestManager().getQuests().values()) {
+            if (qPlayer.hasStartedQuest(quest)) {
+                QuestProgress questProgress = questProgressFile.getQuestProgress(quest);
+                for (Task task : quest.getTasks()) {
+                    activeTasks.computeIfAbsent(task.getType(), type -> new ArrayList<>())
+                            .add(new ActiveTask(quest, task, questProgress.getTaskProgress(task), questProgressFile));
+                }
+            } else if (autoStart || quest.isAutoStartEnabled()) {
+                // autostart quests can become available without the player doing anything
+                switch (qPlayer.canStartQuest(quest)) {
+                    case QUEST_COOLDOWN:
+                        expiry = Math.min(expiry, now + questProgressFile.getCooldownFor(quest));
+                        break;
+                    case QUEST_NO_PERMISSION:
+                    case NO_PERMISSION_FOR_CATEGORY:
+                        expiry = Math.min(expiry, now + refreshInterval);
+                        break;
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<ActiveTask>> entry : activeTasks.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        this.activeTasks = activeTasks;
+        this.expiry = expiry;
+        this.valid = true;
+    }
+}
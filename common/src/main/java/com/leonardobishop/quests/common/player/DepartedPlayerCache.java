@@ -0,0 +1,124 @@
+package com.leonardobishop.quests.common.player;
+
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the progress files of players who have recently left, so that a player who reconnects shortly after
+ * does not need to be loaded from storage again. Entries expire after a fixed time, and the least recently
+ * used entry is evicted once the cache is full. An entry is only handed back once the save made when the
+ * player left has been written, so it can never be older than what is in storage.
+ */
+public class DepartedPlayerCache {
+
+    private final Map<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final int maxSize;
+    private final long ttl;
+
+    /**
+     * @param maxSize the maximum number of players to keep, or 0 to keep none
+     * @param ttl the time in seconds to keep each player
+     */
+    public DepartedPlayerCache(int maxSize, long ttl) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttl = TimeUnit.SECONDS.toNanos(ttl);
+    }
+
+    /**
+     * Keep the progress file of a player who has left. It must not have any modifications which are not
+     * already being saved.
+     *
+     * @param uuid the uuid of the player
+     * @param questProgressFile their progress file
+     * @return a handle to mark the entry as written with, or null if the cache is disabled
+     */
+    public @Nullable Runnable put(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
+        if (maxSize == 0) return null;
+
+        Entry entry = new Entry(questProgressFile, System.nanoTime());
+        synchronized (entries) {
+            entries.put(uuid, entry);
+            evict();
+        }
+        return () -> entry.written = true;
+    }
+
+    /**
+     * Take back the progress file of a player who has left, removing it from the cache.
+     *
+     * @param uuid the uuid of the player
+     * @return {@link QuestProgressFile} if it is cached, has not expired and has been written, otherwise null
+     */
+    public @Nullable QuestProgressFile take(@NotNull UUID uuid) {
+        if (maxSize == 0) return null;
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(uuid);
+        }
+        if (entry == null || !entry.written || System.nanoTime() - entry.departed > ttl) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.questProgressFile;
+    }
+
+    /**
+     * Forget a player, for example if their data has been changed in storage.
+     *
+     * @param uuid the uuid of the player
+     */
+    public void invalidate(@NotNull UUID uuid) {
+        synchronized (entries) {
+            entries.remove(uuid);
+        }
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    // must be called while synchronised
+    private void evict() {
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entries.size() > maxSize || now - entry.departed > ttl) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final QuestProgressFile questProgressFile;
+        private final long departed;
+        private volatile boolean written;
+
+        private Entry(QuestProgressFile questProgressFile, long departed) {
+            this.questProgressFile = questProgressFile;
+            this.departed = departed;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.leonardobishop.quests.common.player;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps players who are not online but whose progress has been looked up, so that repeated lookups (for
+ * example from commands or placeholders) do not need to go to storage each time. Entries expire a fixed time
+ * after they were last used, and the least recently used entry is evicted once the cache is full. Expiry is
+ * checked whenever the cache is used, and should also be checked periodically with {@link #evictExpired()}.
+ * <p>
+ * The cache is only meant for reading. Anything which changes the progress of a cached player must save it
+ * with {@link QPlayerManager#savePlayer(UUID)}. Every evicted player is passed to the eviction handler, which
+ * saves any unsaved changes so they are not lost and releases what the storage provider keeps for them.
+ */
+public class OfflinePlayerCache {
+
+    private final Map<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Consumer<QPlayer> onEvict;
+    private final int maxSize;
+    private final long ttl;
+
+    /**
+     * @param maxSize the maximum number of players to keep, or 0 to keep none
+     * @param ttl the time in seconds to keep each player after it was last used
+     * @param onEvict called for each evicted player
+     */
+    public OfflinePlayerCache(int maxSize, long ttl, @NotNull Consumer<QPlayer> onEvict) {
+        this.maxSize = Math.max(0, maxSize);
+        this.ttl = TimeUnit.SECONDS.toNanos(ttl);
+        this.onEvict = onEvict;
+    }
+
+    /**
+     * Get a cached player, refreshing their expiry time.
+     *
+     * @param uuid the uuid of the player
+     * @return {@link QPlayer} if they are cached and have not expired, otherwise null
+     */
+    public @Nullable QPlayer get(@NotNull UUID uuid) {
+        if (maxSize == 0) return null;
+
+        List<QPlayer> evicted;
+        QPlayer qPlayer = null;
+        synchronized (entries) {
+            Entry entry = entries.get(uuid);
+            if (entry != null) {
+                entry.lastUsed = System.nanoTime();
+                qPlayer = entry.qPlayer;
+            }
+            evicted = evict();
+        }
+        handleEvicted(evicted);
+        return qPlayer;
+    }
+
+    /**
+     * Keep a player who is not online.
+     *
+     * @param qPlayer the player
+     */
+    public void put(@NotNull QPlayer qPlayer) {
+        if (maxSize == 0) return;
+
+        List<QPlayer> evicted;
+        synchronized (entries) {
+            entries.put(qPlayer.getPlayerUUID(), new Entry(qPlayer, System.nanoTime()));
+            evicted = evict();
+        }
+        handleEvicted(evicted);
+    }
+
+    /**
+     * Take a player out of the cache, for example because they have joined. Their progress file may still
+     * hold unsaved modifications, which are then the responsibility of the caller.
+     *
+     * @param uuid the uuid of the player
+     * @return {@link QPlayer} if they were cached, otherwise null
+     */
+    public @Nullable QPlayer take(@NotNull UUID uuid) {
+        if (maxSize == 0) return null;
+
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.remove(uuid);
+        }
+        return entry == null ? null : entry.qPlayer;
+    }
+
+    /**
+     * Get whether a player is cached, without refreshing their expiry time.
+     *
+     * @param uuid the uuid of the player
+     * @return true if they are cached
+     */
+    public boolean contains(@NotNull UUID uuid) {
+        synchronized (entries) {
+            return entries.containsKey(uuid);
+        }
+    }
+
+    /**
+     * Forget a player, for example if their data has been changed in storage.
+     *
+     * @param uuid the uuid of the player
+     */
+    public void invalidate(@NotNull UUID uuid) {
+        synchronized (entries) {
+            entries.remove(uuid);
+        }
+    }
+
+    /**
+     * Evict every player who has expired, which would otherwise only happen once the cache is next used.
+     */
+    public void evictExpired() {
+        if (maxSize == 0) return;
+
+        List<QPlayer> evicted;
+        synchronized (entries) {
+            evicted = evict();
+        }
+        handleEvicted(evicted);
+    }
+
+    /**
+     * Evict every player, for example when shutting down, so that any unsaved changes they have are saved.
+     */
+    public void evictAll() {
+        List<QPlayer> evicted = new ArrayList<>();
+        synchronized (entries) {
+            for (Entry entry : entries.values()) {
+                evicted.add(entry.qPlayer);
+            }
+            entries.clear();
+        }
+        handleEvicted(evicted);
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    // must be called while synchronised
+    private List<QPlayer> evict() {
+        List<QPlayer> evicted = new ArrayList<>(0);
+        long now = System.nanoTime();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            // entries are in order of use, so nothing after one which is kept can have expired either
+            if (entries.size() <= maxSize && now - entry.lastUsed <= ttl) break;
+            iterator.remove();
+            evicted.add(entry.qPlayer);
+        }
+        return evicted;
+    }
+
+    private void handleEvicted(List<QPlayer> evicted) {
+        for (QPlayer qPlayer : evicted) {
+            try {
+                onEvict.accept(qPlayer);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final QPlayer qPlayer;
+        private long lastUsed;
+
+        private Entry(QPlayer qPlayer, long lastUsed) {
+            this.qPlayer = qPlayer;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.leonardobishop.quests.common.questcontroller.QuestController;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
 
@@ -20,6 +21,7 @@ public class QPlayer {
     private final UUID uuid;
     private final QPlayerPreferences playerPreferences;
     private final QuestProgressFile questProgressFile;
+    private final ActiveTaskIndex activeTaskIndex;
     private QuestController questController;
 
     public QPlayer(Quests plugin, UUID uuid, QPlayerPreferences playerPreferences, QuestProgressFile questProgressFile, QuestController questController) {
@@ -28,6 +30,7 @@ public class QPlayer {
         this.playerPreferences = playerPreferences;
         this.questProgressFile = questProgressFile;
         this.questController = questController;
+        this.activeTaskIndex = new ActiveTaskIndex(plugin, this);
     }
 
     /**
@@ -123,6 +126,28 @@ public class QPlayer {
         return questProgressFile;
     }
 
+    /**
+     * Get all tasks of a specific task type which belong to quests this player has started.
+     * This should be preferred over testing {@link QPlayer#hasStartedQuest(Quest)} for every quest registered to a task type.
+     *
+     * @param type the task type
+     * @return immutable list of {@link ActiveTask}
+     */
+    public @NotNull List<ActiveTask> getActiveTasks(@NotNull String type) {
+        Objects.requireNonNull(type, "type cannot be null");
+
+        return activeTaskIndex.getActiveTasks(type);
+    }
+
+    /**
+     * Get this players associated {@link ActiveTaskIndex}
+     *
+     * @return the active task index
+     */
+    public @NotNull ActiveTaskIndex getActiveTaskIndex() {
+        return activeTaskIndex;
+    }
+
     /**
      * Get this players associated {@link QPlayerPreferences}
      *
@@ -151,6 +176,7 @@ public class QPlayer {
         Objects.requireNonNull(questController, "questController cannot be null");
 
         this.questController = questController;
+        this.activeTaskIndex.invalidate();
     }
 
     @Override //Used by java GC
@@ -1,6 +1,7 @@
 package com.leonardobishop.quests.common.player;
 
 import com.leonardobishop.quests.common.logger.QuestsLogger;
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
 import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
 import com.leonardobishop.quests.common.plugin.Quests;
 import com.leonardobishop.quests.common.questcontroller.QuestController;
@@ -8,11 +9,15 @@ import com.leonardobishop.quests.common.storage.StorageProvider;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -21,15 +26,33 @@ import java.util.concurrent.ConcurrentHashMap;
  */
 public class QPlayerManager {
 
+    private static final int MAX_DEFERRED = 256;
+
     private final Map<UUID, QPlayer> qPlayers = new ConcurrentHashMap<>();
+    private final Map<UUID, QuestProgressFile> staged = new ConcurrentHashMap<>();
+    private final Map<UUID, List<Runnable>> deferred = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<QPlayer>> offlineLoads = new ConcurrentHashMap<>();
     private final Quests plugin;
     private final StorageProvider storageProvider;
+    private final SaveQueue saveQueue;
+    private final DepartedPlayerCache departedPlayerCache;
+    private final OfflinePlayerCache offlinePlayerCache;
     private QuestController activeQuestController;
 
     public QPlayerManager(Quests plugin, StorageProvider storageProvider, QuestController questController) {
         this.plugin = plugin;
         this.storageProvider = storageProvider;
         this.activeQuestController = questController;
+        this.saveQueue = new SaveQueue(plugin, storageProvider,
+                plugin.getQuestsConfig().getInt("options.storage.save-queue.batch-size", 100),
+                plugin.getQuestsConfig().getInt("options.storage.save-queue.capacity", 1000));
+        this.departedPlayerCache = new DepartedPlayerCache(
+                plugin.getQuestsConfig().getInt("options.storage.departed-player-cache.size", 100),
+                plugin.getQuestsConfig().getInt("options.storage.departed-player-cache.ttl", 60));
+        this.offlinePlayerCache = new OfflinePlayerCache(
+                plugin.getQuestsConfig().getInt("options.storage.offline-player-cache.size", 500),
+                plugin.getQuestsConfig().getInt("options.storage.offline-player-cache.ttl", 300),
+                this::evictOffline);
     }
 
     /**
@@ -42,7 +65,7 @@ public class QPlayerManager {
         Objects.requireNonNull(uuid, "uuid cannot be null");
 
         QPlayer qPlayer = qPlayers.get(uuid);
-        if (qPlayer == null) {
+        if (qPlayer == null && !deferred.containsKey(uuid)) {
             plugin.getQuestsLogger().debug("QPlayer of " + uuid + " is null, but was requested:");
             if (plugin.getQuestsLogger().getServerLoggingLevel() == QuestsLogger.LoggingLevel.DEBUG) {
                 Thread.dumpStack();
@@ -52,7 +75,76 @@ public class QPlayerManager {
     }
 
     /**
-     * Unloads and schedules a save for the player. See {@link QPlayerManager#savePlayer(UUID)}
+     * Gets the QPlayer from a given UUID whether or not they are online. Players who are not online are loaded
+     * asynchronously and kept in the offline player cache, and concurrent requests for the same player share a
+     * single load. Changes made to a player who is not online must be saved with
+     * {@link QPlayerManager#savePlayer(UUID)}, and are carried over if the player joins.
+     *
+     * @param uuid the uuid
+     * @return a future completed with the {@link QPlayer}, or with null if they could not be loaded
+     */
+    public @NotNull CompletableFuture<QPlayer> getOrLoadAsync(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        QPlayer qPlayer = qPlayers.get(uuid);
+        if (qPlayer == null) qPlayer = offlinePlayerCache.get(uuid);
+        if (qPlayer != null) return CompletableFuture.completedFuture(qPlayer);
+
+        CompletableFuture<QPlayer> future = new CompletableFuture<>();
+        CompletableFuture<QPlayer> existing = offlineLoads.putIfAbsent(uuid, future);
+        if (existing != null) return existing;
+
+        plugin.getScheduler().doAsync(() -> {
+            try {
+                future.complete(loadOffline(uuid));
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            } finally {
+                offlineLoads.remove(uuid, future);
+            }
+        });
+        return future;
+    }
+
+    private @Nullable QPlayer loadOffline(UUID uuid) {
+        QPlayer qPlayer = qPlayers.get(uuid);
+        if (qPlayer == null) qPlayer = offlinePlayerCache.get(uuid);
+        if (qPlayer != null) return qPlayer;
+
+        plugin.getQuestsLogger().debug("Loading offline player " + uuid + ".");
+        QuestProgressFile questProgressFile = load(uuid, true);
+        if (questProgressFile == null) return null;
+        QPlayer loaded = new QPlayer(plugin, uuid, new QPlayerPreferences(null), questProgressFile, activeQuestController);
+
+        // the player may have joined in the meantime, in which case their own copy is used
+        qPlayer = qPlayers.get(uuid);
+        if (qPlayer != null) return qPlayer;
+        if (!deferred.containsKey(uuid)) {
+            offlinePlayerCache.put(loaded);
+        }
+        return loaded;
+    }
+
+    // an evicted player is saved if they have changed, and only then is what the storage provider keeps released
+    private void evictOffline(QPlayer qPlayer) {
+        UUID uuid = qPlayer.getPlayerUUID();
+        QuestProgressFile snapshot = qPlayer.getQuestProgressFile().snapshotModified();
+        if (snapshot.getAllQuestProgress().isEmpty()) {
+            releaseIfUnused(uuid);
+        } else {
+            saveQueue.submit(uuid, snapshot, () -> releaseIfUnused(uuid));
+        }
+    }
+
+    // only released if the player has not since joined, started joining or been looked up again
+    private void releaseIfUnused(UUID uuid) {
+        if (qPlayers.containsKey(uuid) || deferred.containsKey(uuid) || offlinePlayerCache.contains(uuid)) return;
+        storageProvider.releaseProgressFile(uuid);
+    }
+
+    /**
+     * Unloads and schedules a save for the player. See {@link QPlayerManager#savePlayer(UUID)}. Their progress is
+     * kept for a short while afterwards, in case they join again.
      *
      * @param uuid the uuid of the player
      */
@@ -61,28 +153,60 @@ public class QPlayerManager {
 
         plugin.getQuestsLogger().debug("Unloading and saving player " + uuid + ".");
         qPlayers.computeIfPresent(uuid, (mapUUID, qPlayer) -> {
-            savePlayer(uuid);
+            QuestProgressFile snapshot = qPlayer.getQuestProgressFile().snapshotModified();
+            Runnable written = departedPlayerCache.put(uuid, qPlayer.getQuestProgressFile());
+            saveQueue.submit(uuid, snapshot, () -> {
+                if (written != null) written.run();
+                // the player may have joined again while they were waiting to be saved
+                if (!qPlayers.containsKey(uuid)) storageProvider.releaseProgressFile(uuid);
+            });
             return null;
         });
     }
 
     /**
-     * Schedules a save for the player with the {@link QuestProgressFile} associated by the {@link QPlayerManager}.
-     * The modified status of the progress file will be reset.
+     * Schedules a save for the player with the {@link QuestProgressFile} associated by the {@link QPlayerManager},
+     * which includes players in the offline player cache. The modified status of the progress file will be reset.
      *
      * @param uuid the uuid of the player
      */
     public void savePlayer(@NotNull UUID uuid) {
         Objects.requireNonNull(uuid, "uuid cannot be null");
 
-        QPlayer qPlayer = getPlayer(uuid);
+        QPlayer qPlayer = qPlayers.get(uuid);
+        if (qPlayer == null) qPlayer = offlinePlayerCache.get(uuid);
+        if (qPlayer == null) qPlayer = getPlayer(uuid);
         if (qPlayer == null) return;
         savePlayer(uuid, qPlayer.getQuestProgressFile());
     }
 
+    /**
+     * Schedules a save for the player like {@link QPlayerManager#savePlayer(UUID)}, and runs a callback once it
+     * has been written or given up on. If there is nothing to save, the callback runs straight away on the
+     * calling thread, otherwise it runs on the save queue's writer thread.
+     *
+     * @param uuid the uuid of the player
+     * @param afterSave called once the save is finished
+     */
+    public void savePlayer(@NotNull UUID uuid, @NotNull Runnable afterSave) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+        Objects.requireNonNull(afterSave, "afterSave cannot be null");
+
+        QPlayer qPlayer = qPlayers.get(uuid);
+        if (qPlayer == null) qPlayer = offlinePlayerCache.get(uuid);
+        QuestProgressFile snapshot = qPlayer == null ? null : qPlayer.getQuestProgressFile().snapshotModified();
+        if (snapshot == null || snapshot.getAllQuestProgress().isEmpty()) {
+            afterSave.run();
+            return;
+        }
+        saveQueue.submit(uuid, snapshot, afterSave);
+    }
+
     /**
      * Schedules a save for the player with a specified {@link QuestProgressFile}. The modified status of the
-     * specified progress file will be reset.
+     * specified progress file will be reset. Only quest progress which has been modified is copied and saved.
+     * Saves are queued and written in batches, and a newer save replaces any older one for the same player which
+     * has not yet been written.
      *
      * @param uuid the uuid of the player
      * @param originalProgressFile the quest progress file to associate with and save
@@ -91,9 +215,9 @@ public class QPlayerManager {
         Objects.requireNonNull(uuid, "uuid cannot be null");
         Objects.requireNonNull(originalProgressFile, "originalProgressFile cannot be null");
 
-        QuestProgressFile clonedProgressFile = new QuestProgressFile(originalProgressFile);
-        originalProgressFile.resetModified();
-        plugin.getScheduler().doAsync(() -> save(uuid, clonedProgressFile));
+        QuestProgressFile snapshot = originalProgressFile.snapshotModified();
+        if (snapshot.getAllQuestProgress().isEmpty()) return;
+        saveQueue.submit(uuid, snapshot, null);
     }
 
     /**
@@ -118,15 +242,16 @@ public class QPlayerManager {
      * @param questProgressFile the quest progress file to associate with and save
      */
     public void savePlayerSync(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
-        save(uuid, questProgressFile);
-    }
-
-    private void save(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
         Objects.requireNonNull(uuid, "uuid cannot be null");
         Objects.requireNonNull(questProgressFile, "questProgressFile cannot be null");
 
         plugin.getQuestsLogger().debug("Saving player " + uuid + ".");
-        storageProvider.saveProgressFile(uuid, questProgressFile);
+        departedPlayerCache.invalidate(uuid);
+        QPlayer offline = offlinePlayerCache.get(uuid);
+        boolean invalidated = offline != null && offline.getQuestProgressFile() != questProgressFile;
+        if (invalidated) offlinePlayerCache.invalidate(uuid);
+        saveQueue.saveNow(uuid, questProgressFile);
+        if (invalidated) releaseIfUnused(uuid);
     }
 
     /**
@@ -139,6 +264,9 @@ public class QPlayerManager {
 
         plugin.getQuestsLogger().debug("Dropping player " + uuid + ".");
         qPlayers.remove(uuid);
+        departedPlayerCache.invalidate(uuid);
+        offlinePlayerCache.invalidate(uuid);
+        storageProvider.releaseProgressFile(uuid);
     }
 
     /**
@@ -159,12 +287,232 @@ public class QPlayerManager {
     public void loadPlayer(UUID uuid) {
         plugin.getQuestsLogger().debug("Loading player " + uuid + ".");
         qPlayers.computeIfAbsent(uuid, s -> {
-            QuestProgressFile questProgressFile = storageProvider.loadProgressFile(uuid);
+            QuestProgressFile questProgressFile = load(uuid);
             if (questProgressFile == null) return null;
             return new QPlayer(plugin, uuid, new QPlayerPreferences(null), questProgressFile, activeQuestController);
         });
     }
 
+    /**
+     * Mark a player as being loaded, so that work for them can be deferred with
+     * {@link QPlayerManager#deferUntilLoaded(UUID, Runnable)} until {@link QPlayerManager#promotePlayer(UUID)}.
+     *
+     * @param uuid the uuid of the player
+     */
+    public void markLoading(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        if (qPlayers.containsKey(uuid)) return;
+        deferred.putIfAbsent(uuid, new ArrayList<>());
+    }
+
+    /**
+     * Load a player who is about to join into the staging cache, where they are kept until they are promoted
+     * with {@link QPlayerManager#promotePlayer(UUID)}. The player must have been marked as loading, and nothing
+     * is staged if they stop loading in the meantime. Can be invoked asynchronously.
+     *
+     * @param uuid the uuid of the player
+     */
+    public void stagePlayer(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        if (qPlayers.containsKey(uuid) || !deferred.containsKey(uuid)) return;
+        plugin.getQuestsLogger().debug("Prefetching player " + uuid + ".");
+        QuestProgressFile questProgressFile = load(uuid);
+        if (questProgressFile == null) return;
+        if (deferred.containsKey(uuid)) {
+            staged.put(uuid, questProgressFile);
+        } else {
+            releaseIfUnused(uuid);
+        }
+    }
+
+    /**
+     * Finish loading a player, moving them out of the staging cache if they were prefetched, and replay any work
+     * which was deferred while they were loading. If they could not be loaded, deferred work is kept until they
+     * are promoted or discarded. This should be invoked on the main thread.
+     *
+     * @param uuid the uuid of the player
+     * @return true if the player is now loaded
+     */
+    public boolean promotePlayer(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        QuestProgressFile questProgressFile = staged.remove(uuid);
+        if (questProgressFile != null) {
+            qPlayers.computeIfAbsent(uuid, s -> new QPlayer(plugin, uuid, new QPlayerPreferences(null), questProgressFile, activeQuestController));
+        }
+        if (!qPlayers.containsKey(uuid)) return false;
+        List<Runnable> buffered = deferred.remove(uuid);
+        if (buffered == null) return true;
+
+        List<Runnable> toReplay;
+        synchronized (buffered) {
+            toReplay = new ArrayList<>(buffered);
+        }
+        for (Runnable runnable : toReplay) {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Stop loading a player who will not join, discarding anything staged or deferred for them and releasing
+     * what the storage provider keeps for them.
+     *
+     * @param uuid the uuid of the player
+     */
+    public void discardStagedPlayer(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        deferred.remove(uuid);
+        staged.remove(uuid);
+        releaseIfUnused(uuid);
+    }
+
+    /**
+     * Defer work for a player until they have finished loading. Work is only deferred for players marked as
+     * loading, and only up to a limit per player. The work runs after the event which caused it has finished, so
+     * it should only use values captured from the event, not the event itself or the current state of the world.
+     *
+     * @param uuid the uuid of the player
+     * @param runnable the work to run once they have loaded
+     * @return true if the work was deferred
+     */
+    public boolean deferUntilLoaded(@NotNull UUID uuid, @NotNull Runnable runnable) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+        Objects.requireNonNull(runnable, "runnable cannot be null");
+
+        List<Runnable> buffered = deferred.get(uuid);
+        if (buffered == null) return false;
+        synchronized (buffered) {
+            if (buffered.size() >= MAX_DEFERRED) {
+                plugin.getQuestsLogger().debug("Too much work deferred for player " + uuid + " while loading, dropping.");
+                return false;
+            }
+            buffered.add(runnable);
+        }
+        return true;
+    }
+
+    /**
+     * Load many players at once, creating a new {@link QuestProgressFile} for any who do not exist. Players
+     * who are already loaded are skipped. This makes use of bulk loading if the storage provider supports it,
+     * and can be invoked asynchronously.
+     *
+     * @param uuids the uuids of the players
+     */
+    public void loadPlayers(@NotNull Collection<UUID> uuids) {
+        Objects.requireNonNull(uuids, "uuids cannot be null");
+
+        List<UUID> toLoad = new ArrayList<>();
+        Map<UUID, QuestProgressFile> questProgressFiles = new HashMap<>();
+        for (UUID uuid : uuids) {
+            if (qPlayers.containsKey(uuid)) continue;
+            QuestProgressFile cached = takeCached(uuid);
+            if (cached != null) {
+                questProgressFiles.put(uuid, cached);
+            } else {
+                toLoad.add(uuid);
+            }
+        }
+
+        plugin.getQuestsLogger().debug("Loading " + (toLoad.size() + questProgressFiles.size()) + " player(s).");
+        if (!toLoad.isEmpty()) {
+            Map<UUID, QuestProgressFile> loaded = storageProvider.loadProgressFiles(toLoad);
+            for (QuestProgressFile questProgressFile : loaded.values()) {
+                applyUnwritten(questProgressFile);
+            }
+            questProgressFiles.putAll(loaded);
+        }
+        for (Map.Entry<UUID, QuestProgressFile> entry : questProgressFiles.entrySet()) {
+            qPlayers.computeIfAbsent(entry.getKey(), uuid -> new QPlayer(plugin, uuid, new QPlayerPreferences(null), entry.getValue(), activeQuestController));
+        }
+    }
+
+    // players who were looked up while offline or left recently are reused, otherwise they are loaded from the
+    // storage provider
+    private @Nullable QuestProgressFile load(UUID uuid) {
+        return load(uuid, false);
+    }
+
+    // a detached load is for a player who is not joining, so the storage provider keeps nothing for them
+    private @Nullable QuestProgressFile load(UUID uuid, boolean detached) {
+        QuestProgressFile questProgressFile = takeCached(uuid);
+        if (questProgressFile != null) return questProgressFile;
+        questProgressFile = detached ? storageProvider.loadDetachedProgressFile(uuid) : storageProvider.loadProgressFile(uuid);
+        if (questProgressFile == null) return null;
+        applyUnwritten(questProgressFile);
+        return questProgressFile;
+    }
+
+    // an offline player keeps any modifications which have not been saved yet, so they are not lost on joining
+    private @Nullable QuestProgressFile takeCached(UUID uuid) {
+        QPlayer offline = offlinePlayerCache.take(uuid);
+        if (offline != null) {
+            plugin.getQuestsLogger().debug("Reusing progress of offline player " + uuid + ".");
+            departedPlayerCache.invalidate(uuid);
+            return offline.getQuestProgressFile();
+        }
+        QuestProgressFile departed = departedPlayerCache.take(uuid);
+        if (departed != null) {
+            plugin.getQuestsLogger().debug("Reusing progress of recently departed player " + uuid + ".");
+        }
+        return departed;
+    }
+
+    // saves which are still queued are newer than what the storage provider has
+    private void applyUnwritten(QuestProgressFile questProgressFile) {
+        for (QuestProgressFile unwritten : saveQueue.getUnwritten(questProgressFile.getPlayerUUID())) {
+            for (QuestProgress questProgress : unwritten.getAllQuestProgress()) {
+                questProgressFile.addQuestProgress(new QuestProgress(questProgress));
+            }
+        }
+        questProgressFile.resetModified();
+    }
+
+    /**
+     * Save any changes to players in the offline player cache, then write all queued saves and stop the save
+     * queue. Any saves made after this are written immediately.
+     *
+     * @param timeoutMillis the maximum time to wait for queued saves to be written
+     */
+    public void shutdown(long timeoutMillis) {
+        offlinePlayerCache.evictAll();
+        saveQueue.shutdown(timeoutMillis);
+    }
+
+    /**
+     * Gets the queue which player saves are written through.
+     *
+     * @return {@link SaveQueue}
+     */
+    public SaveQueue getSaveQueue() {
+        return saveQueue;
+    }
+
+    /**
+     * Gets the cache of players who have recently left.
+     *
+     * @return {@link DepartedPlayerCache}
+     */
+    public DepartedPlayerCache getDepartedPlayerCache() {
+        return departedPlayerCache;
+    }
+
+    /**
+     * Gets the cache of players who have been looked up while not online.
+     *
+     * @return {@link OfflinePlayerCache}
+     */
+    public OfflinePlayerCache getOfflinePlayerCache() {
+        return offlinePlayerCache;
+    }
+
     /**
      * Gets the current storage provider which loads and saves players.
      *
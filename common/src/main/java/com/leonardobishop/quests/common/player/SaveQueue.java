@@ -0,0 +1,352 @@
+package com.leonardobishop.quests.common.player;
+
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
+import com.leonardobishop.quests.common.plugin.Quests;
+import com.leonardobishop.quests.common.storage.StorageProvider;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A write-behind queue for player saves. While a save is waiting to be written, only the newest snapshot
+ * of each player is kept, and a single writer thread passes waiting snapshots to the storage provider in
+ * batches. Saves for the same player are therefore never written concurrently or out of order. Snapshots
+ * usually only hold the quest progress which changed since the last save (see
+ * {@link QuestProgressFile#snapshotModified()}).
+ * <p>
+ * Submitting never blocks. Producers which can wait, such as the autosave, should hold back while the queue
+ * {@link #isFull() is full}; anything else, such as a player quitting, may take the queue past its capacity.
+ * <p>
+ * If a batch fails to be written its players are retried one at a time, and any which still fail are put
+ * back in the queue to be tried again after a short delay, rather than being lost. A player who still cannot
+ * be written after {@value #MAX_ATTEMPTS} attempts is given up on, so that one bad save cannot hold the queue
+ * open forever.
+ */
+public class SaveQueue {
+
+    private static final long RETRY_DELAY = 5000;
+    private static final int MAX_ATTEMPTS = 5;
+
+    private final Quests plugin;
+    private final StorageProvider storageProvider;
+    private final int batchSize;
+    private final int capacity;
+    private final Object lock = new Object();
+    private final Map<UUID, Snapshot> pending = new LinkedHashMap<>();
+    private final Map<UUID, QuestProgressFile> writing = new HashMap<>();
+    private final Thread writer;
+    private boolean running = true;
+
+    /**
+     * @param plugin the plugin
+     * @param storageProvider the storage provider to write to
+     * @param batchSize the maximum number of players to write at once
+     * @param capacity the number of players waiting to be written at which the queue is full
+     */
+    public SaveQueue(Quests plugin, StorageProvider storageProvider, int batchSize, int capacity) {
+        this.plugin = plugin;
+        this.storageProvider = storageProvider;
+        this.batchSize = Math.max(1, batchSize);
+        this.capacity = Math.max(1, capacity);
+        this.writer = new Thread(this::run, "Quests Save Queue");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queue a snapshot of a player to be written. If an older snapshot of the player is still waiting, it
+     * is replaced by this one, which takes on its modified status. The snapshot must not be changed after
+     * it has been submitted.
+     *
+     * @param uuid the uuid of the player
+     * @param questProgressFile the snapshot to write
+     * @param afterSave called on the writer thread once the snapshot has been written, or given up on
+     */
+    public void submit(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile, @Nullable Runnable afterSave) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+        Objects.requireNonNull(questProgressFile, "questProgressFile cannot be null");
+
+        synchronized (lock) {
+            if (running) {
+                Snapshot snapshot = pending.get(uuid);
+                if (snapshot == null) {
+                    pending.put(uuid, new Snapshot(questProgressFile, afterSave));
+                } else {
+                    questProgressFile.mergeModified(snapshot.questProgressFile);
+                    snapshot.questProgressFile = questProgressFile;
+                    if (afterSave != null) snapshot.afterSave.add(afterSave);
+                }
+                lock.notifyAll();
+                return;
+            }
+        }
+
+        // the writer has stopped, so there is nothing left to coalesce with
+        write(Collections.singletonMap(uuid, questProgressFile));
+        if (afterSave != null) runAll(Collections.singletonList(afterSave));
+    }
+
+    /**
+     * Write a player on the calling thread, after anything already queued for them. The modified status
+     * of the specified progress file is not changed.
+     *
+     * @param uuid the uuid of the player
+     * @param questProgressFile the progress file to write
+     */
+    public void saveNow(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+        Objects.requireNonNull(questProgressFile, "questProgressFile cannot be null");
+
+        Snapshot snapshot;
+        synchronized (lock) {
+            while (writing.containsKey(uuid)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            snapshot = pending.remove(uuid);
+            writing.put(uuid, questProgressFile);
+            lock.notifyAll();
+        }
+
+        try {
+            if (snapshot != null) {
+                write(Collections.singletonMap(uuid, snapshot.questProgressFile));
+            }
+            write(Collections.singletonMap(uuid, questProgressFile));
+            if (snapshot != null) runAll(snapshot.afterSave);
+        } finally {
+            synchronized (lock) {
+                writing.remove(uuid);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Get the snapshots of a player which have not yet finished being written, oldest first. These should
+     * be applied over what the storage provider loads, since it may not have seen them yet.
+     *
+     * @param uuid the uuid of the player
+     * @return {@link List} of snapshots which must not be changed
+     */
+    public @NotNull List<QuestProgressFile> getUnwritten(@NotNull UUID uuid) {
+        List<QuestProgressFile> unwritten = new ArrayList<>(2);
+        synchronized (lock) {
+            QuestProgressFile questProgressFile = writing.get(uuid);
+            if (questProgressFile != null) unwritten.add(questProgressFile);
+            Snapshot snapshot = pending.get(uuid);
+            if (snapshot != null) unwritten.add(snapshot.questProgressFile);
+        }
+        return unwritten;
+    }
+
+    /**
+     * @return the number of players waiting to be written
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return true if the queue holds at least its capacity of players, and producers which can wait should
+     */
+    public boolean isFull() {
+        synchronized (lock) {
+            return pending.size() >= capacity;
+        }
+    }
+
+    /**
+     * @return true if nothing is waiting to be written or being written
+     */
+    public boolean isFlushed() {
+        synchronized (lock) {
+            return pending.isEmpty() && writing.isEmpty();
+        }
+    }
+
+    /**
+     * Wait until everything submitted so far has been written.
+     *
+     * @param timeoutMillis the maximum time to wait
+     * @return true if the queue was flushed in time
+     */
+    public boolean awaitFlush(long timeoutMillis) {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            while (!pending.isEmpty() || !writing.isEmpty()) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) return false;
+                try {
+                    lock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Write everything waiting in the queue and stop the writer. Saves submitted after this are
+     * written on the calling thread.
+     *
+     * @param timeoutMillis the maximum time to wait for the queue to be flushed
+     */
+    public void shutdown(long timeoutMillis) {
+        synchronized (lock) {
+            running = false;
+            lock.notifyAll();
+        }
+        if (!awaitFlush(timeoutMillis)) {
+            plugin.getQuestsLogger().severe("Timed out waiting for " + getPendingCount() + " player(s) to be saved!");
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Map<UUID, QuestProgressFile> batch = new LinkedHashMap<>();
+            Map<UUID, Snapshot> taken = new HashMap<>();
+            synchronized (lock) {
+                if (pending.isEmpty() && !running) return;
+
+                Iterator<Map.Entry<UUID, Snapshot>> iterator = pending.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    Map.Entry<UUID, Snapshot> entry = iterator.next();
+                    // skip anyone being saved on another thread, they will be picked up afterwards
+                    if (writing.containsKey(entry.getKey())) continue;
+                    iterator.remove();
+                    writing.put(entry.getKey(), entry.getValue().questProgressFile);
+                    batch.put(entry.getKey(), entry.getValue().questProgressFile);
+                    taken.put(entry.getKey(), entry.getValue());
+                }
+
+                if (batch.isEmpty()) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException ignored) { }
+                    continue;
+                }
+                lock.notifyAll();
+            }
+
+            Set<UUID> failed = Collections.emptySet();
+            try {
+                failed = write(batch);
+            } finally {
+                synchronized (lock) {
+                    writing.keySet().removeAll(batch.keySet());
+                    for (UUID uuid : failed) {
+                        // once stopping or out of attempts there is no retrying, and anything waiting on the save is released anyway
+                        Snapshot snapshot = taken.get(uuid);
+                        if (!running) {
+                            plugin.getQuestsLogger().severe("Could not save player " + uuid + " before stopping, their latest changes have been lost!");
+                        } else if (++snapshot.attempts >= MAX_ATTEMPTS) {
+                            plugin.getQuestsLogger().severe("Could not save player " + uuid + " after " + snapshot.attempts + " attempts, their latest changes have been lost!");
+                        } else {
+                            requeue(uuid, snapshot);
+                            taken.remove(uuid);
+                        }
+                    }
+                    lock.notifyAll();
+                }
+            }
+            for (Snapshot snapshot : taken.values()) {
+                runAll(snapshot.afterSave);
+            }
+
+            if (!failed.isEmpty()) {
+                synchronized (lock) {
+                    if (running) {
+                        try {
+                            lock.wait(RETRY_DELAY);
+                        } catch (InterruptedException ignored) { }
+                    }
+                }
+            }
+        }
+    }
+
+    // must be called while synchronised, a failed snapshot goes back in the queue beneath anything newer
+    private void requeue(UUID uuid, Snapshot snapshot) {
+        Snapshot newer = pending.get(uuid);
+        if (newer == null) {
+            pending.put(uuid, snapshot);
+        } else {
+            newer.questProgressFile.mergeModified(snapshot.questProgressFile);
+            newer.afterSave.addAll(0, snapshot.afterSave);
+            // the newer snapshot now carries what failed, so it does not get a fresh set of attempts
+            newer.attempts = Math.max(newer.attempts, snapshot.attempts);
+        }
+    }
+
+    // returns the players which could not be written
+    private Set<UUID> write(Map<UUID, QuestProgressFile> batch) {
+        plugin.getQuestsLogger().debug("Saving " + batch.size() + " player(s).");
+        try {
+            if (storageProvider.saveProgressFiles(batch)) {
+                return Collections.emptySet();
+            }
+        } catch (Exception e) {
+            plugin.getQuestsLogger().severe("Failed to save " + batch.size() + " player(s)!");
+            e.printStackTrace();
+        }
+        if (batch.size() == 1) {
+            return new HashSet<>(batch.keySet());
+        }
+
+        // one at a time, so that a single player who cannot be written does not hold back the rest
+        Set<UUID> failed = new HashSet<>();
+        for (Map.Entry<UUID, QuestProgressFile> entry : batch.entrySet()) {
+            try {
+                if (!storageProvider.saveProgressFile(entry.getKey(), entry.getValue())) {
+                    failed.add(entry.getKey());
+                }
+            } catch (Exception e) {
+                plugin.getQuestsLogger().severe("Failed to save player " + entry.getKey() + "!");
+                e.printStackTrace();
+                failed.add(entry.getKey());
+            }
+        }
+        return failed;
+    }
+
+    private void runAll(List<Runnable> runnables) {
+        for (Runnable runnable : runnables) {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static final class Snapshot {
+        private final List<Runnable> afterSave = new ArrayList<>(1);
+        private QuestProgressFile questProgressFile;
+        private int attempts;
+
+        private Snapshot(QuestProgressFile questProgressFile, Runnable afterSave) {
+            this.questProgressFile = questProgressFile;
+            if (afterSave != null) this.afterSave.add(afterSave);
+        }
+    }
+}
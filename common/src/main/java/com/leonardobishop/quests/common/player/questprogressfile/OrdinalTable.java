@@ -0,0 +1,138 @@
+package com.leonardobishop.quests.common.player.questprogressfile;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Holds progress in an array indexed by the ordinal of its quest or task (see
+ * {@link com.leonardobishop.quests.common.quest.QuestManager#getQuestOrdinal(String)}), so looking it up does not
+ * need to hash any ids. Progress for anything without an ordinal, such as a quest which is not loaded, is kept by
+ * its id instead, and is moved into the array once it is looked up with an ordinal.
+ * <p>
+ * Iterating is read-only, and the table is not thread safe.
+ *
+ * @param <T> the type of progress
+ */
+final class OrdinalTable<T> extends AbstractCollection<T> {
+
+    private static final Object[] EMPTY = new Object[0];
+
+    private Object[] byOrdinal = EMPTY;
+    private Map<String, T> byId = Collections.emptyMap();
+    private int size;
+
+    /**
+     * @param ordinal the ordinal, or -1 if there is none
+     * @param id the id, used if there is nothing at the ordinal
+     * @return the progress, or null
+     */
+    T get(int ordinal, String id) {
+        if (ordinal >= 0 && ordinal < byOrdinal.length && byOrdinal[ordinal] != null) {
+            return cast(byOrdinal[ordinal]);
+        }
+        if (byId.isEmpty()) return null;
+        if (ordinal < 0) return byId.get(id);
+
+        T value = byId.remove(id);
+        if (value != null) {
+            size--;
+            put(ordinal, id, value);
+        }
+        return value;
+    }
+
+    /**
+     * @param ordinal the ordinal, or -1 if there is none
+     * @param id the id
+     * @param value the progress
+     * @return the progress which was replaced, or null
+     */
+    T put(int ordinal, String id, T value) {
+        T previous;
+        if (ordinal < 0) {
+            if (byId.isEmpty()) byId = new HashMap<>(4);
+            previous = byId.put(id, value);
+        } else {
+            if (ordinal >= byOrdinal.length) {
+                byOrdinal = Arrays.copyOf(byOrdinal, Math.max(ordinal + 1, byOrdinal.length + (byOrdinal.length >> 1)));
+            }
+            previous = cast(byOrdinal[ordinal]);
+            byOrdinal[ordinal] = value;
+            if (previous == null && !byId.isEmpty()) {
+                previous = byId.remove(id);
+            }
+        }
+        if (previous == null) size++;
+        return previous;
+    }
+
+    /**
+     * @param ordinal the ordinal, or -1 if there is none
+     * @param id the id
+     * @return the progress which was removed, or null
+     */
+    T remove(int ordinal, String id) {
+        T previous = null;
+        if (ordinal >= 0 && ordinal < byOrdinal.length) {
+            previous = cast(byOrdinal[ordinal]);
+            byOrdinal[ordinal] = null;
+        }
+        if (previous == null && !byId.isEmpty()) {
+            previous = byId.remove(id);
+        }
+        if (previous != null) size--;
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        byOrdinal = EMPTY;
+        byId = Collections.emptyMap();
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private final Object[] array = byOrdinal;
+            private final Iterator<T> rest = byId.values().iterator();
+            private int index = advance(0);
+
+            private int advance(int from) {
+                while (from < array.length && array[from] == null) from++;
+                return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return index < array.length || rest.hasNext();
+            }
+
+            @Override
+            public T next() {
+                if (index < array.length) {
+                    T value = cast(array[index]);
+                    index = advance(index + 1);
+                    return value;
+                }
+                if (rest.hasNext()) return rest.next();
+                throw new NoSuchElementException();
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T cast(Object value) {
+        return (T) value;
+    }
+}
@@ -1,33 +1,45 @@
 package com.leonardobishop.quests.common.player.questprogressfile;
 
 import com.leonardobishop.quests.common.plugin.Quests;
+import com.leonardobishop.quests.common.quest.Quest;
+import com.leonardobishop.quests.common.quest.Task;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
+/**
+ * Represents the progress of a player in a quest. The player is the owner of the {@link QuestProgressFile}
+ * this progress belongs to, and the ids of quests and tasks which are loaded are shared with the
+ * {@link Quest} and its tasks rather than each progress holding its own copy. Task progress is indexed by
+ * {@link Task#getOrdinal()}; looking it up by {@link Task} is cheaper than looking it up by id.
+ */
 public class QuestProgress {
 
-    private final Quests plugin;
-
-    private final Map<String, TaskProgress> taskProgress = new HashMap<>();
-    private final String questid;
-    private final UUID player;
+    private final OrdinalTable<TaskProgress> taskProgress = new OrdinalTable<>();
+    private String questid;
 
     private boolean started;
     private boolean completed;
     private boolean completedBefore;
     private long completionDate;
     private boolean modified;
+    private boolean untouched;
+    private QuestProgressFile questProgressFile;
 
+    /**
+     * The plugin and player are taken from the {@link QuestProgressFile} this progress is added to, the
+     * parameters are only kept for compatibility.
+     */
     public QuestProgress(Quests plugin, String questid, boolean completed, boolean completedBefore, long completionDate, UUID player, boolean started) {
-        this.plugin = plugin;
         this.questid = questid;
         this.completed = completed;
         this.completedBefore = completedBefore;
         this.completionDate = completionDate;
-        this.player = player;
         this.started = started;
     }
 
@@ -36,13 +48,20 @@ public class QuestProgress {
         this.modified = modified;
     }
 
+    // an untouched view of progress which is not in the file yet, see QuestProgressFile#getQuestProgress
+    QuestProgress(String questid, QuestProgressFile questProgressFile) {
+        this(null, questid, false, false, 0, null, false);
+        this.questProgressFile = questProgressFile;
+        this.untouched = true;
+    }
+
     public QuestProgress(QuestProgress questProgress) {
-        this.plugin = questProgress.plugin;
-        for (Map.Entry<String, TaskProgress> progressEntry : questProgress.taskProgress.entrySet()) {
-            taskProgress.put(progressEntry.getKey(), new TaskProgress(progressEntry.getValue()));
-        }
         this.questid = questProgress.questid;
-        this.player = questProgress.player;
+        for (TaskProgress progress : questProgress.taskProgress) {
+            TaskProgress copy = new TaskProgress(progress);
+            copy.setLinkedQuestProgress(this);
+            taskProgress.put(copy.getOrdinal(), copy.getTaskId(), copy);
+        }
         this.started = questProgress.started;
         this.completed = questProgress.completed;
         this.completedBefore = questProgress.completedBefore;
@@ -61,6 +80,7 @@ public class QuestProgress {
     public void setCompleted(boolean completed) {
         this.completed = completed;
         this.modified = true;
+        markDirty();
     }
 
     public boolean isStarted() {
@@ -70,6 +90,7 @@ public class QuestProgress {
     public void setStarted(boolean started) {
         this.started = started;
         this.modified = true;
+        markDirty();
     }
 
     public long getCompletionDate() {
@@ -79,10 +100,14 @@ public class QuestProgress {
     public void setCompletionDate(long completionDate) {
         this.completionDate = completionDate;
         this.modified = true;
+        markDirty();
     }
 
+    /**
+     * @return the uuid of the player, or null if this progress has not been added to a {@link QuestProgressFile}
+     */
     public UUID getPlayer() {
-        return player;
+        return questProgressFile == null ? null : questProgressFile.getPlayerUUID();
     }
 
     public boolean isCompletedBefore() {
@@ -92,38 +117,96 @@ public class QuestProgress {
     public void setCompletedBefore(boolean completedBefore) {
         this.completedBefore = completedBefore;
         this.modified = true;
+        markDirty();
     }
 
     public void addTaskProgress(TaskProgress taskProgress) {
-        this.taskProgress.put(taskProgress.getTaskId(), taskProgress);
+        if (questProgressFile != null) {
+            taskProgress.canonicalise(questProgressFile.getQuest(questid));
+        }
+        this.taskProgress.put(taskProgress.getOrdinal(), taskProgress.getTaskId(), taskProgress);
+        if (taskProgress.isModified()) {
+            markDirty();
+        }
     }
 
+    /**
+     * @return read-only collection of all task progress
+     */
     public Collection<TaskProgress> getTaskProgress() {
-        return taskProgress.values();
+        return Collections.unmodifiableCollection(taskProgress);
     }
 
+    /**
+     * @return a copy of all task progress by task id
+     */
     public Map<String, TaskProgress> getTaskProgressMap() {
-        return taskProgress;
+        Map<String, TaskProgress> map = new LinkedHashMap<>();
+        for (TaskProgress progress : taskProgress) {
+            map.put(progress.getTaskId(), progress);
+        }
+        return map;
     }
 
+    /**
+     * Get the progress of a task, creating it if it does not exist. Prefer {@link #getTaskProgress(Task)}.
+     *
+     * @param taskId the id of the task
+     * @return {@link TaskProgress}
+     */
     public TaskProgress getTaskProgress(String taskId) {
-        TaskProgress tP = taskProgress.getOrDefault(taskId, null);
+        TaskProgress tP = taskProgress.get(taskOrdinalOf(taskId), taskId);
         if (tP == null) {
             repairTaskProgress(taskId);
-            tP = taskProgress.getOrDefault(taskId, null);
+            tP = taskProgress.get(taskOrdinalOf(taskId), taskId);
+        }
+        return tP;
+    }
+
+    /**
+     * Get the progress of a task by its ordinal, creating it if it does not exist.
+     *
+     * @param task the task, which must belong to this quest
+     * @return {@link TaskProgress}
+     */
+    public TaskProgress getTaskProgress(Task task) {
+        TaskProgress tP = taskProgress.get(task.getOrdinal(), task.getId());
+        if (tP == null) {
+            tP = new TaskProgress(this, task.getId(), null, null, false, false);
+            addTaskProgress(tP);
         }
         return tP;
     }
 
+    /**
+     * Remove the progress of a task.
+     *
+     * @param taskId the id of the task
+     */
+    public void removeTaskProgress(String taskId) {
+        taskProgress.remove(taskOrdinalOf(taskId), taskId);
+    }
+
     public void repairTaskProgress(String taskid) {
-        TaskProgress taskProgress = new TaskProgress(this, taskid, null, player, false, false);
+        TaskProgress taskProgress = new TaskProgress(this, taskid, null, null, false, false);
         this.addTaskProgress(taskProgress);
     }
 
+    /**
+     * Check whether this is a blank view of a quest the player has no progress for. It is added to the
+     * player's {@link QuestProgressFile} the first time it is changed, or if progress for the quest has been added
+     * since, its changed task progress is moved there instead.
+     *
+     * @return true if this progress is not part of the player's progress file yet
+     */
+    public boolean isUntouched() {
+        return untouched;
+    }
+
     public boolean isModified() {
         if (modified) return true;
         else {
-            for (TaskProgress progress : this.taskProgress.values()) {
+            for (TaskProgress progress : this.taskProgress) {
                 if (progress.isModified()) return true;
             }
             return false;
@@ -131,13 +214,76 @@ public class QuestProgress {
     }
 
     public void queueForCompletionTest() {
-        plugin.getQuestCompleter().queueSingular(this);
+        if (questProgressFile == null) return;
+        questProgressFile.getPlugin().getQuestCompleter().queueSingular(this);
     }
 
     public void resetModified() {
         this.modified = false;
-        for (TaskProgress progress : this.taskProgress.values()) {
+        for (TaskProgress progress : this.taskProgress) {
             progress.resetModified();
         }
     }
+
+    void setQuestProgressFile(QuestProgressFile questProgressFile) {
+        this.questProgressFile = questProgressFile;
+        this.untouched = false;
+        canonicalise(questProgressFile.getQuest(questid));
+    }
+
+    // swap in the id instances of the loaded quest and its tasks, and lay out task progress by their ordinals
+    private void canonicalise(Quest quest) {
+        // copies of progress which is already in a file only need task progress added before it was attached
+        boolean canonical = quest != null && questid == quest.getId();
+        questid = quest == null ? questid.intern() : quest.getId();
+        if (taskProgress.isEmpty()) return;
+        List<TaskProgress> tasks = new ArrayList<>(taskProgress);
+        for (TaskProgress progress : tasks) {
+            if (canonical && progress.getOrdinal() >= 0) continue;
+            taskProgress.remove(progress.getOrdinal(), progress.getTaskId());
+            progress.canonicalise(quest);
+            taskProgress.put(progress.getOrdinal(), progress.getTaskId(), progress);
+        }
+    }
+
+    private int taskOrdinalOf(String taskId) {
+        Quest quest = questProgressFile == null ? null : questProgressFile.getQuest(questid);
+        return quest == null ? -1 : quest.getTaskOrdinal(taskId);
+    }
+
+    void markDirty() {
+        if (questProgressFile != null) {
+            if (untouched) {
+                QuestProgress stored = questProgressFile.materialize(this);
+                if (stored != this) {
+                    // something else added progress for this quest after this view was taken
+                    stored.adopt(this);
+                    return;
+                }
+                untouched = false;
+            }
+            questProgressFile.markDirty(questid);
+        }
+    }
+
+    // move the changed task progress of a stale view into this progress, the view stays untouched
+    private void adopt(QuestProgress view) {
+        for (TaskProgress progress : new ArrayList<>(view.taskProgress)) {
+            if (progress.isModified()) {
+                view.taskProgress.remove(progress.getOrdinal(), progress.getTaskId());
+                progress.setLinkedQuestProgress(this);
+                addTaskProgress(progress);
+            }
+        }
+    }
+
+    void mergeModified(QuestProgress earlier) {
+        this.modified |= earlier.modified;
+        for (TaskProgress earlierProgress : earlier.taskProgress) {
+            TaskProgress progress = this.taskProgress.get(earlierProgress.getOrdinal(), earlierProgress.getTaskId());
+            if (progress != null && earlierProgress.isModified()) {
+                progress.markModified();
+            }
+        }
+    }
 }
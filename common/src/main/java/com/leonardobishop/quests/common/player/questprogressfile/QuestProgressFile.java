@@ -7,18 +7,22 @@ import com.leonardobishop.quests.common.quest.Task;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Represents underlying quest progress for a player.
+ * Represents underlying quest progress for a player. Progress is indexed by {@link Quest#getOrdinal()}; looking
+ * it up by {@link Quest} is cheaper than looking it up by id.
  */
 public class QuestProgressFile {
 
-    private final Map<String, QuestProgress> questProgress = new HashMap<>();
+    private final OrdinalTable<QuestProgress> questProgress = new OrdinalTable<>();
+    private final Set<String> dirtyQuests = ConcurrentHashMap.newKeySet();
     private final UUID playerUUID;
     private final Quests plugin;
 
@@ -28,11 +32,11 @@ public class QuestProgressFile {
     }
 
     public QuestProgressFile(QuestProgressFile questProgressFile) {
-        for (Map.Entry<String, QuestProgress> progressEntry : questProgressFile.questProgress.entrySet()) {
-            questProgress.put(progressEntry.getKey(), new QuestProgress(progressEntry.getValue()));
-        }
         this.playerUUID = questProgressFile.playerUUID;
         this.plugin = questProgressFile.plugin;
+        for (QuestProgress progress : questProgressFile.questProgress) {
+            addQuestProgress(new QuestProgress(progress));
+        }
     }
 
     public void addQuestProgress(QuestProgress questProgress) {
@@ -40,7 +44,11 @@ public class QuestProgressFile {
 //        if (Options.VERIFY_QUEST_EXISTS_ON_LOAD.getBooleanValue(true) && plugin.getQuestManager().getQuestById(questProgress.getQuestId()) == null) {
 //            return;
 //        }
-        this.questProgress.put(questProgress.getQuestId(), questProgress);
+        questProgress.setQuestProgressFile(this);
+        this.questProgress.put(ordinalOf(questProgress.getQuestId()), questProgress.getQuestId(), questProgress);
+        if (questProgress.isModified()) {
+            dirtyQuests.add(questProgress.getQuestId());
+        }
     }
 
     /**
@@ -52,7 +60,7 @@ public class QuestProgressFile {
      */
     public List<Quest> getStartedQuests() {
         List<Quest> startedQuests = new ArrayList<>();
-        for (QuestProgress questProgress : questProgress.values()) {
+        for (QuestProgress questProgress : questProgress) {
             if (questProgress.isStarted()) {
                 startedQuests.add(plugin.getQuestManager().getQuestById(questProgress.getQuestId()));
             }
@@ -68,7 +76,7 @@ public class QuestProgressFile {
      */
     public List<Quest> getAllQuestsFromProgress(QuestsProgressFilter filter) {
         List<Quest> questsProgress = new ArrayList<>();
-        for (QuestProgress qProgress : questProgress.values()) {
+        for (QuestProgress qProgress : questProgress) {
             boolean condition = false;
             if (filter == QuestsProgressFilter.STARTED) {
                 condition = qProgress.isStarted();
@@ -119,7 +127,7 @@ public class QuestProgressFile {
      * @return {@code Collection<QuestProgress>} all quest progresses
      */
     public Collection<QuestProgress> getAllQuestProgress() {
-        return questProgress.values();
+        return Collections.unmodifiableCollection(questProgress);
     }
 
     /**
@@ -129,7 +137,7 @@ public class QuestProgressFile {
      * @return true if they have quest progress
      */
     public boolean hasQuestProgress(Quest quest) {
-        return questProgress.containsKey(quest.getId());
+        return questProgress.get(quest.getOrdinal(), quest.getId()) != null;
     }
 
     /**
@@ -181,17 +189,20 @@ public class QuestProgressFile {
     }
 
     /**
-     * Get the {@link QuestProgress} for a specified {@link Quest}, and generates a new one if it does not exist
+     * Get the {@link QuestProgress} for a specified {@link Quest}. If the player has no progress for the quest,
+     * a blank view is returned instead, which is only added to this file the first time it is changed (see
+     * {@link QuestProgress#isUntouched()}). Reading progress therefore does not grow the file. A view should
+     * not be kept for longer than needed, since progress made through another view first would take its place.
      *
      * @param quest the quest to get progress for
-     * @return {@link QuestProgress} or null if the quest does not exist
+     * @return {@link QuestProgress}
      */
     public QuestProgress getQuestProgress(Quest quest) {
-        if (questProgress.containsKey(quest.getId())) {
-            return questProgress.get(quest.getId());
+        QuestProgress progress = questProgress.get(quest.getOrdinal(), quest.getId());
+        if (progress != null) {
+            return progress;
         }
-        generateBlankQuestProgress(quest);
-        return getQuestProgress(quest);
+        return new QuestProgress(quest.getId(), this);
     }
 
     /**
@@ -222,32 +233,112 @@ public class QuestProgressFile {
         plugin.getQuestsLogger().debug("Cleaning file " + playerUUID + ".");
         if (!plugin.getTaskTypeManager().areRegistrationsAccepted()) {
             ArrayList<String> invalidQuests = new ArrayList<>();
-            for (String questId : this.questProgress.keySet()) {
+            for (QuestProgress progress : this.questProgress) {
                 Quest q;
-                if ((q = plugin.getQuestManager().getQuestById(questId)) == null) {
-                    invalidQuests.add(questId);
+                if ((q = plugin.getQuestManager().getQuestById(progress.getQuestId())) == null) {
+                    invalidQuests.add(progress.getQuestId());
                 } else {
                     ArrayList<String> invalidTasks = new ArrayList<>();
-                    for (String taskId : this.questProgress.get(questId).getTaskProgressMap().keySet()) {
-                        if (q.getTaskById(taskId) == null) {
-                            invalidTasks.add(taskId);
+                    for (TaskProgress taskProgress : progress.getTaskProgress()) {
+                        if (q.getTaskById(taskProgress.getTaskId()) == null) {
+                            invalidTasks.add(taskProgress.getTaskId());
                         }
                     }
                     for (String taskId : invalidTasks) {
-                        this.questProgress.get(questId).getTaskProgressMap().remove(taskId);
+                        progress.removeTaskProgress(taskId);
                     }
                 }
             }
             for (String questId : invalidQuests) {
-                this.questProgress.remove(questId);
+                this.questProgress.remove(ordinalOf(questId), questId);
             }
         }
     }
 
     public void resetModified() {
-        for (QuestProgress questProgress : questProgress.values()) {
+        for (QuestProgress questProgress : questProgress) {
             questProgress.resetModified();
         }
+        dirtyQuests.clear();
+    }
+
+    /**
+     * Check whether any quest progress may have been modified since the last snapshot, without looking
+     * through the file.
+     *
+     * @return false if nothing has been modified
+     */
+    public boolean hasModified() {
+        return !dirtyQuests.isEmpty();
+    }
+
+    /**
+     * Copy only the quest progress which has been modified since the last snapshot, and reset its modified
+     * status. The quests which have been modified are tracked as they change, so this does not need to look
+     * at the rest of the file. Storage providers only write modified progress, so the copy can be saved in
+     * place of the whole file.
+     *
+     * @return a new {@link QuestProgressFile} containing only modified quest progress
+     */
+    public QuestProgressFile snapshotModified() {
+        QuestProgressFile snapshot = new QuestProgressFile(playerUUID, plugin);
+        Iterator<String> iterator = dirtyQuests.iterator();
+        while (iterator.hasNext()) {
+            String questId = iterator.next();
+            iterator.remove();
+            QuestProgress progress = questProgress.get(ordinalOf(questId), questId);
+            if (progress == null || !progress.isModified()) continue;
+            snapshot.addQuestProgress(new QuestProgress(progress));
+            progress.resetModified();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Take on everything modified in an earlier snapshot of this file, so that this snapshot can be saved
+     * in place of the earlier one. Progress for quests which are only in the earlier snapshot is added.
+     *
+     * @param earlier the earlier snapshot, which is left unchanged
+     */
+    public void mergeModified(QuestProgressFile earlier) {
+        for (QuestProgress earlierProgress : earlier.questProgress) {
+            QuestProgress questProgress = this.questProgress.get(ordinalOf(earlierProgress.getQuestId()), earlierProgress.getQuestId());
+            if (questProgress != null) {
+                questProgress.mergeModified(earlierProgress);
+            } else {
+                addQuestProgress(new QuestProgress(earlierProgress));
+            }
+        }
+    }
+
+    Quests getPlugin() {
+        return plugin;
+    }
+
+    // the ordinal of a quest which is or has been loaded, or -1
+    private int ordinalOf(String questId) {
+        return plugin.getQuestManager() == null ? -1 : plugin.getQuestManager().getQuestOrdinal(questId);
+    }
+
+    // the quest a progress belongs to, if it is loaded
+    Quest getQuest(String questId) {
+        return plugin.getQuestManager() == null ? null : plugin.getQuestManager().getQuestById(questId);
+    }
+
+    // an untouched view becomes real progress the first time it is changed
+    // returns the progress which is stored for the quest, which is not the given view if it is stale
+    QuestProgress materialize(QuestProgress progress) {
+        int ordinal = ordinalOf(progress.getQuestId());
+        QuestProgress stored = questProgress.get(ordinal, progress.getQuestId());
+        if (stored == null) {
+            questProgress.put(ordinal, progress.getQuestId(), progress);
+            return progress;
+        }
+        return stored;
+    }
+
+    void markDirty(String questId) {
+        dirtyQuests.add(questId);
     }
 
 }
@@ -1,23 +1,34 @@
 package com.leonardobishop.quests.common.player.questprogressfile;
 
+import com.leonardobishop.quests.common.quest.Quest;
+import com.leonardobishop.quests.common.quest.Task;
+
 import java.util.UUID;
 
+/**
+ * Represents the progress of a player in a task. The player is taken from the linked {@link QuestProgress}.
+ */
 public class TaskProgress {
 
-    private final String taskid;
-    private final UUID player;
+    private String taskid;
+    private int ordinal = -1;
 
     private QuestProgress linkedQuestProgress;
     private boolean modified;
-    private Object progress;
+    private ProgressType progressType = ProgressType.NONE;
+    private long longProgress;
+    private double doubleProgress;
+    private Object objectProgress;
     private boolean completed;
 
+    /**
+     * The player is taken from the linked quest progress, the parameter is only kept for compatibility.
+     */
     public TaskProgress(QuestProgress linkedQuestProgress, String taskid, Object progress, UUID player, boolean completed) {
         this.linkedQuestProgress = linkedQuestProgress;
         this.taskid = taskid;
-        this.progress = progress;
-        this.player = player;
         this.completed = completed;
+        store(progress);
     }
 
     public TaskProgress(QuestProgress linkedQuestProgress, String taskid, Object progress, UUID player, boolean completed, boolean modified) {
@@ -27,9 +38,12 @@ public class TaskProgress {
 
     public TaskProgress(TaskProgress taskProgress) {
         this.taskid = taskProgress.taskid;
-        this.player = taskProgress.player;
+        this.ordinal = taskProgress.ordinal;
         this.modified = taskProgress.modified;
-        this.progress = taskProgress.progress;
+        this.progressType = taskProgress.progressType;
+        this.longProgress = taskProgress.longProgress;
+        this.doubleProgress = taskProgress.doubleProgress;
+        this.objectProgress = taskProgress.objectProgress;
         this.completed = taskProgress.completed;
     }
 
@@ -37,17 +51,146 @@ public class TaskProgress {
         return taskid;
     }
 
+    /**
+     * @return the ordinal of the task within its quest, or -1 if the task is not loaded
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * Get the progress of this task as an object. Numeric progress is boxed to the type it was
+     * originally set with; prefer {@link #getLong()} or {@link #getDouble()} where possible.
+     *
+     * @return the progress, or null if there is none
+     */
     public Object getProgress() {
-        return progress;
+        switch (progressType) {
+            case INT:
+                return (int) longProgress;
+            case LONG:
+                return longProgress;
+            case FLOAT:
+                return (float) doubleProgress;
+            case DOUBLE:
+                return doubleProgress;
+            case OBJECT:
+                return objectProgress;
+            default:
+                return null;
+        }
     }
 
     public void setProgress(Object progress) {
-        this.progress = progress;
-        this.modified = true;
+        store(progress);
+        markModified();
+    }
+
+    /**
+     * @return the type of progress currently stored
+     */
+    public ProgressType getProgressType() {
+        return progressType;
+    }
+
+    /**
+     * @return the progress as a long, or 0 if there is no numeric progress
+     */
+    public long getLong() {
+        switch (progressType) {
+            case INT:
+            case LONG:
+                return longProgress;
+            case FLOAT:
+            case DOUBLE:
+                return (long) doubleProgress;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return the progress as a double, or 0 if there is no numeric progress
+     */
+    public double getDouble() {
+        switch (progressType) {
+            case INT:
+            case LONG:
+                return longProgress;
+            case FLOAT:
+            case DOUBLE:
+                return doubleProgress;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Set the progress to a whole number, without boxing.
+     *
+     * @param progress the new progress
+     */
+    public void setLong(long progress) {
+        this.longProgress = progress;
+        this.progressType = fitsInt(progress) ? ProgressType.INT : ProgressType.LONG;
+        this.objectProgress = null;
+        markModified();
+    }
+
+    /**
+     * Set the progress to a decimal number, without boxing.
+     *
+     * @param progress the new progress
+     */
+    public void setDouble(double progress) {
+        this.doubleProgress = progress;
+        this.progressType = ProgressType.DOUBLE;
+        this.objectProgress = null;
+        markModified();
+    }
+
+    /**
+     * Add to the progress of this task. If there is no progress, it is treated as 0.
+     * Decimal progress stays decimal.
+     *
+     * @param amount the amount to add, may be negative
+     * @return the new progress
+     */
+    public long increment(long amount) {
+        switch (progressType) {
+            case FLOAT:
+            case DOUBLE:
+                doubleProgress += amount;
+                markModified();
+                return (long) doubleProgress;
+            case INT:
+            case LONG:
+                setLong(longProgress + amount);
+                return longProgress;
+            default:
+                setLong(amount);
+                return longProgress;
+        }
+    }
+
+    /**
+     * Add to the progress of this task, converting it to decimal progress.
+     * If there is no progress, it is treated as 0.
+     *
+     * @param amount the amount to add, may be negative
+     * @return the new progress
+     */
+    public double increment(double amount) {
+        setDouble(getDouble() + amount);
+        return doubleProgress;
     }
 
+    /**
+     * @return the uuid of the player, or null if this progress is not linked to quest progress in a
+     * {@link QuestProgressFile}
+     */
     public UUID getPlayer() {
-        return player;
+        return linkedQuestProgress == null ? null : linkedQuestProgress.getPlayer();
     }
 
     public boolean isCompleted() {
@@ -56,7 +199,7 @@ public class TaskProgress {
 
     public void setCompleted(boolean complete) {
         this.completed = complete;
-        this.modified = true;
+        markModified();
 
         if (complete) {
             linkedQuestProgress.queueForCompletionTest();
@@ -67,7 +210,76 @@ public class TaskProgress {
         return modified;
     }
 
+    /**
+     * @return true if the quest progress this belongs to is not part of the player's progress file yet
+     * @see QuestProgress#isUntouched()
+     */
+    public boolean isUntouched() {
+        return linkedQuestProgress != null && linkedQuestProgress.isUntouched();
+    }
+
     public void resetModified() {
         this.modified = false;
     }
+
+    void setLinkedQuestProgress(QuestProgress linkedQuestProgress) {
+        this.linkedQuestProgress = linkedQuestProgress;
+    }
+
+    void canonicalise(Quest quest) {
+        Task task = quest == null ? null : quest.getTaskById(taskid);
+        if (task != null) {
+            taskid = task.getId();
+            ordinal = task.getOrdinal();
+        } else {
+            taskid = taskid.intern();
+            ordinal = quest == null ? -1 : quest.getTaskOrdinal(taskid);
+        }
+    }
+
+    void markModified() {
+        this.modified = true;
+        if (linkedQuestProgress != null) {
+            linkedQuestProgress.markDirty();
+        }
+    }
+
+    private void store(Object progress) {
+        this.objectProgress = null;
+        if (progress == null) {
+            progressType = ProgressType.NONE;
+        } else if (progress instanceof Integer || progress instanceof Short || progress instanceof Byte) {
+            progressType = ProgressType.INT;
+            longProgress = ((Number) progress).longValue();
+        } else if (progress instanceof Long) {
+            progressType = ProgressType.LONG;
+            longProgress = (long) progress;
+        } else if (progress instanceof Float) {
+            progressType = ProgressType.FLOAT;
+            doubleProgress = (float) progress;
+        } else if (progress instanceof Number) {
+            progressType = ProgressType.DOUBLE;
+            doubleProgress = ((Number) progress).doubleValue();
+        } else {
+            progressType = ProgressType.OBJECT;
+            objectProgress = progress;
+        }
+    }
+
+    private static boolean fitsInt(long value) {
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * The form in which the progress of a task is held. Numeric progress is kept in primitive fields,
+     * the type only records how it should be presented by {@link #getProgress()}.
+     */
+    public enum ProgressType {
+        NONE,
+        INT,
+        LONG,
+        FLOAT,
+        DOUBLE,
+        OBJECT
+    }
 }
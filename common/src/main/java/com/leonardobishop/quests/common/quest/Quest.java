@@ -10,11 +10,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Quest implements Comparable<Quest> {
 
     private final Map<String, Task> tasks = new HashMap<>();
     private final Map<String, List<Task>> tasksByType = new HashMap<>();
+    private Map<String, Integer> taskOrdinals = new ConcurrentHashMap<>();
+    private int ordinal = -1;
     private String id;
     private List<String> rewards;
     private List<String> requirements;
@@ -40,6 +43,7 @@ public class Quest implements Comparable<Quest> {
         Objects.requireNonNull(task, "task cannot be null");
 
         tasks.put(task.getId(), task);
+        task.setOrdinal(assignTaskOrdinal(task.getId()));
         tasksByType.compute(task.getType(), (type, list) -> {
             if (list == null) {
                 return new ArrayList<>(Collections.singletonList(task));
@@ -71,6 +75,55 @@ public class Quest implements Comparable<Quest> {
         return tasks.get(id);
     }
 
+    /**
+     * Get the ordinal of a task registered to this quest, or to an earlier load of this quest.
+     *
+     * @param id task id
+     * @return the ordinal, or -1 if there is none
+     */
+    public int getTaskOrdinal(@NotNull String id) {
+        Objects.requireNonNull(id, "id cannot be null");
+
+        Integer ordinal = taskOrdinals.get(id);
+        return ordinal == null ? -1 : ordinal;
+    }
+
+    /**
+     * Get the ordinal of this quest. Ordinals are assigned when the quest is registered with the
+     * {@link QuestManager}, and a quest keeps the same ordinal across reloads.
+     *
+     * @return the ordinal, or -1 if it has not been registered
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
+    Map<String, Integer> getTaskOrdinals() {
+        return taskOrdinals;
+    }
+
+    // take on the task ordinals of an earlier load of this quest, so progress laid out by them stays valid
+    void adoptTaskOrdinals(Map<String, Integer> taskOrdinals) {
+        this.taskOrdinals = taskOrdinals;
+        for (Task task : tasks.values()) {
+            task.setOrdinal(assignTaskOrdinal(task.getId()));
+        }
+    }
+
+    // ordinals are only assigned on the main thread while quests are loaded
+    private int assignTaskOrdinal(String id) {
+        Integer ordinal = taskOrdinals.get(id);
+        if (ordinal == null) {
+            ordinal = taskOrdinals.size();
+            taskOrdinals.put(id, ordinal);
+        }
+        return ordinal;
+    }
+
     /**
      * Get a list of all task of a specific task type.
      *
@@ -10,15 +10,22 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The quests manager stores all present Quests and Categories on the server and is used as a registry.
+ * <p>
+ * Each quest is given a dense integer ordinal, which player progress is indexed by. A quest id keeps its ordinal
+ * (and each of its task ids keeps its task ordinal) for as long as the plugin is running, so progress laid out
+ * before a reload is still valid after it.
  */
 public class QuestManager {
 
     private final Quests plugin;
     private final Map<String, Quest> quests = new LinkedHashMap<>();
     private final List<Category> categories = new ArrayList<>();
+    private final Map<String, Integer> questOrdinals = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Integer>> taskOrdinals = new ConcurrentHashMap<>();
 
     public QuestManager(Quests plugin) {
         this.plugin = plugin;
@@ -33,6 +40,30 @@ public class QuestManager {
         Objects.requireNonNull(quest, "quest cannot be null");
 
         quests.put(quest.getId(), quest);
+
+        Integer ordinal = questOrdinals.get(quest.getId());
+        if (ordinal == null) {
+            ordinal = questOrdinals.size();
+            questOrdinals.put(quest.getId(), ordinal);
+        }
+        quest.setOrdinal(ordinal);
+        Map<String, Integer> previous = taskOrdinals.putIfAbsent(quest.getId(), quest.getTaskOrdinals());
+        if (previous != null) {
+            quest.adoptTaskOrdinals(previous);
+        }
+    }
+
+    /**
+     * Get the ordinal of a quest which is registered, or has been registered before a reload.
+     *
+     * @param id id to match
+     * @return the ordinal, or -1 if there is none
+     */
+    public int getQuestOrdinal(@NotNull String id) {
+        Objects.requireNonNull(id, "id cannot be null");
+
+        Integer ordinal = questOrdinals.get(id);
+        return ordinal == null ? -1 : ordinal;
     }
 
     /**
@@ -87,7 +118,8 @@ public class QuestManager {
     }
 
     /**
-     * Reset the quest manager and clears all registered quests and categories
+     * Reset the quest manager and clears all registered quests and categories. Ordinals are kept, so they
+     * are the same once the quests are registered again.
      */
     public void clear() {
         quests.clear();
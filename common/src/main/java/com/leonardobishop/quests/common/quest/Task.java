@@ -13,6 +13,9 @@ public class Task {
     private final Map<String, Object> configValues = new HashMap<>();
     private final String id;
     private final String type;
+    private Object compiledConfig;
+    private WorldFilter worldFilter;
+    private int ordinal = -1;
 
     public Task(String id, String type) {
         this.id = id;
@@ -26,6 +29,20 @@ public class Task {
         return id;
     }
 
+    /**
+     * Get the ordinal of this task within its quest. Ordinals are assigned when the task is registered to a
+     * quest, and a task keeps the same ordinal across reloads.
+     *
+     * @return the ordinal, or -1 if it has not been registered to a quest
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    void setOrdinal(int ordinal) {
+        this.ordinal = ordinal;
+    }
+
     /**
      * @return the configured task type for this task
      */
@@ -76,6 +93,44 @@ public class Task {
         Objects.requireNonNull(value, "value cannot be null");
 
         configValues.put(key, value);
+        if (key.equals("worlds")) {
+            worldFilter = WorldFilter.compile(value);
+        }
+    }
+
+    /**
+     * Get the worlds this task is restricted to, as compiled from the {@code worlds} config value.
+     *
+     * @return the world filter, or null if this task is not restricted to any world
+     */
+    public @Nullable WorldFilter getWorldFilter() {
+        return worldFilter;
+    }
+
+    /**
+     * Get the compiled configuration for this task, as created by its task type.
+     *
+     * @param type the class of the compiled configuration
+     * @return the compiled configuration
+     * @throws IllegalStateException if the configuration has not been compiled to the given type
+     * @see com.leonardobishop.quests.common.tasktype.TaskType#compileConfig(Task)
+     */
+    public <T> @NotNull T getCompiledConfig(@NotNull Class<T> type) {
+        Objects.requireNonNull(type, "type cannot be null");
+
+        if (!type.isInstance(compiledConfig)) {
+            throw new IllegalStateException("Task '" + id + "' does not have a compiled config of type " + type.getName());
+        }
+        return type.cast(compiledConfig);
+    }
+
+    /**
+     * Set the compiled configuration for this task. This is usually done once, when the task is loaded.
+     *
+     * @param compiledConfig the compiled configuration
+     */
+    public void setCompiledConfig(@Nullable Object compiledConfig) {
+        this.compiledConfig = compiledConfig;
     }
 
 }
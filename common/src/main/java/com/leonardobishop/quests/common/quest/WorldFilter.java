@@ -0,0 +1,90 @@
+package com.leonardobishop.quests.common.quest;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The set of worlds a task is restricted to, compiled from the {@code worlds} option of the task.
+ * Worlds are configured by name, but are tested by their unique id so that the result for each world
+ * only has to be worked out once.
+ */
+public class WorldFilter {
+
+    private final Set<String> worldNames;
+    private final Map<UUID, Boolean> results = new ConcurrentHashMap<>();
+
+    private WorldFilter(Set<String> worldNames) {
+        this.worldNames = worldNames;
+    }
+
+    /**
+     * Compile a world filter from the {@code worlds} option of a task, which may either be a single
+     * world name or a list of world names.
+     *
+     * @param configurationData the configured value
+     * @return the filter, or null if the value does not restrict the task to any world
+     */
+    public static @Nullable WorldFilter compile(@Nullable Object configurationData) {
+        if (configurationData instanceof List) {
+            List<?> allowedWorlds = (List<?>) configurationData;
+            if (!allowedWorlds.isEmpty() && allowedWorlds.get(0) instanceof String) {
+                Set<String> worldNames = new HashSet<>();
+                for (Object allowedWorld : allowedWorlds) {
+                    worldNames.add(String.valueOf(allowedWorld));
+                }
+                return new WorldFilter(Collections.unmodifiableSet(worldNames));
+            }
+            return null;
+        }
+
+        if (configurationData instanceof String) {
+            return new WorldFilter(Collections.singleton((String) configurationData));
+        }
+
+        return null;
+    }
+
+    /**
+     * Test whether a world is allowed by this filter.
+     *
+     * @param worldId the unique id of the world
+     * @param worldName the name of the world
+     * @return true if the world is allowed
+     */
+    public boolean test(@NotNull UUID worldId, @NotNull String worldName) {
+        Boolean result = results.get(worldId);
+        if (result == null) {
+            result = test(worldName);
+            results.put(worldId, result);
+        }
+        return result;
+    }
+
+    /**
+     * Test whether a world is allowed by this filter.
+     *
+     * @param worldName the name of the world
+     * @return true if the world is allowed
+     */
+    public boolean test(@NotNull String worldName) {
+        Objects.requireNonNull(worldName, "worldName cannot be null");
+
+        return worldNames.contains(worldName);
+    }
+
+    /**
+     * @return immutable {@link Set} of the allowed world names
+     */
+    public @NotNull Set<String> getWorldNames() {
+        return worldNames;
+    }
+}
@@ -0,0 +1,567 @@
+package com.leonardobishop.quests.common.storage;
+
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgress;
+import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFile;
+import com.leonardobishop.quests.common.player.questprogressfile.TaskProgress;
+import com.leonardobishop.quests.common.plugin.Quests;
+import com.leonardobishop.quests.common.quest.Quest;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A storage provider which sits in front of another, and records saves as deltas in a {@link ProgressJournal}
+ * instead of writing them straight through. Only the quests and tasks which have been modified are recorded.
+ * The journal is compacted in the background, folding the recorded changes into the backing storage provider,
+ * and is replayed on startup so that changes which were never compacted survive a crash.
+ * <p>
+ * Every record holds the full state of the quests and tasks it covers, so replaying a record more than once is harmless.
+ */
+public class JournalStorageProvider implements StorageProvider {
+
+    private static final TaskProgress.ProgressType[] PROGRESS_TYPES = TaskProgress.ProgressType.values();
+    private static final int MAX_COMPACTIONS_PER_SAVE = 3;
+
+    private final Quests plugin;
+    private final StorageProvider backing;
+    private final ProgressJournal journal;
+    private final long syncInterval;
+    private final long compactionInterval;
+    private final Map<UUID, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Object compactionLock = new Object();
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    private Map<UUID, PlayerDelta> pending = new HashMap<>();
+    private Map<UUID, PlayerDelta> compacting = new HashMap<>();
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param plugin the plugin
+     * @param backing the storage provider to compact into
+     * @param directory the directory to keep the journal in
+     * @param segmentSize the size of each journal segment in bytes
+     * @param syncInterval milliseconds between writing the journal through to disk
+     * @param compactionInterval milliseconds between compactions
+     */
+    public JournalStorageProvider(Quests plugin, StorageProvider backing, File directory, int segmentSize, long syncInterval, long compactionInterval) {
+        this.plugin = plugin;
+        this.backing = backing;
+        this.journal = new ProgressJournal(directory, segmentSize);
+        this.syncInterval = syncInterval;
+        this.compactionInterval = compactionInterval;
+    }
+
+    private ReentrantLock lock(UUID uuid) {
+        ReentrantLock lock = locks.computeIfAbsent(uuid, u -> new ReentrantLock());
+        lock.lock();
+        return lock;
+    }
+
+    @Override
+    public void init() {
+        backing.init();
+
+        try {
+            int replayed = journal.open(payload -> {
+                try {
+                    PlayerDelta delta = decode(payload);
+                    pending.merge(delta.uuid, delta, PlayerDelta::merge);
+                } catch (IOException e) {
+                    plugin.getQuestsLogger().warning("Skipping unreadable journal record: " + e.getMessage());
+                }
+            });
+            if (replayed > 0) {
+                plugin.getQuestsLogger().info("Recovering " + pending.size() + " player(s) from " + replayed + " journal record(s).");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open progress journal", e);
+        }
+
+        // recovered changes are compacted before the journal is reused
+        compacting = pending;
+        pending = new HashMap<>();
+        foldCompacting();
+        synchronized (this) {
+            journal.begin();
+            requeueCompacting();
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Quests Progress Journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::sync, syncInterval, syncInterval, TimeUnit.MILLISECONDS);
+        executor.scheduleWithFixedDelay(this::compact, compactionInterval, compactionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        compact();
+        synchronized (this) {
+            journal.close();
+        }
+        backing.shutdown();
+    }
+
+    @Override
+    public @Nullable QuestProgressFile loadProgressFile(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        return load(uuid, false);
+    }
+
+    @Override
+    public @Nullable QuestProgressFile loadDetachedProgressFile(@NotNull UUID uuid) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+
+        return load(uuid, true);
+    }
+
+    private @Nullable QuestProgressFile load(UUID uuid, boolean detached) {
+        ReentrantLock lock = lock(uuid);
+        try {
+            QuestProgressFile questProgressFile = detached ? backing.loadDetachedProgressFile(uuid) : backing.loadProgressFile(uuid);
+            if (questProgressFile == null) {
+                return null;
+            }
+
+            PlayerDelta compactingDelta;
+            PlayerDelta pendingDelta;
+            synchronized (this) {
+                compactingDelta = compacting.get(uuid);
+                pendingDelta = pending.get(uuid);
+            }
+            if (compactingDelta != null) apply(compactingDelta, questProgressFile);
+            if (pendingDelta != null) apply(pendingDelta, questProgressFile);
+            return questProgressFile;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public @NotNull Map<UUID, QuestProgressFile> loadProgressFiles(@NotNull Collection<UUID> uuids) {
+        Objects.requireNonNull(uuids, "uuids cannot be null");
+
+        // locked in a consistent order, so that two bulk loads cannot wait on each other
+        List<UUID> sorted = new ArrayList<>(new TreeSet<>(uuids));
+        List<ReentrantLock> held = new ArrayList<>(sorted.size());
+        try {
+            for (UUID uuid : sorted) {
+                held.add(lock(uuid));
+            }
+
+            Map<UUID, QuestProgressFile> questProgressFiles = backing.loadProgressFiles(sorted);
+            for (Map.Entry<UUID, QuestProgressFile> entry : questProgressFiles.entrySet()) {
+                PlayerDelta compactingDelta;
+                PlayerDelta pendingDelta;
+                synchronized (this) {
+                    compactingDelta = compacting.get(entry.getKey());
+                    pendingDelta = pending.get(entry.getKey());
+                }
+                if (compactingDelta != null) apply(compactingDelta, entry.getValue());
+                if (pendingDelta != null) apply(pendingDelta, entry.getValue());
+            }
+            return questProgressFiles;
+        } finally {
+            for (ReentrantLock lock : held) {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public boolean saveProgressFile(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile) {
+        Objects.requireNonNull(uuid, "uuid cannot be null");
+        Objects.requireNonNull(questProgressFile, "questProgressFile cannot be null");
+
+        PlayerDelta delta = PlayerDelta.of(uuid, questProgressFile);
+        if (delta.quests.isEmpty()) {
+            return true;
+        }
+        byte[] payload = encode(delta);
+
+        if (!journal.fits(payload.length)) {
+            // too large for the journal to ever hold, so it must go straight through once older changes are out of the way
+            plugin.getQuestsLogger().debug("Journal record for " + uuid + " is too large, writing through.");
+            compact();
+            return writeThrough(delta, questProgressFile);
+        }
+
+        // compaction frees the journal unless the backing storage provider is failing, in which case it stays full
+        for (int attempt = 0; !append(delta, payload); attempt++) {
+            if (attempt == MAX_COMPACTIONS_PER_SAVE) {
+                plugin.getQuestsLogger().severe("Journal is still full after compacting, writing player " + uuid + " through!");
+                return writeThrough(delta, questProgressFile);
+            }
+            try {
+                compact();
+            } catch (Exception e) {
+                plugin.getQuestsLogger().severe("Failed to compact journal!");
+                e.printStackTrace();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void releaseProgressFile(@NotNull UUID uuid) {
+        backing.releaseProgressFile(uuid);
+    }
+
+    /**
+     * @return the number of bytes appended to the journal, and written by the backing storage provider
+     */
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.get() + backing.getBytesWritten();
+    }
+
+    /**
+     * @return the storage provider the journal is compacted into
+     */
+    public StorageProvider getBackingProvider() {
+        return backing;
+    }
+
+    /**
+     * @return the fraction of the active journal segment which has been used
+     */
+    public synchronized double getJournalUsage() {
+        return journal.getUsage();
+    }
+
+    private boolean writeThrough(PlayerDelta delta, QuestProgressFile questProgressFile) {
+        ReentrantLock lock = lock(delta.uuid);
+        try {
+            if (!backing.saveProgressFile(delta.uuid, questProgressFile)) {
+                return false;
+            }
+            // anything older still waiting in the journal must not be folded in over what was just written
+            synchronized (this) {
+                pending.computeIfPresent(delta.uuid, (uuid, older) -> older.merge(delta));
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private synchronized boolean append(PlayerDelta delta, byte[] payload) {
+        if (!journal.append(payload)) {
+            return false;
+        }
+        bytesWritten.addAndGet(payload.length);
+        pending.merge(delta.uuid, delta, PlayerDelta::merge);
+        return true;
+    }
+
+    private void sync() {
+        try {
+            boolean compactionDue;
+            synchronized (this) {
+                journal.force();
+                compactionDue = journal.getUsage() > 0.75;
+            }
+            if (compactionDue) {
+                compact();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Fold everything recorded so far into the backing storage provider. Appends carry on into the other
+     * segment while this happens.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            int sealed;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                sealed = journal.rotate();
+                compacting = pending;
+                pending = new HashMap<>();
+            }
+
+            long start = System.currentTimeMillis();
+            int players = compacting.size();
+            foldCompacting();
+
+            synchronized (this) {
+                requeueCompacting();
+                journal.clear(sealed);
+            }
+            plugin.getQuestsLogger().debug("Compacted journal for " + players + " player(s) in " + (System.currentTimeMillis() - start) + "ms.");
+        }
+    }
+
+    // leaves behind only the deltas which could not be folded in
+    private void foldCompacting() {
+        for (PlayerDelta delta : new ArrayList<>(compacting.values())) {
+            ReentrantLock lock = lock(delta.uuid);
+            try {
+                // providers only write modified progress, so the delta alone is enough and nothing has to be loaded
+                QuestProgressFile questProgressFile = new QuestProgressFile(delta.uuid, plugin);
+                apply(delta, questProgressFile);
+                // the delta is only dropped from the journal once the backing storage provider has written it
+                if (backing.saveProgressFile(delta.uuid, questProgressFile)) {
+                    // loads read this under the same monitor, while still holding the player's lock
+                    synchronized (this) {
+                        compacting.remove(delta.uuid);
+                    }
+                } else {
+                    plugin.getQuestsLogger().severe("Failed to compact journal for player: " + delta.uuid + "!");
+                }
+            } catch (Exception e) {
+                plugin.getQuestsLogger().severe("Failed to compact journal for player: " + delta.uuid + "!");
+                e.printStackTrace();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // must be called while synchronised, carries deltas which failed to fold into the active segment
+    private void requeueCompacting() {
+        for (PlayerDelta delta : compacting.values()) {
+            PlayerDelta newer = pending.get(delta.uuid);
+            PlayerDelta merged = newer == null ? delta : delta.merge(newer);
+            byte[] payload = encode(merged);
+            if (journal.append(payload)) {
+                bytesWritten.addAndGet(payload.length);
+            } else {
+                // still folded in by the next compaction, but lost if the server stops before then
+                plugin.getQuestsLogger().severe("Journal is full, changes for player " + delta.uuid + " are only held in memory!");
+            }
+            pending.put(delta.uuid, merged);
+        }
+        compacting = new HashMap<>();
+    }
+
+    private void apply(PlayerDelta delta, QuestProgressFile questProgressFile) {
+        boolean validateQuests = plugin.getQuestsConfig().getBoolean("options.verify-quest-exists-on-load", true);
+        Map<String, QuestProgress> existing = new HashMap<>();
+        for (QuestProgress questProgress : questProgressFile.getAllQuestProgress()) {
+            existing.put(questProgress.getQuestId(), questProgress);
+        }
+
+        for (QuestDelta questDelta : delta.quests.values()) {
+            Quest quest = plugin.getQuestManager().getQuestById(questDelta.questId);
+            if (validateQuests && quest == null) continue;
+
+            QuestProgress questProgress = existing.get(questDelta.questId);
+            if (questProgress == null) {
+                questProgress = new QuestProgress(plugin, questDelta.questId, questDelta.completed, questDelta.completedBefore,
+                        questDelta.completionDate, delta.uuid, questDelta.started, true);
+                questProgressFile.addQuestProgress(questProgress);
+            } else {
+                questProgress.setStarted(questDelta.started);
+                questProgress.setCompleted(questDelta.completed);
+                questProgress.setCompletedBefore(questDelta.completedBefore);
+                questProgress.setCompletionDate(questDelta.completionDate);
+            }
+
+            for (TaskDelta taskDelta : questDelta.tasks.values()) {
+                if (validateQuests && quest.getTaskById(taskDelta.taskId) == null) continue;
+                questProgress.addTaskProgress(new TaskProgress(questProgress, taskDelta.taskId, taskDelta.progress, delta.uuid, taskDelta.completed, true));
+            }
+        }
+    }
+
+    private static byte[] encode(PlayerDelta delta) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(delta.uuid.getMostSignificantBits());
+            out.writeLong(delta.uuid.getLeastSignificantBits());
+            out.writeInt(delta.quests.size());
+            for (QuestDelta questDelta : delta.quests.values()) {
+                out.writeUTF(questDelta.questId);
+                out.writeByte((questDelta.started ? 1 : 0) | (questDelta.completed ? 2 : 0) | (questDelta.completedBefore ? 4 : 0));
+                out.writeLong(questDelta.completionDate);
+                out.writeInt(questDelta.tasks.size());
+                for (TaskDelta taskDelta : questDelta.tasks.values()) {
+                    out.writeUTF(taskDelta.taskId);
+                    out.writeBoolean(taskDelta.completed);
+                    writeProgress(out, taskDelta.progress);
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static PlayerDelta decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        PlayerDelta delta = new PlayerDelta(new UUID(in.readLong(), in.readLong()));
+        int quests = in.readInt();
+        for (int i = 0; i < quests; i++) {
+            String questId = in.readUTF();
+            int flags = in.readByte();
+            QuestDelta questDelta = new QuestDelta(questId, (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0, in.readLong());
+            int tasks = in.readInt();
+            for (int j = 0; j < tasks; j++) {
+                String taskId = in.readUTF();
+                boolean completed = in.readBoolean();
+                questDelta.tasks.put(taskId, new TaskDelta(taskId, completed, readProgress(in)));
+            }
+            delta.quests.put(questId, questDelta);
+        }
+        return delta;
+    }
+
+    // progress which is not numeric is recorded by its string form
+    private static void writeProgress(DataOutputStream out, Object progress) throws IOException {
+        if (progress == null) {
+            out.writeByte(TaskProgress.ProgressType.NONE.ordinal());
+        } else if (progress instanceof Integer) {
+            out.writeByte(TaskProgress.ProgressType.INT.ordinal());
+            out.writeInt((int) progress);
+        } else if (progress instanceof Long) {
+            out.writeByte(TaskProgress.ProgressType.LONG.ordinal());
+            out.writeLong((long) progress);
+        } else if (progress instanceof Float) {
+            out.writeByte(TaskProgress.ProgressType.FLOAT.ordinal());
+            out.writeFloat((float) progress);
+        } else if (progress instanceof Double) {
+            out.writeByte(TaskProgress.ProgressType.DOUBLE.ordinal());
+            out.writeDouble((double) progress);
+        } else {
+            out.writeByte(TaskProgress.ProgressType.OBJECT.ordinal());
+            out.writeUTF(String.valueOf(progress));
+        }
+    }
+
+    private static Object readProgress(DataInputStream in) throws IOException {
+        int type = in.readByte();
+        if (type < 0 || type >= PROGRESS_TYPES.length) {
+            throw new IOException("unknown progress type " + type);
+        }
+        switch (PROGRESS_TYPES[type]) {
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case OBJECT:
+                return in.readUTF();
+            default:
+                return null;
+        }
+    }
+
+    private static final class PlayerDelta {
+        private final UUID uuid;
+        private final Map<String, QuestDelta> quests = new LinkedHashMap<>();
+
+        private PlayerDelta(UUID uuid) {
+            this.uuid = uuid;
+        }
+
+        private static PlayerDelta of(UUID uuid, QuestProgressFile questProgressFile) {
+            PlayerDelta delta = new PlayerDelta(uuid);
+            for (QuestProgress questProgress : questProgressFile.getAllQuestProgress()) {
+                if (!questProgress.isModified()) continue;
+                QuestDelta questDelta = new QuestDelta(questProgress.getQuestId(), questProgress.isStarted(), questProgress.isCompleted(),
+                        questProgress.isCompletedBefore(), questProgress.getCompletionDate());
+                for (TaskProgress taskProgress : questProgress.getTaskProgress()) {
+                    if (!taskProgress.isModified()) continue;
+                    questDelta.tasks.put(taskProgress.getTaskId(), new TaskDelta(taskProgress.getTaskId(), taskProgress.isCompleted(), taskProgress.getProgress()));
+                }
+                delta.quests.put(questDelta.questId, questDelta);
+            }
+            return delta;
+        }
+
+        // the state of the newer delta takes precedence
+        private PlayerDelta merge(PlayerDelta newer) {
+            PlayerDelta merged = new PlayerDelta(uuid);
+            for (QuestDelta questDelta : quests.values()) {
+                merged.quests.put(questDelta.questId, questDelta.copy());
+            }
+            for (QuestDelta questDelta : newer.quests.values()) {
+                QuestDelta older = merged.quests.get(questDelta.questId);
+                QuestDelta copy = questDelta.copy();
+                if (older != null) {
+                    older.tasks.putAll(copy.tasks);
+                    copy.tasks.clear();
+                    copy.tasks.putAll(older.tasks);
+                }
+                merged.quests.put(copy.questId, copy);
+            }
+            return merged;
+        }
+    }
+
+    private static final class QuestDelta {
+        private final String questId;
+        private final boolean started;
+        private final boolean completed;
+        private final boolean completedBefore;
+        private final long completionDate;
+        private final Map<String, TaskDelta> tasks = new LinkedHashMap<>();
+
+        private QuestDelta(String questId, boolean started, boolean completed, boolean completedBefore, long completionDate) {
+            this.questId = questId;
+            this.started = started;
+            this.completed = completed;
+            this.completedBefore = completedBefore;
+            this.completionDate = completionDate;
+        }
+
+        private QuestDelta copy() {
+            QuestDelta copy = new QuestDelta(questId, started, completed, completedBefore, completionDate);
+            copy.tasks.putAll(tasks);
+            return copy;
+        }
+    }
+
+    private static final class TaskDelta {
+        private final String taskId;
+        private final boolean completed;
+        private final Object progress;
+
+        private TaskDelta(String taskId, boolean completed, Object progress) {
+            this.taskId = taskId;
+            this.completed = completed;
+            this.progress = progress;
+        }
+    }
+}
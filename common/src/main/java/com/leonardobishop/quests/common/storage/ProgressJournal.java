@@ -0,0 +1,198 @@
+package com.leonardobishop.quests.common.storage;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only journal made up of two fixed size, memory-mapped segment files. Records are only ever
+ * appended to the active segment; when it is sealed, the other segment takes its place, so that the sealed
+ * one can be compacted without holding up appends. Each record is checksummed, so a record which was only
+ * partly written before a crash is detected and ignored on replay.
+ * <p>
+ * This class is not thread safe, callers must synchronise access to it.
+ */
+public class ProgressJournal {
+
+    private static final int MAGIC = 0x51504a31; // QPJ1
+    private static final int HEADER_SIZE = 12;
+
+    private final File directory;
+    private final int segmentSize;
+    private final Segment[] segments = new Segment[2];
+    private int active;
+    private boolean dirty;
+
+    /**
+     * @param directory the directory to keep segment files in
+     * @param segmentSize the size of each segment file in bytes
+     */
+    public ProgressJournal(@NotNull File directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    /**
+     * Open (or create) the segment files and replay any records they contain, oldest first.
+     * Nothing can be appended until {@link #begin()} is called, so the replayed records are kept
+     * until they have been dealt with.
+     *
+     * @param replay called with the payload of each record
+     * @return the number of records replayed
+     */
+    public int open(@NotNull Consumer<byte[]> replay) throws IOException {
+        directory.mkdirs();
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(new File(directory, "journal-" + i + ".dat"), segmentSize);
+        }
+
+        Segment[] ordered = Arrays.copyOf(segments, segments.length);
+        Arrays.sort(ordered, Comparator.comparingLong(segment -> segment.generation));
+        int replayed = 0;
+        for (Segment segment : ordered) {
+            replayed += segment.replay(replay);
+        }
+        return replayed;
+    }
+
+    /**
+     * Discard all replayed records and start appending to a fresh segment.
+     */
+    public void begin() {
+        long generation = Math.max(segments[0].generation, segments[1].generation) + 1;
+        clear(1);
+        active = 0;
+        segments[active].reset(generation);
+    }
+
+    /**
+     * Append a record to the active segment.
+     *
+     * @param payload the record
+     * @return false if there is not enough space left in the active segment
+     */
+    public boolean append(byte[] payload) {
+        MappedByteBuffer buffer = segments[active].buffer;
+        if (buffer.remaining() < payload.length + 12) {
+            return false;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        buffer.putInt(payload.length);
+        buffer.put(payload);
+        buffer.putInt((int) crc.getValue());
+        buffer.putInt(buffer.position(), 0);
+        dirty = true;
+        return true;
+    }
+
+    /**
+     * @return whether a record of this size would fit in an empty segment
+     */
+    public boolean fits(int payloadLength) {
+        return payloadLength + 12 <= segmentSize - HEADER_SIZE;
+    }
+
+    /**
+     * @return the fraction of the active segment which has been used
+     */
+    public double getUsage() {
+        return (double) segments[active].buffer.position() / segmentSize;
+    }
+
+    /**
+     * Seal the active segment and start appending to the other.
+     * The other segment must have been cleared since it was last sealed.
+     *
+     * @return the index of the sealed segment
+     */
+    public int rotate() {
+        int sealed = active;
+        active = 1 - active;
+        segments[active].reset(segments[sealed].generation + 1);
+        return sealed;
+    }
+
+    /**
+     * Discard the records of a sealed segment once they have been compacted.
+     *
+     * @param segment the index of the segment
+     */
+    public void clear(int segment) {
+        segments[segment].buffer.putInt(HEADER_SIZE, 0);
+        segments[segment].buffer.force();
+    }
+
+    /**
+     * Write appended records through to disk.
+     */
+    public void force() {
+        if (!dirty) return;
+        dirty = false;
+        segments[active].buffer.force();
+    }
+
+    public void close() {
+        for (Segment segment : segments) {
+            if (segment == null) continue;
+            segment.buffer.force();
+            try {
+                segment.channel.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static final class Segment {
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private long generation;
+
+        private Segment(File file, int size) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            if (randomAccessFile.length() < size) {
+                randomAccessFile.setLength(size);
+            }
+            this.channel = randomAccessFile.getChannel();
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            this.generation = buffer.getInt(0) == MAGIC ? buffer.getLong(4) : -1;
+        }
+
+        private int replay(Consumer<byte[]> replay) {
+            if (generation < 0) return 0;
+
+            int replayed = 0;
+            buffer.position(HEADER_SIZE);
+            while (buffer.remaining() >= 8) {
+                int length = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining() - 4) break;
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if (buffer.getInt() != (int) crc.getValue()) break;
+                replay.accept(payload);
+                replayed++;
+            }
+            return replayed;
+        }
+
+        private void reset(long generation) {
+            this.generation = generation;
+            buffer.putInt(0, MAGIC);
+            buffer.putLong(4, generation);
+            buffer.putInt(HEADER_SIZE, 0);
+            buffer.position(HEADER_SIZE);
+            buffer.force();
+        }
+    }
+}
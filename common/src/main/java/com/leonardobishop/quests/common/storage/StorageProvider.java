@@ -4,6 +4,9 @@ import com.leonardobishop.quests.common.player.questprogressfile.QuestProgressFi
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -25,10 +28,74 @@ public interface StorageProvider {
     @Nullable QuestProgressFile loadProgressFile(@NotNull UUID uuid);
 
     /**
-     * Save a QuestProgressFile to the data source with a specific UUID
+     * Load a QuestProgressFile for a player who is not joining, such as one looked up while offline. Unlike
+     * {@link #loadProgressFile(UUID)}, nothing is kept in memory for the player afterwards, so there is no need to
+     * call {@link #releaseProgressFile(UUID)}. Storage providers which keep state for loaded players should override this.
+     *
+     * @param uuid the UUID to load
+     * @return {@link QuestProgressFile} or null
+     */
+    default @Nullable QuestProgressFile loadDetachedProgressFile(@NotNull UUID uuid) {
+        return loadProgressFile(uuid);
+    }
+
+    /**
+     * Load many QuestProgressFiles from the data source at once. Storage providers which can fetch many
+     * players more cheaply than one at a time should override this.
+     *
+     * @param uuids the UUIDs to load
+     * @return {@link Map} of each UUID to its {@link QuestProgressFile}, omitting any which could not be loaded
+     */
+    default @NotNull Map<UUID, QuestProgressFile> loadProgressFiles(@NotNull Collection<UUID> uuids) {
+        Map<UUID, QuestProgressFile> questProgressFiles = new HashMap<>();
+        for (UUID uuid : uuids) {
+            QuestProgressFile questProgressFile = loadProgressFile(uuid);
+            if (questProgressFile != null) {
+                questProgressFiles.put(uuid, questProgressFile);
+            }
+        }
+        return questProgressFiles;
+    }
+
+    /**
+     * Save a QuestProgressFile to the data source with a specific UUID. Failures are logged by the storage
+     * provider rather than thrown.
+     *
      * @param uuid the uuid to match the file to
      * @param questProgressFile the file to save
+     * @return true if the file was written, false if it failed
+     */
+    boolean saveProgressFile(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile);
+
+    /**
+     * Save many QuestProgressFiles to the data source at once. Storage providers which can write many
+     * players more cheaply than one at a time should override this.
+     *
+     * @param questProgressFiles {@link Map} of each UUID to the file to save
+     * @return true if every file was written, false if any failed
+     */
+    default boolean saveProgressFiles(@NotNull Map<UUID, QuestProgressFile> questProgressFiles) {
+        boolean saved = true;
+        for (Map.Entry<UUID, QuestProgressFile> entry : questProgressFiles.entrySet()) {
+            saved &= saveProgressFile(entry.getKey(), entry.getValue());
+        }
+        return saved;
+    }
+
+    /**
+     * Release anything kept in memory for a player who is no longer loaded. This is called after their final save.
+     *
+     * @param uuid the uuid of the player
+     */
+    default void releaseProgressFile(@NotNull UUID uuid) { }
+
+    /**
+     * Get the total number of bytes written by this storage provider since it was initialised, for metrics.
+     *
+     * @return the number of bytes written, or 0 if the storage provider does not keep track
      */
-    void saveProgressFile(@NotNull UUID uuid, @NotNull QuestProgressFile questProgressFile);
+    default long getBytesWritten() {
+        return 0;
+    }
 
 }
@@ -115,4 +115,18 @@ public abstract class TaskType {
         // not implemented here
         return Collections.emptyList();
     }
+
+    /**
+     * Called when Quests loads a task of this type, after {@link #validateConfig(String, HashMap)} and once
+     * any global task configuration has been applied. Task types can use this to convert the configuration of
+     * a task into an immutable, typed object once, rather than looking up and casting values on every event.
+     * The returned object can be retrieved with {@link Task#getCompiledConfig(Class)}.
+     *
+     * @param task the task to compile the configuration of
+     * @return the compiled configuration, or null if this task type does not compile its configuration
+     */
+    public @Nullable Object compileConfig(@NotNull Task task) {
+        // not implemented here
+        return null;
+    }
 }